@@ -1,15 +1,29 @@
 package com.sayedhesham.mediaservice.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.UUID;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.gridfs.model.GridFSFile;
 import com.sayedhesham.mediaservice.model.Media;
 import com.sayedhesham.mediaservice.repository.MediaRepository;
 
@@ -30,6 +44,7 @@ public class ProductImageProcessingService {
     private final MediaRepository mediaRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final GridFsTemplate imageStaging;
 
     @Value("${kafka.topic.media-uploaded}")
     private String mediaUploadedTopic;
@@ -40,13 +55,15 @@ public class ProductImageProcessingService {
             ProductImageEvent event = objectMapper.readValue(eventJson, ProductImageEvent.class);
             log.info("Processing product image upload for product: {}", event.getProductId());
 
-            String mediaId = processProductImageData(event.getProductId(), event.getImageData(), event.getContentType());
+            String mediaId = processProductImage(event);
 
             publishMediaProcessedEvent(event.getProductId(), mediaId, MEDIA_TYPE_PRODUCT_IMAGE, "uploaded");
 
             log.info("Successfully processed product image for product: {}, mediaId: {}", event.getProductId(), mediaId);
         } catch (JsonProcessingException e) {
             log.error("Error parsing product image upload event: {}", eventJson, e);
+        } catch (IllegalArgumentException e) {
+            log.error("Error processing product image upload due to invalid input: {}", eventJson, e);
         } catch (IOException e) {
             log.error("Error processing product image upload", e);
         }
@@ -58,7 +75,7 @@ public class ProductImageProcessingService {
             ProductImageEvent event = objectMapper.readValue(eventJson, ProductImageEvent.class);
             log.info("Processing product image update for product: {}", event.getProductId());
 
-            String mediaId = processProductImageData(event.getProductId(), event.getImageData(), event.getContentType());
+            String mediaId = processProductImage(event);
 
             publishMediaProcessedEvent(event.getProductId(), mediaId, MEDIA_TYPE_PRODUCT_IMAGE, "updated");
 
@@ -91,10 +108,61 @@ public class ProductImageProcessingService {
         }
     }
 
-    private String processProductImageData(String productId, String base64Data, String contentType) throws IOException {
-        // Calculate file size
-        long fileSizeBytes = calculateFileSize(base64Data);
-        
+    /**
+     * Store the image of an event as media. Current events point to bytes
+     * staged in GridFS by product-service; events published before the
+     * staging bucket existed still carry the base64 data inline.
+     */
+    private String processProductImage(ProductImageEvent event) throws IOException {
+        if (event.getStagedImageId() == null) {
+            return processProductImageData(event.getProductId(), event.getImageData(), event.getContentType(),
+                    calculateFileSize(event.getImageData()));
+        }
+
+        Query stagedImage = Query.query(Criteria.where("_id").is(new ObjectId(event.getStagedImageId())));
+        GridFSFile file = imageStaging.findOne(stagedImage);
+        if (file == null) {
+            throw new IOException("Staged image not found: " + event.getStagedImageId());
+        }
+        try {
+            String base64Data = readStagedImage(file, event);
+            return processProductImageData(event.getProductId(), base64Data, event.getContentType(), file.getLength());
+        } finally {
+            // Failed events are not redelivered, so the staged copy is never needed again
+            imageStaging.delete(stagedImage);
+        }
+    }
+
+    /**
+     * Stream a staged image into its base64 form, verifying size and checksum
+     * on the way instead of parsing the image out of a JSON string.
+     */
+    private String readStagedImage(GridFSFile file, ProductImageEvent event) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) ((file.getLength() + 2) / 3 * 4));
+        try (InputStream in = new DigestInputStream(imageStaging.getResource(file).getInputStream(), digest);
+                OutputStream out = Base64.getEncoder().wrap(encoded)) {
+            in.transferTo(out);
+        }
+
+        if (event.getSizeBytes() != null && event.getSizeBytes() != file.getLength()) {
+            throw new IllegalArgumentException("Staged image " + event.getStagedImageId() + " has " + file.getLength()
+                    + " bytes, expected " + event.getSizeBytes());
+        }
+        String checksum = HexFormat.of().formatHex(digest.digest());
+        if (event.getChecksum() != null && !event.getChecksum().equalsIgnoreCase(checksum)) {
+            throw new IllegalArgumentException("Checksum mismatch for staged image " + event.getStagedImageId());
+        }
+        return encoded.toString(StandardCharsets.US_ASCII);
+    }
+
+    private String processProductImageData(String productId, String base64Data, String contentType, long fileSizeBytes) throws IOException {
         // Save media record to database with base64 data
         Media media = Media.builder()
                 .id(UUID.randomUUID().toString())
@@ -150,7 +218,10 @@ public class ProductImageProcessingService {
     public static class ProductImageEvent {
 
         private String productId;
-        private String imageData;
+        private String stagedImageId; // GridFS file ID in the image staging bucket
+        private String checksum; // SHA-256 of the image bytes, hex
+        private Long sizeBytes;
+        private String imageData; // Inline base64, only in events from before staging
         private String contentType;
         private Long timestamp;
     }
@@ -3,7 +3,11 @@ package com.sayedhesham.orderservice.client;
 import java.util.List;
 
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestHeader;
 
@@ -16,21 +20,35 @@ import com.sayedhesham.orderservice.model.Product;
 @FeignClient(name = "productservice")
 public interface ProductClient {
 
+    /**
+     * Catalog version of a seller's product ID set, sent by product-service
+     * with every /seller/ids response
+     */
+    String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+
     /**
      * Get all product IDs for the authenticated seller
      * Authorization header is automatically propagated via Feign interceptor
-     * @return List of product IDs owned by the seller
+     * 
+     * @param ifNoneMatch ETag of a cached copy, or null to always get the IDs;
+     *                    product-service answers 304 if the set is unchanged,
+     *                    which Feign raises as a FeignException
+     * @return List of product IDs owned by the seller, with the catalog
+     *         version in the X-Catalog-Version header
      */
     @GetMapping("/seller/ids")
-    List<String> getSellerProductIds();
+    ResponseEntity<List<String>> getSellerProductIds(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
     
     /**
      * Get current product details for multiple products by IDs
-     * Batch fetch is more efficient than individual calls
+     * IDs are sent in the request body, so large lists do not hit URL limits,
+     * and product-service streams the result straight from its Mongo cursor
      * 
      * @param ids List of product IDs to fetch
+     * @param fields Comma-separated product fields to return, or null for all
      * @return List of current product data with prices and quantities
      */
-    @GetMapping("/batch")
-    List<Product> getProductsByIds(@RequestParam("ids") List<String> ids);
+    @PostMapping("/batch")
+    List<Product> getProductsByIds(@RequestBody List<String> ids, @RequestParam(value = "fields", required = false) String fields);
 }
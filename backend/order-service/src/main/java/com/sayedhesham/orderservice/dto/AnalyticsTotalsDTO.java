@@ -0,0 +1,36 @@
+package com.sayedhesham.orderservice.dto;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Order count and per-product figures of one seller or buyer, before they
+ * are ranked into a summary. Totals from different sources are added up.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsTotalsDTO {
+    private long orderCount;
+    private List<ProductTotals> products;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductTotals {
+        @Id
+        private String productId;
+        private String productName;
+        private long orders;            // Order items of this product
+        private long quantity;          // Units ordered
+        private double amount;          // Price times quantity
+    }
+}
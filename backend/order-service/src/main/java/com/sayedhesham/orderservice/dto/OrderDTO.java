@@ -2,6 +2,7 @@ package com.sayedhesham.orderservice.dto;
 
 import org.hibernate.validator.constraints.Length;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -41,5 +42,6 @@ public class OrderDTO {
     String postalCode;  // Flexible
 
     @NotNull
+    @Valid
     OrderItemDTO[] orderItems;
 }
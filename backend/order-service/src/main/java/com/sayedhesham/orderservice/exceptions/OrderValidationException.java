@@ -0,0 +1,21 @@
+package com.sayedhesham.orderservice.exceptions;
+
+import java.util.List;
+
+/**
+ * Every problem found while validating an order, reported together. The
+ * message lists them all, separated by "; ".
+ */
+public class OrderValidationException extends IllegalArgumentException {
+
+    private final List<String> problems;
+
+    public OrderValidationException(List<String> problems) {
+        super(String.join("; ", problems));
+        this.problems = List.copyOf(problems);
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+}
@@ -0,0 +1,47 @@
+package com.sayedhesham.orderservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pre-aggregated order figures of one seller or buyer for one product, day
+ * and order status. The row with a null productId counts distinct orders.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "analytics_daily_rollups")
+public class AnalyticsRollup {
+
+    @Id
+    private String id;
+
+    private Scope scope;
+
+    private String ownerId;         // Seller or buyer ID, depending on scope
+
+    private String day;             // ISO date (yyyy-MM-dd) the orders were created on
+
+    private Order.OrderStatus status;
+
+    private String productId;       // Null for the distinct order count row
+
+    private String productName;
+
+    private Long orders;            // Order items, or orders on the order count row
+
+    private Long quantity;          // Units ordered
+
+    private Double amount;          // Price times quantity
+
+    public enum Scope {
+        SELLER,
+        BUYER
+    }
+}
@@ -0,0 +1,31 @@
+package com.sayedhesham.orderservice.model;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * First day whose orders are fully counted in the daily rollups, set once
+ * to the day after rollups were first maintained, and the days whose
+ * rollups are waiting to be rebuilt.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "analytics_rollup_state")
+public class AnalyticsRollupState {
+
+    @Id
+    private String id;
+
+    private String since;           // ISO date (yyyy-MM-dd)
+
+    private List<String> staleDays; // ISO dates whose rollups missed an update
+}
@@ -0,0 +1,30 @@
+package com.sayedhesham.orderservice.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Version a startup migration last completed at, so it is not repeated on
+ * every start of every instance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "migration_state")
+public class MigrationState {
+
+    @Id
+    private String id;          // Name of the migration
+
+    private int version;
+
+    private Date completedAt;
+}
@@ -14,4 +14,5 @@ public class OrderItem {
     private Integer quantity;
     private Double price;
     private String productName;
+    private String sellerId; // Owner of the product when the order was placed
 }
@@ -6,6 +6,7 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import com.sayedhesham.orderservice.dto.AnalyticsTotalsDTO;
 import com.sayedhesham.orderservice.dto.PurchaseSummaryDTO;
 import com.sayedhesham.orderservice.dto.SellerAnalyticsSummaryDTO;
 import com.sayedhesham.orderservice.model.Order;
@@ -27,17 +28,55 @@ public interface OrderRepositoryCustom {
     );
     
     SellerAnalyticsSummaryDTO getSellerAnalytics(
-        List<String> productIds,
+        String sellerId,
         Order.OrderStatus status,
         LocalDateTime startDate,
         LocalDateTime endDate
     );
     
     Page<Order> findSellerOrders(
-        List<String> productIds,
+        String sellerId,
         Order.OrderStatus status,
         LocalDateTime startDate,
         LocalDateTime endDate,
         Pageable pageable
     );
+
+    /**
+     * Order count and per-product figures of a buyer's orders created in
+     * any of the given windows; empty if there are no windows.
+     */
+    AnalyticsTotalsDTO sumPurchases(
+        String buyerId,
+        Order.OrderStatus status,
+        List<TimeWindow> windows
+    );
+
+    /**
+     * Order count and per-product figures of a seller's order items in
+     * orders created in any of the given windows; FAILED orders are left out
+     * unless asked for by status. Empty if there are no windows.
+     */
+    AnalyticsTotalsDTO sumSellerSales(
+        String sellerId,
+        Order.OrderStatus status,
+        List<TimeWindow> windows
+    );
+
+    /**
+     * Move an order to a new status and append it to the status history,
+     * in one atomic update that only applies while the order still has the
+     * expected status.
+     *
+     * @return the order after the change, or null if it does not exist or
+     * no longer has the expected status
+     */
+    Order transitionStatus(String orderId, Order.OrderStatus expected, Order.OrderStatus newStatus);
+
+    /**
+     * Creation time range of orders, from inclusive and until exclusive; a
+     * null bound leaves that side open.
+     */
+    record TimeWindow(LocalDateTime from, LocalDateTime until) {
+    }
 }
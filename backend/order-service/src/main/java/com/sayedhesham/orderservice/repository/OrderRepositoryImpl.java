@@ -1,34 +1,43 @@
 package com.sayedhesham.orderservice.repository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
 import org.springframework.data.mongodb.core.aggregation.GroupOperation;
 import org.springframework.data.mongodb.core.aggregation.MatchOperation;
-import org.springframework.data.mongodb.core.aggregation.SortOperation;
 import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import com.sayedhesham.orderservice.dto.AnalyticsTotalsDTO;
 import com.sayedhesham.orderservice.dto.ProductAnalyticsDTO;
 import com.sayedhesham.orderservice.dto.PurchaseSummaryDTO;
 import com.sayedhesham.orderservice.dto.SellerAnalyticsSummaryDTO;
 import com.sayedhesham.orderservice.dto.SellerProductAnalyticsDTO;
 import com.sayedhesham.orderservice.model.Order;
+import com.sayedhesham.orderservice.model.StatusHistory;
 
 @Repository
 public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
+    // Length of the top product lists in analytics
+    private static final int TOP_PRODUCTS = 5;
+
     @Autowired
     private MongoTemplate mongoTemplate;
 
@@ -109,79 +118,41 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
                 .sum(ArithmeticOperators.Multiply.valueOf("orderItems.price")
                         .multiplyBy("orderItems.quantity")).as("totalSpent");
 
-        // Stage 4: Sort by orderCount (for most purchased products)
-        SortOperation sortByOrderCount = Aggregation.sort(Sort.Direction.DESC, "orderCount");
-
-        // Execute aggregation for most purchased products
-        Aggregation mostPurchasedAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                groupByProduct,
-                sortByOrderCount,
-                Aggregation.limit(5)
-        );
-
-        AggregationResults<ProductAnalyticsDTO> mostPurchasedResults
-                = mongoTemplate.aggregate(mostPurchasedAggregation, "orders", ProductAnalyticsDTO.class);
-
-        List<ProductAnalyticsDTO> mostPurchasedProducts = mostPurchasedResults.getMappedResults();
-
-        // Stage 5: Sort by totalSpent (for top spending products)
-        SortOperation sortByTotalSpent = Aggregation.sort(Sort.Direction.DESC, "totalSpent");
-
-        // Execute aggregation for top spending products
-        Aggregation topSpendingAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                groupByProduct,
-                sortByTotalSpent,
-                Aggregation.limit(5)
-        );
-
-        AggregationResults<ProductAnalyticsDTO> topSpendingResults
-                = mongoTemplate.aggregate(topSpendingAggregation, "orders", ProductAnalyticsDTO.class);
-
-        List<ProductAnalyticsDTO> topSpendingProducts = topSpendingResults.getMappedResults();
-
-        // Execute aggregation for overall statistics (no sorting needed)
-        Aggregation statsAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                groupByProduct
-        );
-
-        AggregationResults<ProductAnalyticsDTO> statsResults
-                = mongoTemplate.aggregate(statsAggregation, "orders", ProductAnalyticsDTO.class);
-
-        List<ProductAnalyticsDTO> productAnalytics = statsResults.getMappedResults();
-
-        // Calculate overall statistics
-        double totalSpent = productAnalytics.stream()
-                .mapToDouble(ProductAnalyticsDTO::getTotalSpent)
-                .sum();
-
-        int orderCount = (int) mongoTemplate.count(
-                Query.query(criteria), Order.class);
+        // Stage 4: Compute every figure from the matched orders in one pass
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("count")).as("orderCount")
+                .and(unwindStage,
+                        Aggregation.group().sum(ArithmeticOperators.Multiply.valueOf("orderItems.price")
+                                .multiplyBy("orderItems.quantity")).as("totalSpent")).as("totals")
+                .and(unwindStage, groupByProduct, Aggregation.count().as("count")).as("productCount")
+                .and(unwindStage, groupByProduct,
+                        Aggregation.sort(Sort.Direction.DESC, "orderCount"),
+                        Aggregation.limit(TOP_PRODUCTS)).as("mostPurchased")
+                .and(unwindStage, groupByProduct,
+                        Aggregation.sort(Sort.Direction.DESC, "totalSpent"),
+                        Aggregation.limit(TOP_PRODUCTS)).as("topSpending");
+
+        Document result = mongoTemplate.aggregate(
+                Aggregation.newAggregation(matchStage, facets), "orders", Document.class).getUniqueMappedResult();
 
         // Build response
         return PurchaseSummaryDTO.builder()
-                .totalSpent(totalSpent)
-                .orderCount(orderCount)
-                .productCount(productAnalytics.size())
-                .mostPurchasedProducts(mostPurchasedProducts)
-                .topSpendingProducts(topSpendingProducts)
+                .totalSpent(facetNumber(result, "totals", "totalSpent").doubleValue())
+                .orderCount(facetNumber(result, "orderCount", "count").intValue())
+                .productCount(facetNumber(result, "productCount", "count").intValue())
+                .mostPurchasedProducts(facetList(result, "mostPurchased", ProductAnalyticsDTO.class))
+                .topSpendingProducts(facetList(result, "topSpending", ProductAnalyticsDTO.class))
                 .build();
     }
 
     @Override
     public SellerAnalyticsSummaryDTO getSellerAnalytics(
-            List<String> productIds,
+            String sellerId,
             Order.OrderStatus status,
             LocalDateTime startDate,
             LocalDateTime endDate) {
 
-        // If no products, return empty analytics
-        if (productIds == null || productIds.isEmpty()) {
+        // If no seller, return empty analytics
+        if (sellerId == null) {
             return SellerAnalyticsSummaryDTO.builder()
                     .totalRevenue(0.0)
                     .totalOrders(0)
@@ -193,7 +164,8 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
         }
 
         // Stage 1: Match orders containing seller's products
-        Criteria criteria = Criteria.where("orderItems.productId").in(productIds);
+        // (served by the orderItems.sellerId, status, createdAt index)
+        Criteria criteria = Criteria.where("orderItems.sellerId").is(sellerId);
 
         // Add status filter (exclude FAILED orders by default)
         if (status != null) {
@@ -219,7 +191,7 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
         // Stage 3: Match again to filter only seller's products after unwind
         MatchOperation matchProductsStage = Aggregation.match(
-                Criteria.where("orderItems.productId").in(productIds)
+                Criteria.where("orderItems.sellerId").is(sellerId)
         );
 
         // Stage 4: Group by product to calculate statistics
@@ -230,82 +202,38 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
                 .sum(ArithmeticOperators.Multiply.valueOf("orderItems.price")
                         .multiplyBy("orderItems.quantity")).as("totalRevenue");
 
-        // Stage 5: Sort by units sold (for best-selling products)
-        SortOperation sortByUnitsSold = Aggregation.sort(Sort.Direction.DESC, "unitsSold");
-
-        // Execute aggregation for best-selling products
-        Aggregation bestSellingAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                matchProductsStage,
-                groupByProduct,
-                sortByUnitsSold,
-                Aggregation.limit(5)
-        );
-
-        AggregationResults<SellerProductAnalyticsDTO> bestSellingResults
-                = mongoTemplate.aggregate(bestSellingAggregation, "orders", SellerProductAnalyticsDTO.class);
-
-        List<SellerProductAnalyticsDTO> bestSellingProducts = bestSellingResults.getMappedResults();
-
-        // Stage 6: Sort by revenue (for top revenue products)
-        SortOperation sortByRevenue = Aggregation.sort(Sort.Direction.DESC, "totalRevenue");
-
-        // Execute aggregation for top revenue products
-        Aggregation topRevenueAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                matchProductsStage,
-                groupByProduct,
-                sortByRevenue,
-                Aggregation.limit(5)
-        );
-
-        AggregationResults<SellerProductAnalyticsDTO> topRevenueResults
-                = mongoTemplate.aggregate(topRevenueAggregation, "orders", SellerProductAnalyticsDTO.class);
-
-        List<SellerProductAnalyticsDTO> topRevenueProducts = topRevenueResults.getMappedResults();
-
-        // Execute aggregation for overall statistics (no sorting needed)
-        Aggregation statsAggregation = Aggregation.newAggregation(
-                matchStage,
-                unwindStage,
-                matchProductsStage,
-                groupByProduct
-        );
-
-        AggregationResults<SellerProductAnalyticsDTO> statsResults
-                = mongoTemplate.aggregate(statsAggregation, "orders", SellerProductAnalyticsDTO.class);
-
-        List<SellerProductAnalyticsDTO> productAnalytics = statsResults.getMappedResults();
-
-        // Calculate overall statistics
-        double totalRevenue = productAnalytics.stream()
-                .mapToDouble(SellerProductAnalyticsDTO::getTotalRevenue)
-                .sum();
-
-        int totalUnitsSold = productAnalytics.stream()
-                .mapToInt(SellerProductAnalyticsDTO::getUnitsSold)
-                .sum();
-
-        // Count total orders containing seller's products
-        int totalOrders = (int) mongoTemplate.count(
-                Query.query(criteria), Order.class);
+        // Stage 5: Compute every figure from the matched orders in one pass
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("count")).as("orderCount")
+                .and(unwindStage, matchProductsStage,
+                        Aggregation.group()
+                                .sum("orderItems.quantity").as("totalUnitsSold")
+                                .sum(ArithmeticOperators.Multiply.valueOf("orderItems.price")
+                                        .multiplyBy("orderItems.quantity")).as("totalRevenue")).as("totals")
+                .and(unwindStage, matchProductsStage, groupByProduct, Aggregation.count().as("count")).as("productCount")
+                .and(unwindStage, matchProductsStage, groupByProduct,
+                        Aggregation.sort(Sort.Direction.DESC, "unitsSold"),
+                        Aggregation.limit(TOP_PRODUCTS)).as("bestSelling")
+                .and(unwindStage, matchProductsStage, groupByProduct,
+                        Aggregation.sort(Sort.Direction.DESC, "totalRevenue"),
+                        Aggregation.limit(TOP_PRODUCTS)).as("topRevenue");
+
+        Document result = mongoTemplate.aggregate(
+                Aggregation.newAggregation(matchStage, facets), "orders", Document.class).getUniqueMappedResult();
 
         // Build response
         return SellerAnalyticsSummaryDTO.builder()
-                .totalRevenue(totalRevenue)
-                .totalOrders(totalOrders)
-                .totalUnitsSold(totalUnitsSold)
-                .productCount(productAnalytics.size())
-                .bestSellingProducts(bestSellingProducts)
-                .topRevenueProducts(topRevenueProducts)
+                .totalRevenue(facetNumber(result, "totals", "totalRevenue").doubleValue())
+                .totalOrders(facetNumber(result, "orderCount", "count").intValue())
+                .totalUnitsSold(facetNumber(result, "totals", "totalUnitsSold").intValue())
+                .productCount(facetNumber(result, "productCount", "count").intValue())
+                .bestSellingProducts(facetList(result, "bestSelling", SellerProductAnalyticsDTO.class))
+                .topRevenueProducts(facetList(result, "topRevenue", SellerProductAnalyticsDTO.class))
                 .build();
     }
 
     @Override
     public Page<Order> findSellerOrders(
-            List<String> productIds,
+            String sellerId,
             Order.OrderStatus status,
             LocalDateTime startDate,
             LocalDateTime endDate,
@@ -313,11 +241,11 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
         Query query = new Query();
 
-        if (productIds == null || productIds.isEmpty()) {
+        if (sellerId == null) {
             return new PageImpl<>(List.of(), pageable, 0);
         }
 
-        query.addCriteria(Criteria.where("orderItems.productId").in(productIds));
+        query.addCriteria(Criteria.where("orderItems.sellerId").is(sellerId));
 
         if (status != null) {
             query.addCriteria(Criteria.where("status").is(status));
@@ -339,4 +267,118 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
         return new PageImpl<>(orders, pageable, total);
     }
+
+    @Override
+    public Order transitionStatus(String orderId, Order.OrderStatus expected, Order.OrderStatus newStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(orderId).and("status").is(expected)),
+                new Update()
+                        .set("status", newStatus)
+                        .set("updatedAt", now)
+                        .push("statusHistory", StatusHistory.builder().status(newStatus).changedAt(now).build()),
+                FindAndModifyOptions.options().returnNew(true),
+                Order.class);
+    }
+
+    @Override
+    public AnalyticsTotalsDTO sumPurchases(
+            String buyerId,
+            Order.OrderStatus status,
+            List<TimeWindow> windows) {
+
+        Criteria criteria = Criteria.where("buyerId").is(buyerId);
+        if (status != null) {
+            criteria.and("status").is(status);
+        }
+        return sumOrders(criteria, null, windows);
+    }
+
+    @Override
+    public AnalyticsTotalsDTO sumSellerSales(
+            String sellerId,
+            Order.OrderStatus status,
+            List<TimeWindow> windows) {
+
+        Criteria criteria = Criteria.where("orderItems.sellerId").is(sellerId);
+        if (status != null) {
+            criteria.and("status").is(status);
+        } else {
+            // Only count successful orders
+            criteria.and("status").ne(Order.OrderStatus.FAILED);
+        }
+        return sumOrders(criteria, Criteria.where("orderItems.sellerId").is(sellerId), windows);
+    }
+
+    /**
+     * Count the matched orders and group their items by product in one
+     * $facet pass, keeping only items that match itemCriteria if given.
+     */
+    private AnalyticsTotalsDTO sumOrders(Criteria criteria, Criteria itemCriteria, List<TimeWindow> windows) {
+        if (windows.isEmpty()) {
+            return AnalyticsTotalsDTO.builder().products(List.of()).build();
+        }
+        criteria.orOperator(windows.stream().map(OrderRepositoryImpl::createdWithin).toList());
+
+        List<AggregationOperation> productStages = new ArrayList<>();
+        productStages.add(Aggregation.unwind("orderItems"));
+        if (itemCriteria != null) {
+            productStages.add(Aggregation.match(itemCriteria));
+        }
+        productStages.add(Aggregation.group("orderItems.productId")
+                .first("orderItems.productName").as("productName")
+                .count().as("orders")
+                .sum("orderItems.quantity").as("quantity")
+                .sum(ArithmeticOperators.Multiply.valueOf("orderItems.price")
+                        .multiplyBy("orderItems.quantity")).as("amount"));
+
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("count")).as("orderCount")
+                .and(productStages.toArray(AggregationOperation[]::new)).as("products");
+
+        Document result = mongoTemplate.aggregate(
+                Aggregation.newAggregation(Aggregation.match(criteria), facets), "orders", Document.class)
+                .getUniqueMappedResult();
+
+        return AnalyticsTotalsDTO.builder()
+                .orderCount(facetNumber(result, "orderCount", "count").longValue())
+                .products(facetList(result, "products", AnalyticsTotalsDTO.ProductTotals.class))
+                .build();
+    }
+
+    private static Criteria createdWithin(TimeWindow window) {
+        if (window.from() == null && window.until() == null) {
+            return new Criteria();
+        }
+        Criteria range = Criteria.where("createdAt");
+        if (window.from() != null) {
+            range = range.gte(window.from());
+        }
+        if (window.until() != null) {
+            range = range.lt(window.until());
+        }
+        return range;
+    }
+
+    /**
+     * A field of the single document a count or total facet produces, or 0
+     * if nothing matched and the facet is empty.
+     */
+    private static Number facetNumber(Document result, String facet, String field) {
+        List<Document> documents = result != null ? result.getList(facet, Document.class) : null;
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        Object value = documents.get(0).get(field);
+        return value instanceof Number number ? number : 0;
+    }
+
+    private <T> List<T> facetList(Document result, String facet, Class<T> type) {
+        List<Document> documents = result != null ? result.getList(facet, Document.class) : null;
+        if (documents == null) {
+            return List.of();
+        }
+        return documents.stream()
+                .map(document -> mongoTemplate.getConverter().read(type, document))
+                .toList();
+    }
 }
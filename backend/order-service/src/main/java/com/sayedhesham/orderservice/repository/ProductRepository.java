@@ -1,14 +1,22 @@
 package com.sayedhesham.orderservice.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import com.sayedhesham.orderservice.model.Product;
 
 public interface ProductRepository extends MongoRepository<Product, String> {
     List<Product> findByUserId(String userId);
     Page<Product> findByUserId(String userId, Pageable pageable);
+
+    /**
+     * Products of an order's lines, with only the fields an order item needs
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'name': 1, 'price': 1, 'quantity': 1, 'userId': 1 }")
+    List<Product> findOrderLinesByIdIn(Collection<String> ids);
 }
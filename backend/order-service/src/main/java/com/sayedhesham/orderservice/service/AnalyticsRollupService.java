@@ -0,0 +1,541 @@
+package com.sayedhesham.orderservice.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.orderservice.dto.AnalyticsTotalsDTO;
+import com.sayedhesham.orderservice.dto.AnalyticsTotalsDTO.ProductTotals;
+import com.sayedhesham.orderservice.dto.ProductAnalyticsDTO;
+import com.sayedhesham.orderservice.dto.PurchaseSummaryDTO;
+import com.sayedhesham.orderservice.dto.SellerAnalyticsSummaryDTO;
+import com.sayedhesham.orderservice.dto.SellerProductAnalyticsDTO;
+import com.sayedhesham.orderservice.model.AnalyticsRollup;
+import com.sayedhesham.orderservice.model.AnalyticsRollup.Scope;
+import com.sayedhesham.orderservice.model.AnalyticsRollupState;
+import com.sayedhesham.orderservice.model.Order;
+import com.sayedhesham.orderservice.model.OrderItem;
+import com.sayedhesham.orderservice.repository.OrderRepository;
+import com.sayedhesham.orderservice.repository.OrderRepositoryCustom.TimeWindow;
+
+/**
+ * Daily analytics rollups per (seller, product, day, status) and per (buyer,
+ * product, day, status), kept up to date as orders are created and change
+ * status, so analytics over a date range read a few rollup rows per day
+ * instead of every order.
+ *
+ * Rollups cover orders created on or after the day recorded in
+ * analytics_rollup_state, which is set once to the day after rollups were
+ * first maintained. Orders before that day, and the partial days at the
+ * ends of a range that does not start or end at midnight, are summed from
+ * the orders themselves.
+ *
+ * A day whose rollups could not be updated is marked stale: queries sum it
+ * from the orders until it is rebuilt. Stale days are rebuilt from the
+ * orders every few minutes, and the last few days are rebuilt nightly to
+ * catch changes lost without an error, e.g. a crash between the order
+ * write and the rollup write.
+ */
+@Service
+public class AnalyticsRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsRollupService.class);
+
+    private static final String STATE_ID = "daily";
+
+    // Length of the top product lists in analytics
+    private static final int TOP_PRODUCTS = 5;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderRepository orderRepo;
+
+    @Value("${analytics.rollups.reconcile-days:7}")
+    private int reconcileDays;
+
+    private volatile LocalDate since;
+
+    /**
+     * Move an order's contribution from its previous status to its current
+     * one. Failures are logged rather than thrown, so a rollup problem never
+     * fails the order change itself; the order's day is marked stale instead.
+     *
+     * @param previousStatus status before the change, or null for a new order
+     */
+    public void recordStatusChange(Order order, Order.OrderStatus previousStatus) {
+        if (order.getCreatedAt() == null || order.getOrderItems() == null
+                || order.getStatus() == previousStatus) {
+            return;
+        }
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        try {
+            if (day.isBefore(coveredSince())) {
+                return;
+            }
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AnalyticsRollup.class);
+            if (previousStatus != null) {
+                for (AnalyticsRollup row : contributions(order, day.toString(), previousStatus).values()) {
+                    upsert(bulkOps, row, -1);
+                }
+            }
+            for (AnalyticsRollup row : contributions(order, day.toString(), order.getStatus()).values()) {
+                upsert(bulkOps, row, 1);
+            }
+            bulkOps.execute();
+        } catch (Exception e) {
+            log.error("Error updating analytics rollups for order {}, marking {} stale: {}",
+                    order.getId(), day, e.getMessage(), e);
+            markStale(day);
+        }
+    }
+
+    /**
+     * Recompute every rollup row of one day from the orders created on it.
+     * Status changes made while the day is being rebuilt may be counted
+     * twice or not at all; the next rebuild of the day corrects them.
+     */
+    public void rebuildDay(LocalDate day) {
+        String dayString = day.toString();
+        Query query = Query.query(Criteria.where("createdAt")
+                .gte(day.atStartOfDay()).lt(day.plusDays(1).atStartOfDay()))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        query.fields().include("buyerId").include("status").include("createdAt").include("orderItems");
+
+        // Later orders come last, so each row keeps the newest product name
+        Map<String, AnalyticsRollup> rows = new LinkedHashMap<>();
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.filter(order -> order.getStatus() != null && order.getOrderItems() != null)
+                    .forEach(order -> contributions(order, dayString, order.getStatus())
+                            .forEach((id, row) -> rows.merge(id, row, AnalyticsRollupService::addRow)));
+        }
+
+        if (!rows.isEmpty()) {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AnalyticsRollup.class);
+            for (AnalyticsRollup row : rows.values()) {
+                bulkOps.replaceOne(Query.query(Criteria.where("_id").is(row.getId())), row,
+                        FindAndReplaceOptions.options().upsert());
+            }
+            bulkOps.execute();
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("day").is(dayString).and("_id").nin(rows.keySet())),
+                AnalyticsRollup.class);
+        log.info("Rebuilt {} analytics rollup rows of {}", rows.size(), day);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.rollups.stale-rebuild-interval-ms:300000}")
+    public void rebuildStaleDays() {
+        rebuildDays(staleDays());
+    }
+
+    /**
+     * Rebuild the stale days and the last reconcile-days days, stale or not.
+     */
+    @Scheduled(cron = "${analytics.rollups.reconcile-cron:0 30 3 * * *}")
+    public void reconcileRecentDays() {
+        Set<LocalDate> days = new TreeSet<>(staleDays());
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < reconcileDays; i++) {
+            days.add(today.minusDays(i));
+        }
+        rebuildDays(days);
+    }
+
+    /**
+     * Each day is unmarked before its rebuild, so a failure recorded while
+     * it runs marks it stale again, and re-marked if the rebuild fails.
+     */
+    private void rebuildDays(Collection<LocalDate> days) {
+        LocalDate coveredSince = coveredSince();
+        for (LocalDate day : days) {
+            if (day.isBefore(coveredSince)) {
+                continue;
+            }
+            try {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(STATE_ID)),
+                        new Update().pull("staleDays", day.toString()), AnalyticsRollupState.class);
+                rebuildDay(day);
+            } catch (Exception e) {
+                log.error("Error rebuilding analytics rollups of {}: {}", day, e.getMessage(), e);
+                markStale(day);
+            }
+        }
+    }
+
+    private void markStale(LocalDate day) {
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(STATE_ID)),
+                    new Update().addToSet("staleDays", day.toString()), AnalyticsRollupState.class);
+        } catch (Exception e) {
+            log.error("Error marking analytics rollups of {} stale: {}", day, e.getMessage(), e);
+        }
+    }
+
+    private Set<LocalDate> staleDays() {
+        AnalyticsRollupState state = mongoTemplate.findById(STATE_ID, AnalyticsRollupState.class);
+        Set<LocalDate> days = new TreeSet<>();
+        if (state != null && state.getStaleDays() != null) {
+            state.getStaleDays().forEach(day -> days.add(LocalDate.parse(day)));
+        }
+        return days;
+    }
+
+    public PurchaseSummaryDTO getPurchaseAnalytics(
+            String buyerId,
+            Order.OrderStatus status,
+            LocalDateTime startDate,
+            LocalDateTime endDate) {
+
+        DaySpan span = coveredDays(startDate, endDate, coveredSince(), LocalDate.now());
+        if (span == null) {
+            return orderRepo.getPurchaseAnalytics(buyerId, status, startDate, endDate);
+        }
+        Set<LocalDate> staleDays = staleDays();
+        AnalyticsTotalsDTO totals = merge(
+                sumRollups(Scope.BUYER, buyerId, status, false, span, staleDays),
+                orderRepo.sumPurchases(buyerId, status, uncoveredWindows(startDate, endDate, span, staleDays)));
+
+        List<ProductAnalyticsDTO> products = totals.getProducts().stream()
+                .map(product -> ProductAnalyticsDTO.builder()
+                        .productId(product.getProductId())
+                        .productName(product.getProductName())
+                        .orderCount((int) product.getOrders())
+                        .totalQuantity((int) product.getQuantity())
+                        .totalSpent(product.getAmount())
+                        .build())
+                .toList();
+
+        return PurchaseSummaryDTO.builder()
+                .totalSpent(sum(products, ProductAnalyticsDTO::getTotalSpent))
+                .orderCount((int) totals.getOrderCount())
+                .productCount(products.size())
+                .mostPurchasedProducts(top(products, ProductAnalyticsDTO::getOrderCount, ProductAnalyticsDTO::getProductId))
+                .topSpendingProducts(top(products, ProductAnalyticsDTO::getTotalSpent, ProductAnalyticsDTO::getProductId))
+                .build();
+    }
+
+    public SellerAnalyticsSummaryDTO getSellerAnalytics(
+            String sellerId,
+            Order.OrderStatus status,
+            LocalDateTime startDate,
+            LocalDateTime endDate) {
+
+        DaySpan span = coveredDays(startDate, endDate, coveredSince(), LocalDate.now());
+        if (span == null) {
+            return orderRepo.getSellerAnalytics(sellerId, status, startDate, endDate);
+        }
+        // Without a status filter FAILED orders are left out, as with raw orders
+        Set<LocalDate> staleDays = staleDays();
+        AnalyticsTotalsDTO totals = merge(
+                sumRollups(Scope.SELLER, sellerId, status, status == null, span, staleDays),
+                orderRepo.sumSellerSales(sellerId, status, uncoveredWindows(startDate, endDate, span, staleDays)));
+
+        List<SellerProductAnalyticsDTO> products = totals.getProducts().stream()
+                .map(product -> SellerProductAnalyticsDTO.builder()
+                        .productId(product.getProductId())
+                        .productName(product.getProductName())
+                        .orderCount((int) product.getOrders())
+                        .unitsSold((int) product.getQuantity())
+                        .totalRevenue(product.getAmount())
+                        .build())
+                .toList();
+
+        return SellerAnalyticsSummaryDTO.builder()
+                .totalRevenue(sum(products, SellerProductAnalyticsDTO::getTotalRevenue))
+                .totalOrders((int) totals.getOrderCount())
+                .totalUnitsSold((int) sum(products, SellerProductAnalyticsDTO::getUnitsSold))
+                .productCount(products.size())
+                .bestSellingProducts(top(products, SellerProductAnalyticsDTO::getUnitsSold, SellerProductAnalyticsDTO::getProductId))
+                .topRevenueProducts(top(products, SellerProductAnalyticsDTO::getTotalRevenue, SellerProductAnalyticsDTO::getProductId))
+                .build();
+    }
+
+    /**
+     * The rollup rows an order counts towards in the given status, one per
+     * seller product, seller, buyer product and buyer, by row ID.
+     */
+    private static Map<String, AnalyticsRollup> contributions(Order order, String day, Order.OrderStatus status) {
+        Map<String, AnalyticsRollup> rows = new LinkedHashMap<>();
+        addCountRow(rows, Scope.BUYER, order.getBuyerId(), day, status);
+        Set<String> sellers = new HashSet<>();
+        for (OrderItem item : order.getOrderItems()) {
+            addItem(rows, Scope.BUYER, order.getBuyerId(), day, status, item);
+            if (item.getSellerId() != null) {
+                if (sellers.add(item.getSellerId())) {
+                    addCountRow(rows, Scope.SELLER, item.getSellerId(), day, status);
+                }
+                addItem(rows, Scope.SELLER, item.getSellerId(), day, status, item);
+            }
+        }
+        return rows;
+    }
+
+    private static void addCountRow(Map<String, AnalyticsRollup> rows, Scope scope, String ownerId,
+            String day, Order.OrderStatus status) {
+        AnalyticsRollup row = AnalyticsRollup.builder()
+                .id(rowId(scope, ownerId, day, status, null))
+                .scope(scope)
+                .ownerId(ownerId)
+                .day(day)
+                .status(status)
+                .orders(1L)
+                .build();
+        rows.put(row.getId(), row);
+    }
+
+    private static void addItem(Map<String, AnalyticsRollup> rows, Scope scope, String ownerId,
+            String day, Order.OrderStatus status, OrderItem item) {
+        int quantity = item.getQuantity() != null ? item.getQuantity() : 0;
+        AnalyticsRollup row = AnalyticsRollup.builder()
+                .id(rowId(scope, ownerId, day, status, item.getProductId()))
+                .scope(scope)
+                .ownerId(ownerId)
+                .day(day)
+                .status(status)
+                .productId(item.getProductId())
+                .productName(item.getProductName())
+                .orders(1L)
+                .quantity((long) quantity)
+                .amount(item.getPrice() != null ? item.getPrice() * quantity : 0.0)
+                .build();
+        rows.merge(row.getId(), row, AnalyticsRollupService::addRow);
+    }
+
+    private static String rowId(Scope scope, String ownerId, String day, Order.OrderStatus status, String productId) {
+        return String.join("|", scope.name(), ownerId, day, status.name(), productId != null ? productId : "*");
+    }
+
+    /**
+     * Sum of two figures of the same row; the product name of the second wins.
+     */
+    private static AnalyticsRollup addRow(AnalyticsRollup first, AnalyticsRollup second) {
+        first.setOrders(first.getOrders() + second.getOrders());
+        if (first.getProductId() != null) {
+            first.setProductName(second.getProductName());
+            first.setQuantity(first.getQuantity() + second.getQuantity());
+            first.setAmount(first.getAmount() + second.getAmount());
+        }
+        return first;
+    }
+
+    private static void upsert(BulkOperations bulkOps, AnalyticsRollup row, int sign) {
+        Update update = new Update()
+                .setOnInsert("scope", row.getScope())
+                .setOnInsert("ownerId", row.getOwnerId())
+                .setOnInsert("day", row.getDay())
+                .setOnInsert("status", row.getStatus())
+                .setOnInsert("productId", row.getProductId())
+                .inc("orders", sign * row.getOrders());
+        if (row.getProductId() != null) {
+            update.set("productName", row.getProductName())
+                    .inc("quantity", sign * row.getQuantity())
+                    .inc("amount", sign * row.getAmount());
+        }
+        bulkOps.upsert(Query.query(Criteria.where("_id").is(row.getId())), update);
+    }
+
+    /**
+     * Sum the rollup rows of one seller or buyer over the covered days that
+     * are not stale, grouped by product; the null product group is the order
+     * count. Rows are read oldest day first, so each product is named as on
+     * its newest day.
+     */
+    private AnalyticsTotalsDTO sumRollups(Scope scope, String ownerId, Order.OrderStatus status,
+            boolean excludeFailed, DaySpan span, Set<LocalDate> staleDays) {
+        Criteria criteria = Criteria.where("scope").is(scope).and("ownerId").is(ownerId);
+        Criteria day = criteria.and("day").gte(span.first().toString());
+        if (span.last() != null) {
+            day.lte(span.last().toString());
+        }
+        if (!staleDays.isEmpty()) {
+            day.nin(staleDays.stream().map(LocalDate::toString).toList());
+        }
+        if (status != null) {
+            criteria.and("status").is(status);
+        } else if (excludeFailed) {
+            criteria.and("status").ne(Order.OrderStatus.FAILED);
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.sort(Sort.Direction.ASC, "day"),
+                Aggregation.group("productId")
+                        .last("productName").as("productName")
+                        .sum("orders").as("orders")
+                        .sum("quantity").as("quantity")
+                        .sum("amount").as("amount"),
+                Aggregation.match(Criteria.where("orders").gt(0)));
+
+        long orderCount = 0;
+        List<ProductTotals> products = new ArrayList<>();
+        for (Document group : mongoTemplate.aggregate(aggregation, AnalyticsRollup.class, Document.class)) {
+            if (group.get("_id") == null) {
+                orderCount = number(group, "orders").longValue();
+            } else {
+                products.add(ProductTotals.builder()
+                        .productId(group.getString("_id"))
+                        .productName(group.getString("productName"))
+                        .orders(number(group, "orders").longValue())
+                        .quantity(number(group, "quantity").longValue())
+                        .amount(number(group, "amount").doubleValue())
+                        .build());
+            }
+        }
+        return AnalyticsTotalsDTO.builder().orderCount(orderCount).products(products).build();
+    }
+
+    private static Number number(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number number ? number : 0;
+    }
+
+    private static AnalyticsTotalsDTO merge(AnalyticsTotalsDTO first, AnalyticsTotalsDTO second) {
+        Map<String, ProductTotals> products = new LinkedHashMap<>();
+        for (AnalyticsTotalsDTO totals : List.of(first, second)) {
+            for (ProductTotals product : totals.getProducts()) {
+                ProductTotals merged = products.computeIfAbsent(product.getProductId(),
+                        id -> ProductTotals.builder().productId(id).build());
+                if (merged.getProductName() == null) {
+                    merged.setProductName(product.getProductName());
+                }
+                merged.setOrders(merged.getOrders() + product.getOrders());
+                merged.setQuantity(merged.getQuantity() + product.getQuantity());
+                merged.setAmount(merged.getAmount() + product.getAmount());
+            }
+        }
+        return AnalyticsTotalsDTO.builder()
+                .orderCount(first.getOrderCount() + second.getOrderCount())
+                .products(new ArrayList<>(products.values()))
+                .build();
+    }
+
+    private static <T> double sum(List<T> products, ToDoubleFunction<T> value) {
+        return products.stream().mapToDouble(value).sum();
+    }
+
+    private static <T> List<T> top(List<T> products, ToDoubleFunction<T> value,
+            Function<T, String> productId) {
+        return products.stream()
+                .sorted(Comparator.comparingDouble(value).reversed()
+                        .thenComparing(productId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(TOP_PRODUCTS)
+                .toList();
+    }
+
+    /**
+     * Whole days of the range that the rollups cover, or null if there are
+     * none and the range is better answered from the orders alone.
+     *
+     * @param endDate inclusive end of the range, or null for open ended
+     */
+    static DaySpan coveredDays(LocalDateTime startDate, LocalDateTime endDate, LocalDate coveredSince, LocalDate today) {
+        LocalDate first = startDate == null ? null
+                : startDate.equals(startDate.toLocalDate().atStartOfDay())
+                        ? startDate.toLocalDate()
+                        : startDate.toLocalDate().plusDays(1);
+        if (first == null || first.isBefore(coveredSince)) {
+            first = coveredSince;
+        }
+        // A day is whole if the range reaches its last instant
+        LocalDate last = endDate == null ? null : endDate.plusNanos(1).toLocalDate().minusDays(1);
+
+        if (first.isAfter(last != null && last.isBefore(today) ? last : today)) {
+            return null;
+        }
+        return new DaySpan(first, last);
+    }
+
+    /**
+     * The parts of the range before and after the covered days, and the
+     * stale days within them.
+     */
+    static List<TimeWindow> uncoveredWindows(LocalDateTime startDate, LocalDateTime endDate, DaySpan span,
+            Set<LocalDate> staleDays) {
+        List<TimeWindow> windows = new ArrayList<>();
+        LocalDateTime coveredFrom = span.first().atStartOfDay();
+        if (startDate == null || startDate.isBefore(coveredFrom)) {
+            windows.add(new TimeWindow(startDate, coveredFrom));
+        }
+        for (LocalDate day : staleDays) {
+            if (!day.isBefore(span.first()) && (span.last() == null || !day.isAfter(span.last()))) {
+                windows.add(new TimeWindow(day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+            }
+        }
+        if (span.last() != null) {
+            LocalDateTime coveredUntil = span.last().plusDays(1).atStartOfDay();
+            LocalDateTime until = endDate.plusNanos(1);
+            if (until.isAfter(coveredUntil)) {
+                windows.add(new TimeWindow(coveredUntil, until));
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * First day covered by the rollups. Set on first use to tomorrow, since
+     * today's earlier orders were never counted, and shared by all instances.
+     */
+    private LocalDate coveredSince() {
+        LocalDate current = since;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (since == null) {
+                mongoTemplate.indexOps(AnalyticsRollup.class).ensureIndex(new Index()
+                        .on("scope", Sort.Direction.ASC)
+                        .on("ownerId", Sort.Direction.ASC)
+                        .on("day", Sort.Direction.ASC));
+                // Rebuilds read the orders and remove the rows of one day
+                mongoTemplate.indexOps(AnalyticsRollup.class).ensureIndex(new Index()
+                        .on("day", Sort.Direction.ASC));
+                mongoTemplate.indexOps(Order.class).ensureIndex(new Index()
+                        .on("createdAt", Sort.Direction.ASC));
+                AnalyticsRollupState state = mongoTemplate.findAndModify(
+                        Query.query(Criteria.where("_id").is(STATE_ID)),
+                        new Update().setOnInsert("since", LocalDate.now().plusDays(1).toString()),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        AnalyticsRollupState.class);
+                since = LocalDate.parse(state.getSince());
+                log.info("Analytics rollups cover orders created since {}", since);
+            }
+            return since;
+        }
+    }
+
+    /**
+     * Whole days from first to last inclusive; a null last is open ended.
+     */
+    record DaySpan(LocalDate first, LocalDate last) {
+    }
+}
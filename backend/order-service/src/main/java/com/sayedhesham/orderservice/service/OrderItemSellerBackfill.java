@@ -0,0 +1,136 @@
+package com.sayedhesham.orderservice.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.orderservice.model.MigrationState;
+import com.sayedhesham.orderservice.model.Order;
+import com.sayedhesham.orderservice.model.OrderItem;
+import com.sayedhesham.orderservice.model.Product;
+import com.sayedhesham.orderservice.repository.ProductRepository;
+
+/**
+ * Keeps orders queryable by seller. Seller queries match on the sellerId
+ * stamped on each order item, served by a multikey index on
+ * (orderItems.sellerId, status, createdAt).
+ *
+ * Orders placed before items carried a sellerId are backfilled at startup
+ * from the products collection. Items of products that no longer exist get
+ * an explicit null, so they are not looked at again. New orders carry a
+ * sellerId from the start, so once a backfill completes it is recorded in
+ * migration_state and later starts skip the scan.
+ */
+@Service
+public class OrderItemSellerBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderItemSellerBackfill.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String MIGRATION_ID = "order_item_seller_backfill";
+    private static final int MIGRATION_VERSION = 1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductRepository prodRepo;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(Order.class).ensureIndex(new Index()
+                .on("orderItems.sellerId", Sort.Direction.ASC)
+                .on("status", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.DESC));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        MigrationState state = mongoTemplate.findById(MIGRATION_ID, MigrationState.class);
+        if (state != null && state.getVersion() >= MIGRATION_VERSION) {
+            return;
+        }
+
+        Query query = Query.query(Criteria.where("orderItems")
+                .elemMatch(Criteria.where("sellerId").exists(false)));
+        query.fields().include("_id").include("orderItems.productId");
+
+        long updated = 0;
+        List<Order> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                batch.add(order);
+                if (batch.size() == BATCH_SIZE) {
+                    updated += stampSellers(batch);
+                    batch.clear();
+                }
+            }
+        }
+        updated += stampSellers(batch);
+
+        mongoTemplate.save(MigrationState.builder()
+                .id(MIGRATION_ID)
+                .version(MIGRATION_VERSION)
+                .completedAt(new Date())
+                .build());
+        log.info("Backfilled item sellers of {} orders", updated);
+    }
+
+    /**
+     * Set sellerId on every item of the given orders, with one product
+     * lookup and one bulk write for the whole batch.
+     */
+    private long stampSellers(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        Set<String> productIds = new LinkedHashSet<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getOrderItems()) {
+                productIds.add(item.getProductId());
+            }
+        }
+        Map<String, String> sellerByProduct = new HashMap<>();
+        for (Product product : prodRepo.findAllById(productIds)) {
+            sellerByProduct.put(product.getId(), product.getUserId());
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        for (Order order : orders) {
+            Update update = new Update();
+            Set<String> orderProductIds = new LinkedHashSet<>();
+            for (OrderItem item : order.getOrderItems()) {
+                orderProductIds.add(item.getProductId());
+            }
+            // One array filter per distinct product of the order
+            int i = 0;
+            for (String productId : orderProductIds) {
+                String identifier = "p" + i++;
+                update.set("orderItems.$[" + identifier + "].sellerId", sellerByProduct.get(productId));
+                update.filterArray(Criteria.where(identifier + ".productId").is(productId));
+            }
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(order.getId())), update);
+        }
+        return bulkOps.execute().getModifiedCount();
+    }
+}
@@ -1,6 +1,5 @@
 package com.sayedhesham.orderservice.service;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -43,10 +42,8 @@ public class OrderSagaOrchestrator {
     public Order startOrderSaga(OrderDTO orderDTO) {
         Order order = orderService.create(orderDTO);
         
-        Map<String, Integer> productIdToQuantityMap = new HashMap<>();
-        for (com.sayedhesham.orderservice.dto.OrderItemDTO item : orderDTO.getOrderItems()) {
-            productIdToQuantityMap.put(item.getProductId(), item.getQuantity());
-        }
+        // Duplicate product lines are reserved as one, matching the order items
+        Map<String, Integer> productIdToQuantityMap = OrderService.mergeOrderLines(orderDTO.getOrderItems());
         
         ProductReservationRequest productReservationRequest = ProductReservationRequest.builder()
                 .orderId(order.getId())
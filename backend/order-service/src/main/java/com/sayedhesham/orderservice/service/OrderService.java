@@ -2,8 +2,11 @@ package com.sayedhesham.orderservice.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -27,6 +30,7 @@ import com.sayedhesham.orderservice.dto.SellerAnalyticsSummaryDTO;
 import com.sayedhesham.orderservice.dto.UnavailableItemDTO;
 import com.sayedhesham.orderservice.exceptions.InvalidStatusTransitionException;
 import com.sayedhesham.orderservice.exceptions.OrderCannotBeCancelledException;
+import com.sayedhesham.orderservice.exceptions.OrderValidationException;
 import com.sayedhesham.orderservice.exceptions.ServiceCommunicationException;
 import com.sayedhesham.orderservice.exceptions.UnauthorizedOrderAccessException;
 import com.sayedhesham.orderservice.model.Order;
@@ -41,6 +45,12 @@ public class OrderService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
 
+    // Reorder only checks stock and price and shows the first image
+    private static final String REORDER_PRODUCT_FIELDS = "price,quantity,imageMediaIds";
+
+    // Saga status updates retried when the order changes concurrently
+    private static final int MAX_STATUS_ATTEMPTS = 3;
+
     @Autowired
     private ProductRepository prodRepo;
 
@@ -50,40 +60,60 @@ public class OrderService {
     @Autowired
     private ProductClient productClient;
 
+    @Autowired
+    private SellerProductIdCache sellerProductIds;
+
+    @Autowired
+    private AnalyticsRollupService analyticsRollups;
+
     public Order create(OrderDTO orderDTO) {
         System.out.println("OrderService: Starting order creation");
         String userId = Utils.getCurrentUserId();
         System.out.println("OrderService: User ID - " + userId);
 
-        // Build order items with product details
+        // Merge duplicate product lines, keeping the cart order
+        Map<String, Integer> quantities = mergeOrderLines(orderDTO.getOrderItems());
+
+        // Fetch every product of the order in one query
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : prodRepo.findOrderLinesByIdIn(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        log.debug("Found {} of {} products of the order", products.size(), quantities.size());
+
+        // Build order items with product details, collecting every problem
         List<OrderItem> orderItems = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
         double totalPrice = 0.0;
 
-        for (OrderItemDTO itemDTO : orderDTO.getOrderItems()) {
-            System.out.println("OrderService: Processing order item");
-            // Fetch product details
-            Product product = prodRepo.findById(itemDTO.getProductId())
-                    .orElseThrow(() -> new IllegalArgumentException(
-                    "Product not found: " + itemDTO.getProductId()));
-
-            System.out.println("OrderService: Product found");
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null) {
+                problems.add("Product not found: " + line.getKey());
+                continue;
+            }
 
             // Validate stock availability
-            if (product.getQuantity() < itemDTO.getQuantity()) {
-                throw new IllegalArgumentException(
-                        "Insufficient stock for product: " + product.getName());
+            if (product.getQuantity() == null || product.getQuantity() < line.getValue()) {
+                problems.add("Insufficient stock for product: " + product.getName());
+                continue;
             }
 
             // Create order item with full details
             OrderItem orderItem = OrderItem.builder()
                     .productId(product.getId())
                     .productName(product.getName())
-                    .quantity(itemDTO.getQuantity())
+                    .quantity(line.getValue())
                     .price(product.getPrice())
+                    .sellerId(product.getUserId())
                     .build();
 
             orderItems.add(orderItem);
-            totalPrice += product.getPrice() * itemDTO.getQuantity();
+            totalPrice += product.getPrice() * line.getValue();
+        }
+
+        if (!problems.isEmpty()) {
+            throw new OrderValidationException(problems);
         }
 
         // Create and save order
@@ -112,24 +142,40 @@ public class OrderService {
                 .build();
 
         System.out.println("OrderService: Saving order");
-        return orderRepo.save(order);
+        Order saved = orderRepo.save(order);
+        analyticsRollups.recordStatusChange(saved, null);
+        return saved;
     }
 
-    public void updateOrderStatus(String orderId, Order.OrderStatus status) {
-        Order order = orderRepo.findById(orderId)
-                .orElseThrow(() -> new IllegalArgumentException("Order not found: " + orderId));
-
-        if (order.getStatusHistory() == null) {
-            order.setStatusHistory(new ArrayList<>());
+    /**
+     * Quantity per product ID, adding up lines of the same product.
+     */
+    public static Map<String, Integer> mergeOrderLines(OrderItemDTO[] items) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemDTO item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
-        order.getStatusHistory().add(StatusHistory.builder()
-                .status(status)
-                .changedAt(LocalDateTime.now())
-                .build());
+        return quantities;
+    }
 
-        order.setStatus(status);
-        order.setUpdatedAt(LocalDateTime.now());
-        orderRepo.save(order);
+    /**
+     * Set an order's status from the saga, whatever its current status. The
+     * change is a conditional transition from the status just read, retried
+     * if the order changed in between, so the analytics rollups move the
+     * order out of the status it really had.
+     */
+    public void updateOrderStatus(String orderId, Order.OrderStatus status) {
+        for (int attempt = 0; attempt < MAX_STATUS_ATTEMPTS; attempt++) {
+            Order order = orderRepo.findById(orderId)
+                    .orElseThrow(() -> new IllegalArgumentException("Order not found: " + orderId));
+            Order.OrderStatus oldStatus = order.getStatus();
+            Order updated = orderRepo.transitionStatus(orderId, oldStatus, status);
+            if (updated != null) {
+                analyticsRollups.recordStatusChange(updated, oldStatus);
+                return;
+            }
+        }
+        throw new IllegalStateException("Order " + orderId + " kept changing status, could not set it to " + status);
     }
 
     public Page<Order> getMyOrders(
@@ -159,7 +205,7 @@ public class OrderService {
             LocalDateTime startDate,
             LocalDateTime endDate) {
         
-        PurchaseSummaryDTO summary = orderRepo.getPurchaseAnalytics(
+        PurchaseSummaryDTO summary = analyticsRollups.getPurchaseAnalytics(
             userId, status, startDate, endDate);
         
         // Add date range to response
@@ -174,8 +220,8 @@ public class OrderService {
     }
     
     /**
-     * Get seller analytics by retrieving product IDs from product-service
-     * and aggregating order data. Uses automatic token propagation via Feign interceptor.
+     * Get seller analytics by aggregating the order items stamped with the
+     * authenticated seller's ID.
      * @param status Order status filter (optional)
      * @param startDate Start date for filtering (optional)
      * @param endDate End date for filtering (optional)
@@ -189,15 +235,10 @@ public class OrderService {
         System.out.println("[OrderService] Starting getSellerAnalytics");
         System.out.println("[OrderService] Filters - Status: " + status + ", StartDate: " + startDate + ", EndDate: " + endDate);
         
-        // Get seller's product IDs from product-service (token propagated automatically)
-        System.out.println("[OrderService] Calling product-service to get seller's product IDs");
-        List<String> productIds = productClient.getSellerProductIds();
-        System.out.println("[OrderService] Retrieved " + productIds.size() + " product IDs from product-service");
-        
         // Get analytics from repository
         System.out.println("[OrderService] Querying order repository for analytics");
-        SellerAnalyticsSummaryDTO summary = orderRepo.getSellerAnalytics(
-            productIds, status, startDate, endDate);
+        SellerAnalyticsSummaryDTO summary = analyticsRollups.getSellerAnalytics(
+            Utils.getCurrentUserId(), status, startDate, endDate);
         System.out.println("[OrderService] Analytics retrieved successfully");
         
         // Add date range to response
@@ -229,11 +270,8 @@ public class OrderService {
         System.out.println("[OrderService] Starting getSellerOrders");
         System.out.println("[OrderService] Filters - Status: " + status + ", StartDate: " + startDate + ", EndDate: " + endDate);
         
-        List<String> productIds = productClient.getSellerProductIds();
-        System.out.println("[OrderService] Retrieved " + productIds.size() + " product IDs from product-service");
-        
         Page<Order> orders = orderRepo.findSellerOrders(
-            productIds, status, startDate, endDate, pageable);
+            Utils.getCurrentUserId(), status, startDate, endDate, pageable);
         System.out.println("[OrderService] Retrieved " + orders.getTotalElements() + " orders containing seller's products");
         
         return orders;
@@ -256,7 +294,7 @@ public class OrderService {
             .orElseThrow(() -> new IllegalArgumentException("Order not found: " + orderId));
         
         // 2. Validate seller owns products in the order
-        if (!isSellerOrderOwner(order)) {
+        if (!isSellerOrderOwner(order, sellerId)) {
             throw new UnauthorizedOrderAccessException(
                 "You are not authorized to update this order. You don't own any products in this order."
             );
@@ -269,20 +307,15 @@ public class OrderService {
             );
         }
         
-        // 4. Update status
+        // 4. Update status, unless it changed since it was validated
         Order.OrderStatus oldStatus = order.getStatus();
-
-        if (order.getStatusHistory() == null) {
-            order.setStatusHistory(new ArrayList<>());
+        Order updated = orderRepo.transitionStatus(orderId, oldStatus, newStatus);
+        if (updated == null) {
+            throw new InvalidStatusTransitionException(
+                String.format("Order status changed from %s while updating it to %s", oldStatus, newStatus)
+            );
         }
-        order.getStatusHistory().add(StatusHistory.builder()
-                .status(newStatus)
-                .changedAt(LocalDateTime.now())
-                .build());
-
-        order.setStatus(newStatus);
-        order.setUpdatedAt(LocalDateTime.now());
-        orderRepo.save(order);
+        analyticsRollups.recordStatusChange(updated, oldStatus);
         
         log.info("Order {} status updated from {} to {} by seller {}", 
                  orderId, oldStatus, newStatus, sellerId);
@@ -317,7 +350,7 @@ public class OrderService {
         if ("CLIENT".equals(userRole)) {
             isAuthorized = order.getBuyerId().equals(userId);
         } else if ("SELLER".equals(userRole)) {
-            isAuthorized = isSellerOrderOwner(order);
+            isAuthorized = isSellerOrderOwner(order, userId);
         }
         
         if (!isAuthorized) {
@@ -336,20 +369,15 @@ public class OrderService {
             );
         }
         
-        // 4. Update status to CANCELLED
+        // 4. Update status to CANCELLED, unless it changed since it was validated
         Order.OrderStatus oldStatus = order.getStatus();
-
-        if (order.getStatusHistory() == null) {
-            order.setStatusHistory(new ArrayList<>());
+        Order updated = orderRepo.transitionStatus(orderId, oldStatus, Order.OrderStatus.CANCELLED);
+        if (updated == null) {
+            throw new OrderCannotBeCancelledException(
+                String.format("Order status changed from %s while cancelling it", oldStatus)
+            );
         }
-        order.getStatusHistory().add(StatusHistory.builder()
-                .status(Order.OrderStatus.CANCELLED)
-                .changedAt(LocalDateTime.now())
-                .build());
-
-        order.setStatus(Order.OrderStatus.CANCELLED);
-        order.setUpdatedAt(LocalDateTime.now());
-        orderRepo.save(order);
+        analyticsRollups.recordStatusChange(updated, oldStatus);
         
         // 5. Trigger inventory release if order was PROCESSING
         if (oldStatus == Order.OrderStatus.PROCESSING) {
@@ -372,13 +400,25 @@ public class OrderService {
      * Validate if seller owns any products in the order
      * 
      * @param order The order to check
+     * @param sellerId The authenticated seller's user ID
      * @return true if seller owns at least one product in the order
      */
-    private boolean isSellerOrderOwner(Order order) {
-        // Get seller's product IDs via Feign client
-        List<String> sellerProductIds;
+    private boolean isSellerOrderOwner(Order order, String sellerId) {
+        boolean unstampedItems = false;
+        for (OrderItem item : order.getOrderItems()) {
+            if (sellerId.equals(item.getSellerId())) {
+                return true;
+            }
+            unstampedItems |= item.getSellerId() == null;
+        }
+        if (!unstampedItems) {
+            return false;
+        }
+
+        // Items not yet backfilled with their seller: check the seller's cached product IDs
+        Set<String> productIds;
         try {
-            sellerProductIds = productClient.getSellerProductIds();
+            productIds = sellerProductIds.getProductIds(sellerId);
         } catch (Exception e) {
             log.error("Error fetching seller product IDs: {}", e.getMessage());
             throw new ServiceCommunicationException("Unable to verify product ownership");
@@ -386,7 +426,7 @@ public class OrderService {
         
         // Check if any order item matches seller's products
         return order.getOrderItems().stream()
-            .anyMatch(item -> sellerProductIds.contains(item.getProductId()));
+            .anyMatch(item -> productIds.contains(item.getProductId()));
     }
 
     /**
@@ -441,7 +481,7 @@ public class OrderService {
         
         List<Product> currentProducts;
         try {
-            currentProducts = productClient.getProductsByIds(productIds);
+            currentProducts = productClient.getProductsByIds(productIds, REORDER_PRODUCT_FIELDS);
             log.info("Fetched {} current product records", currentProducts.size());
         } catch (Exception e) {
             log.error("Failed to fetch product data: {}", e.getMessage());
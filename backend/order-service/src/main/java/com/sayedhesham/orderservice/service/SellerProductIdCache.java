@@ -0,0 +1,148 @@
+package com.sayedhesham.orderservice.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.orderservice.client.ProductClient;
+
+import feign.FeignException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-seller cache of the product IDs each seller owns, kept as hash sets so
+ * ownership checks cost one lookup per order item and no remote call. Only
+ * needed for order items that carry no sellerId yet.
+ *
+ * product-service announces every change of a seller's ID set (product
+ * created or deleted) with its new catalog version; an entry older than the
+ * announced version is refetched on its next use. Entries are also
+ * revalidated with a conditional request once they are older than the
+ * revalidation interval, which covers missed events at the cost of a 304.
+ */
+@Service
+public class SellerProductIdCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SellerProductIdCache.class);
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    @Autowired
+    private ProductClient productClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${product.seller-ids.revalidate-after-ms:300000}")
+    private long revalidateAfterMillis;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Newest catalog version announced per seller
+    private final Map<String, Long> announcedVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Product IDs of the authenticated seller. On a miss the IDs are fetched
+     * from product-service with the seller's own Authorization header, so
+     * this must be called while serving that seller's request.
+     *
+     * @param sellerId ID of the authenticated seller
+     * @return unmodifiable set of the seller's product IDs
+     */
+    public Set<String> getProductIds(String sellerId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(sellerId);
+        if (entry != null && !isSuperseded(sellerId, entry) && now - entry.checkedAt() < revalidateAfterMillis) {
+            return entry.productIds();
+        }
+
+        Entry refreshed = fetch(entry, now);
+        entries.put(sellerId, refreshed);
+        return refreshed.productIds();
+    }
+
+    /**
+     * Every order-service instance keeps its own cache, so every instance
+     * consumes the topic in its own group, starting from the latest events.
+     */
+    @KafkaListener(topics = "${kafka.topic.product.catalog.changed}",
+            groupId = "orderservice-catalog-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    public void handleCatalogChanged(String message) {
+        try {
+            CatalogChangedEvent event = objectMapper.readValue(message, CatalogChangedEvent.class);
+            if (event.getSellerId() == null) {
+                log.warn("Received catalog changed event without sellerId: {}", message);
+                return;
+            }
+            announcedVersions.merge(event.getSellerId(), event.getVersion(), Math::max);
+            log.debug("Catalog of seller {} changed to version {}", event.getSellerId(), event.getVersion());
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing catalog changed event: {}", message, e);
+        }
+    }
+
+    private boolean isSuperseded(String sellerId, Entry entry) {
+        Long announced = announcedVersions.get(sellerId);
+        return announced != null && announced > entry.version();
+    }
+
+    private Entry fetch(Entry cached, long now) {
+        String etag = cached != null ? "\"" + cached.version() + "\"" : null;
+        try {
+            ResponseEntity<List<String>> response = productClient.getSellerProductIds(etag);
+            List<String> productIds = response.getBody() != null ? response.getBody() : List.of();
+            long version = parseVersion(response.getHeaders().getFirst(ProductClient.CATALOG_VERSION_HEADER));
+            log.info("Cached {} product IDs at catalog version {}", productIds.size(), version);
+            return new Entry(Set.copyOf(productIds), version, now);
+        } catch (FeignException e) {
+            if (e.status() == HTTP_NOT_MODIFIED && cached != null) {
+                return new Entry(cached.productIds(), cached.version(), now);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Catalog version from the response header, or -1 if it is missing so
+     * that any announced version replaces the entry.
+     */
+    private static long parseVersion(String header) {
+        if (header == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private record Entry(Set<String> productIds, long version, long checkedAt) {
+    }
+
+    // Event class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CatalogChangedEvent {
+        private String sellerId;
+        private long version;
+        private Long timestamp;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sayedhesham.orderservice.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+import com.sayedhesham.orderservice.repository.OrderRepositoryCustom.TimeWindow;
+import com.sayedhesham.orderservice.service.AnalyticsRollupService.DaySpan;
+
+class AnalyticsRollupServiceTest {
+
+    private static final LocalDate SINCE = LocalDate.of(2026, 1, 10);
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 1);
+
+    @Test
+    void coveredDays_WithWholeDays_ShouldCoverTheRange() {
+        DaySpan span = AnalyticsRollupService.coveredDays(
+                LocalDateTime.of(2026, 2, 1, 0, 0), LocalDateTime.of(2026, 2, 28, 23, 59, 59, 999_999_999), SINCE, TODAY);
+
+        assertEquals(new DaySpan(LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28)), span);
+    }
+
+    @Test
+    void coveredDays_WithPartialDays_ShouldLeaveThemOut() {
+        DaySpan span = AnalyticsRollupService.coveredDays(
+                LocalDateTime.of(2026, 2, 1, 8, 30), LocalDateTime.of(2026, 2, 28, 12, 0), SINCE, TODAY);
+
+        assertEquals(new DaySpan(LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 27)), span);
+    }
+
+    @Test
+    void coveredDays_WithStartBeforeRollups_ShouldStartAtFirstCoveredDay() {
+        DaySpan span = AnalyticsRollupService.coveredDays(null, null, SINCE, TODAY);
+
+        assertEquals(new DaySpan(SINCE, null), span);
+    }
+
+    @Test
+    void coveredDays_WithRangeBeforeRollupsOrInTheFuture_ShouldCoverNothing() {
+        assertNull(AnalyticsRollupService.coveredDays(
+                LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 9, 23, 59, 59, 999_999_999), SINCE, TODAY));
+        assertNull(AnalyticsRollupService.coveredDays(
+                LocalDateTime.of(2026, 3, 2, 0, 0), null, SINCE, TODAY));
+        assertNull(AnalyticsRollupService.coveredDays(
+                LocalDateTime.of(2026, 2, 1, 8, 0), LocalDateTime.of(2026, 2, 1, 18, 0), SINCE, TODAY));
+    }
+
+    @Test
+    void uncoveredWindows_ShouldReturnPartialDaysAtBothEnds() {
+        LocalDateTime start = LocalDateTime.of(2026, 2, 1, 8, 30);
+        LocalDateTime end = LocalDateTime.of(2026, 2, 28, 12, 0);
+        DaySpan span = new DaySpan(LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 27));
+
+        assertEquals(List.of(
+                new TimeWindow(start, LocalDateTime.of(2026, 2, 2, 0, 0)),
+                new TimeWindow(LocalDateTime.of(2026, 2, 28, 0, 0), end.plusNanos(1))),
+                AnalyticsRollupService.uncoveredWindows(start, end, span, Set.of()));
+    }
+
+    @Test
+    void uncoveredWindows_WithOpenRange_ShouldReturnEverythingBeforeRollups() {
+        DaySpan span = new DaySpan(SINCE, null);
+
+        assertEquals(List.of(new TimeWindow(null, SINCE.atStartOfDay())),
+                AnalyticsRollupService.uncoveredWindows(null, null, span, Set.of()));
+    }
+
+    @Test
+    void uncoveredWindows_ShouldAddStaleDaysWithinTheCoveredDays() {
+        LocalDateTime start = LocalDateTime.of(2026, 2, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2026, 2, 28, 23, 59, 59, 999_999_999);
+        DaySpan span = new DaySpan(LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28));
+        LocalDate stale = LocalDate.of(2026, 2, 14);
+
+        assertEquals(List.of(new TimeWindow(stale.atStartOfDay(), stale.plusDays(1).atStartOfDay())),
+                AnalyticsRollupService.uncoveredWindows(start, end, span, Set.of(stale, LocalDate.of(2026, 1, 20))));
+    }
+}
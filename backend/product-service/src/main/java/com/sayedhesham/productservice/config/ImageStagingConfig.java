@@ -0,0 +1,22 @@
+package com.sayedhesham.productservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+@Configuration
+public class ImageStagingConfig {
+
+    /**
+     * GridFS bucket where product images wait for media-service. Both
+     * services use the same database and bucket name.
+     */
+    @Bean
+    public GridFsTemplate imageStagingGridFsTemplate(MongoDatabaseFactory databaseFactory, MongoConverter converter,
+            @Value("${media.staging.bucket:product_image_staging}") String bucket) {
+        return new GridFsTemplate(databaseFactory, converter, bucket);
+    }
+}
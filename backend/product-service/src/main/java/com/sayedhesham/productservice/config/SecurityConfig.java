@@ -32,7 +32,8 @@ public class SecurityConfig {
      * - Allows all GET requests to the "/products" endpoint without
      * authentication. - Requires authentication for all other requests to
      * endpoints under "/products/**". - Permits all other requests to any other
-     * endpoints without authentication.
+     * endpoints without authentication. - Requires any authenticated user for
+     * POST "/batch"; order-service calls it with the buyer's propagated JWT.
      *
      * @param http the {@link HttpSecurity} object used to configure security
      * settings.
@@ -48,6 +49,7 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/categories").permitAll()
                 .requestMatchers(HttpMethod.GET, "/seller/ids").hasRole("SELLER")
                 .requestMatchers(HttpMethod.GET, "/**").permitAll()
+                .requestMatchers(HttpMethod.POST, "/batch").authenticated()
                 .anyRequest().hasRole("SELLER")
                 )
                 .sessionManagement(sesh -> sesh.sessionCreationPolicy(SessionCreationPolicy.STATELESS)).addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
@@ -5,17 +5,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.sayedhesham.productservice.dto.CategoryStatsDTO;
 import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.service.CategoryStatsService;
 
 @RestController
 @RequestMapping("/categories")
 public class CategoriesController {
 
+    @Autowired
+    private CategoryStatsService categoryStatsService;
+
     @GetMapping
     public ResponseEntity<List<Map<String, String>>> getAllCategories() {
         List<Map<String, String>> categories = Arrays.stream(Category.values())
@@ -26,4 +33,24 @@ public class CategoriesController {
                 .collect(Collectors.toList());
         return ResponseEntity.ok(categories);
     }
+
+    /**
+     * Product count, in-stock count and price range of every category, read
+     * from precomputed statistics.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<CategoryStatsDTO>> getAllCategoryStats() {
+        return ResponseEntity.ok(categoryStatsService.getAll());
+    }
+
+    @GetMapping("/{category}/stats")
+    public ResponseEntity<Object> getCategoryStats(@PathVariable String category) {
+        Category parsed;
+        try {
+            parsed = Category.valueOf(category.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: Unknown category " + category);
+        }
+        return ResponseEntity.ok(categoryStatsService.get(parsed));
+    }
 }
@@ -1,5 +1,9 @@
 package com.sayedhesham.productservice.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +11,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,17 +22,29 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.dto.CompactIdSet;
+import com.sayedhesham.productservice.dto.CursorPageDTO;
+import com.sayedhesham.productservice.dto.ProductAdjustmentDTO;
 import com.sayedhesham.productservice.dto.ProductDTO;
+import com.sayedhesham.productservice.dto.ProductFieldSet;
+import com.sayedhesham.productservice.dto.ProductImportResultDTO;
 import com.sayedhesham.productservice.dto.ProductResponseDTO;
 import com.sayedhesham.productservice.dto.ProductSearchRequest;
 import com.sayedhesham.productservice.dto.ProductUpdateWithImagesDTO;
 import com.sayedhesham.productservice.model.Category;
 import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.service.ProductImportService;
 import com.sayedhesham.productservice.service.ProductService;
+import com.sayedhesham.productservice.service.ProductSuggestionService;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -37,19 +55,42 @@ import lombok.extern.slf4j.Slf4j;
 public class ProductsController {
 
     private static final String ERROR_PREFIX = "Error: ";
+    private static final int MAX_STREAM_BATCH_SIZE = 5000;
+    private static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
 
     @Autowired
     private ProductService prodService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductSuggestionService suggestionService;
+
+    @Autowired
+    private ProductImportService importService;
+
     @GetMapping
     public ResponseEntity<Object> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "name") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view) {
         try {
+            ProductFieldSet fieldSet = ProductFieldSet.of(fields, view);
             Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            ProductSearchRequest searchRequest = ProductSearchRequest.builder().fields(fieldSet).build();
+            // Cursor mode: "?after=" (empty) starts from the first page
+            if (after != null) {
+                return ResponseEntity.ok(select(prodService.searchProductsAfter(searchRequest, sortBy, direction, after, size), fieldSet));
+            }
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
+            if (fieldSet != null) {
+                return ResponseEntity.ok(prodService.searchProducts(searchRequest, pageable).map(fieldSet::select));
+            }
             Page<ProductResponseDTO> productPage = prodService.getAll(pageable);
             return ResponseEntity.ok(productPage);
         } catch (Exception e) {
@@ -67,8 +108,13 @@ public class ProductsController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "name") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view) {
         try {
+            ProductFieldSet fieldSet = ProductFieldSet.of(fields, view);
             if (minPrice != null && minPrice < 0) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("minPrice cannot be negative");
@@ -83,7 +129,6 @@ public class ProductsController {
             }
 
             Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-            Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
             ProductSearchRequest searchRequest = ProductSearchRequest.builder()
                     .name(name)
@@ -91,19 +136,47 @@ public class ProductsController {
                     .maxPrice(maxPrice)
                     .sellerName(sellerName)
                     .category(category)
+                    .fields(fieldSet)
                     .build();
+            if (after != null) {
+                return ResponseEntity.ok(select(prodService.searchProductsAfter(searchRequest, sortBy, direction, after, size), fieldSet));
+            }
+
+            Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
+            if (facets) {
+                var result = prodService.searchProductsWithFacets(searchRequest, pageable);
+                return ResponseEntity.ok(fieldSet != null ? result.map(fieldSet::select) : result);
+            }
             var result = prodService.searchProducts(searchRequest, pageable);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(fieldSet != null ? result.map(fieldSet::select) : result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + e.getMessage());
         }
     }
 
+    /**
+     * Type-ahead suggestions of product names and categories for a typed
+     * prefix, answered from memory without querying the database.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<Object> suggest(@RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + "limit must be positive");
+        }
+        return ResponseEntity.ok(suggestionService.suggest(prefix, limit));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Object> getProductById(@PathVariable String id) {
+    public ResponseEntity<Object> getProductById(@PathVariable String id, WebRequest webRequest) {
         try {
             ProductResponseDTO product = prodService.getByIdWithSellerName(id);
-            return ResponseEntity.ok(product);
+            String etag = "\"" + product.getId() + "-" + product.getVersion() + "\"";
+            // Matching If-None-Match: answer 304 without serializing the product
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(product);
         } catch (RuntimeException r) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ERROR_PREFIX + r.getMessage());
         } catch (Exception e) {
@@ -123,6 +196,27 @@ public class ProductsController {
         }
     }
 
+    /**
+     * Bulk import for the current seller from an NDJSON or CSV body, read
+     * as a stream. Invalid rows are reported by line number in the result
+     * and do not stop the import.
+     */
+    @PostMapping(value = "/import", consumes = { ProductImportService.NDJSON, ProductImportService.CSV })
+    public ResponseEntity<Object> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            ProductImportResultDTO result = importService.importProducts(body, mediaType.getType() + "/" + mediaType.getSubtype());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            log.error("Error importing products: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + e.getMessage());
+        } catch (IOException e) {
+            log.error("Error reading product import: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + e.getMessage());
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Object> updateProductWithImages(@PathVariable String id, @Valid @RequestBody ProductUpdateWithImagesDTO product) {
         try {
@@ -135,6 +229,22 @@ public class ProductsController {
         }
     }
 
+    /**
+     * Reprice and restock several of the current seller's products in one
+     * request. Invalid adjustments and stock removals the stock does not
+     * cover reject the whole request. Stock is changed before prices, so a
+     * failure while writing prices can leave the stock changes applied.
+     */
+    @PatchMapping("/bulk")
+    public ResponseEntity<Object> adjustProducts(@RequestBody List<ProductAdjustmentDTO> adjustments) {
+        try {
+            return ResponseEntity.ok(prodService.adjustProducts(adjustments));
+        } catch (IllegalArgumentException e) {
+            log.error("Error adjusting products: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + e.getMessage());
+        }
+    }
+
     @PatchMapping("/{id}")
     public ResponseEntity<Object> updateProduct(@PathVariable String id, @Valid @RequestBody ProductDTO product) {
         try {
@@ -162,16 +272,41 @@ public class ProductsController {
     /**
      * Get product IDs for the current seller (authenticated user) Used by
      * order-service for seller analytics Requires SELLER role
+     *
+     * The ETag carries the seller's catalog version, so a matching
+     * If-None-Match is answered with 304 without reading any products.
+     * Accept: application/x-object-id-set returns the IDs as packed 12-byte
+     * ObjectIds instead of a JSON array.
      */
     @GetMapping("/seller/ids")
-    public ResponseEntity<Object> getMyProductIds() {
+    public ResponseEntity<Object> getMyProductIds(WebRequest webRequest,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         log.info("/seller/ids endpoint called");
 
         try {
+            boolean compact = accept != null && accept.contains(CompactIdSet.MEDIA_TYPE_VALUE);
+            long version = prodService.getMyCatalogVersion();
+            String etag = "\"" + version + (compact ? "-compact" : "") + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                        .header(CATALOG_VERSION_HEADER, String.valueOf(version)).build();
+            }
+
             log.debug("Calling ProductService.getMyProductIds");
             List<String> productIds = prodService.getMyProductIds();
-            log.info("Successfully retrieved {} product IDs", productIds.size());
-            return ResponseEntity.ok(productIds);
+            log.info("Successfully retrieved {} product IDs at catalog version {}", productIds.size(), version);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag)
+                    .header(CATALOG_VERSION_HEADER, String.valueOf(version))
+                    .varyBy(HttpHeaders.ACCEPT);
+            if (compact) {
+                if (!CompactIdSet.canEncode(productIds)) {
+                    return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE)
+                            .body(ERROR_PREFIX + "Product IDs have no compact encoding");
+                }
+                return response.contentType(MediaType.parseMediaType(CompactIdSet.MEDIA_TYPE_VALUE))
+                        .body(CompactIdSet.encode(productIds));
+            }
+            return response.body(productIds);
         } catch (IllegalArgumentException e) {
             log.error("Unauthorized error: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ERROR_PREFIX + e.getMessage());
@@ -189,7 +324,9 @@ public class ProductsController {
      * @return List of product response DTOs
      */
     @GetMapping("/batch")
-    public ResponseEntity<Object> getProductsBatch(@RequestParam List<String> ids) {
+    public ResponseEntity<Object> getProductsBatch(@RequestParam List<String> ids,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view) {
         log.info("/batch endpoint called with {} IDs", (ids != null ? ids.size() : 0));
 
         // Validate input
@@ -215,12 +352,72 @@ public class ProductsController {
         }
 
         try {
-            List<ProductResponseDTO> products = prodService.getProductsByIds(ids);
+            ProductFieldSet fieldSet = ProductFieldSet.of(fields, view);
+            List<ProductResponseDTO> products = prodService.getProductsByIds(ids, fieldSet);
             log.info("Successfully retrieved {} products", products.size());
+            if (fieldSet != null) {
+                return ResponseEntity.ok(products.stream().map(fieldSet::select).toList());
+            }
             return ResponseEntity.ok(products);
         } catch (Exception e) {
             log.error("Error retrieving products batch: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_PREFIX + e.getMessage());
         }
     }
+
+    /**
+     * Batch lookup for service-to-service calls. IDs travel in the body, so
+     * thousands fit, and products are written to the response as they come
+     * off the Mongo cursor instead of being collected into a list first.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<StreamingResponseBody> streamProductsBatch(@RequestBody List<String> ids,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view) {
+        log.info("POST /batch endpoint called with {} IDs", (ids != null ? ids.size() : 0));
+
+        if (ids == null || ids.isEmpty()) {
+            return badRequest("Product IDs list cannot be null or empty");
+        }
+        if (ids.size() > MAX_STREAM_BATCH_SIZE) {
+            return badRequest("Batch size cannot exceed " + MAX_STREAM_BATCH_SIZE + " items");
+        }
+        if (ids.stream().anyMatch(id -> id == null || id.trim().isEmpty())) {
+            return badRequest("Product IDs cannot be null or empty strings");
+        }
+        ProductFieldSet fieldSet;
+        try {
+            fieldSet = ProductFieldSet.of(fields, view);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        List<String> distinctIds = ids.stream().distinct().toList();
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                int written = prodService.streamProductsByIds(distinctIds, fieldSet, product -> {
+                    try {
+                        generator.writeObject(fieldSet != null ? fieldSet.select(product) : product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                log.info("Streamed {} products", written);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        byte[] error = (ERROR_PREFIX + message).getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(error));
+    }
+
+    private Object select(CursorPageDTO<ProductResponseDTO> page, ProductFieldSet fieldSet) {
+        return fieldSet != null ? page.map(fieldSet::select) : page;
+    }
 }
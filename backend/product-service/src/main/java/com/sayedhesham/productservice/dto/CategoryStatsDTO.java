@@ -0,0 +1,21 @@
+package com.sayedhesham.productservice.dto;
+
+import com.sayedhesham.productservice.model.Category;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryStatsDTO {
+    private Category category;
+    private String displayName;
+    private long productCount;
+    private long inStockCount;
+    private Double minPrice;
+    private Double maxPrice;
+}
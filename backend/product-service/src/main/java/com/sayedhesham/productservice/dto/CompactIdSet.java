@@ -0,0 +1,65 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Binary encoding of a set of ObjectId product IDs: the raw 12-byte IDs in
+ * ascending order, with no header or separators. About half the size of the
+ * JSON array of hex strings and decodable without a JSON parser.
+ */
+public final class CompactIdSet {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-object-id-set";
+
+    private static final int ID_BYTES = 12;
+
+    private CompactIdSet() {
+    }
+
+    /**
+     * Whether every ID is an ObjectId and so has a compact encoding.
+     */
+    public static boolean canEncode(Collection<String> ids) {
+        return ids.stream().allMatch(ObjectId::isValid);
+    }
+
+    /**
+     * @throws IllegalArgumentException if any ID is not a valid ObjectId
+     */
+    public static byte[] encode(Collection<String> ids) {
+        List<ObjectId> objectIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (!ObjectId.isValid(id)) {
+                throw new IllegalArgumentException("Not an ObjectId: " + id);
+            }
+            objectIds.add(new ObjectId(id));
+        }
+        objectIds.sort(null);
+
+        byte[] encoded = new byte[objectIds.size() * ID_BYTES];
+        for (int i = 0; i < objectIds.size(); i++) {
+            System.arraycopy(objectIds.get(i).toByteArray(), 0, encoded, i * ID_BYTES, ID_BYTES);
+        }
+        return encoded;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length is not a multiple of 12
+     */
+    public static List<String> decode(byte[] encoded) {
+        if (encoded.length % ID_BYTES != 0) {
+            throw new IllegalArgumentException("Encoded ID set has invalid length " + encoded.length);
+        }
+        List<String> ids = new ArrayList<>(encoded.length / ID_BYTES);
+        for (int offset = 0; offset < encoded.length; offset += ID_BYTES) {
+            byte[] id = new byte[ID_BYTES];
+            System.arraycopy(encoded, offset, id, 0, ID_BYTES);
+            ids.add(new ObjectId(id).toHexString());
+        }
+        return ids;
+    }
+}
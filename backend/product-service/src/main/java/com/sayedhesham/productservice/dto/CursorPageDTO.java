@@ -0,0 +1,31 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a keyset-paginated listing. There is deliberately no total
+ * count; {@code nextCursor} is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+
+    public <R> CursorPageDTO<R> map(Function<? super T, ? extends R> converter) {
+        return CursorPageDTO.<R>builder()
+                .content(content.stream().<R>map(converter).toList())
+                .size(size)
+                .nextCursor(nextCursor)
+                .build();
+    }
+}
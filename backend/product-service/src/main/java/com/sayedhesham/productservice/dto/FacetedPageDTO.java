@@ -0,0 +1,38 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A page of search results together with facets over the whole result set.
+ * Carries the same paging fields as a serialized Page so clients can treat
+ * both responses alike.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetedPageDTO<T> {
+    private List<T> content;
+    private int number;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private SearchFacetsDTO facets;
+
+    public <R> FacetedPageDTO<R> map(Function<? super T, ? extends R> converter) {
+        return FacetedPageDTO.<R>builder()
+                .content(content.stream().<R>map(converter).toList())
+                .number(number)
+                .size(size)
+                .totalElements(totalElements)
+                .totalPages(totalPages)
+                .facets(facets)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sayedhesham.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductAdjustmentDTO {
+    private String productId;
+    private Double price; // New price, null to keep the current one
+    private Integer quantityDelta; // Added to the stock, negative to remove units
+}
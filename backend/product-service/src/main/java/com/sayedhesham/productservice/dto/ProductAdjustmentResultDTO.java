@@ -0,0 +1,16 @@
+package com.sayedhesham.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductAdjustmentResultDTO {
+    private int requested;
+    private long pricesUpdated; // Products whose price was written; fewer if one was deleted concurrently
+    private int stockAdjusted; // Products whose stock changed; stock changes are all or nothing
+}
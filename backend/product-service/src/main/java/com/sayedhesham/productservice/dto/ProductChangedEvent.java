@@ -0,0 +1,58 @@
+package com.sayedhesham.productservice.dto;
+
+import com.sayedhesham.productservice.model.Product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * In-process notification that a product changed. Published through Spring's
+ * ApplicationEventPublisher after the change is stored in Mongo, so read
+ * models and caches inside product-service can follow product writes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductChangedEvent {
+    private String productId;
+    private String sellerId; // Owner of the product, null for STOCK_CHANGED
+    private ChangeType type;
+    private Product product; // State after the change, null for DELETED and STOCK_CHANGED
+    private int quantityDelta; // Only set for STOCK_CHANGED
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        STOCK_CHANGED,
+        IMAGES_CHANGED
+    }
+
+    public static ProductChangedEvent of(ChangeType type, Product product) {
+        return ProductChangedEvent.builder()
+                .productId(product.getId())
+                .sellerId(product.getUserId())
+                .type(type)
+                .product(product)
+                .build();
+    }
+
+    public static ProductChangedEvent deleted(String productId, String sellerId) {
+        return ProductChangedEvent.builder()
+                .productId(productId)
+                .sellerId(sellerId)
+                .type(ChangeType.DELETED)
+                .build();
+    }
+
+    public static ProductChangedEvent stockChanged(String productId, int quantityDelta) {
+        return ProductChangedEvent.builder()
+                .productId(productId)
+                .type(ChangeType.STOCK_CHANGED)
+                .quantityDelta(quantityDelta)
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.sayedhesham.productservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.data.domain.Sort;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Position in a keyset-paginated product listing: the sort key and the
+ * value of that key on the last returned product, plus its _id as the
+ * tie-breaker. Clients receive it as an opaque URL-safe token.
+ */
+@Data
+@AllArgsConstructor
+public class ProductCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private String sortBy;
+    private Sort.Direction direction;
+    private String lastId;
+    private Object lastValue; // String, Double, Integer or null
+
+    public String encode() {
+        String type;
+        String value;
+        if (lastValue == null) {
+            type = "z";
+            value = "";
+        } else if (lastValue instanceof Number number) {
+            type = number instanceof Integer ? "i" : "d";
+            value = number.toString();
+        } else {
+            type = "s";
+            value = lastValue.toString();
+        }
+        String raw = String.join(SEPARATOR, sortBy, direction.name(), lastId, type, value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The value goes last so it may itself contain the separator
+            String[] parts = raw.split("\\" + SEPARATOR, 5);
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Object value = switch (parts[3]) {
+                case "z" -> null;
+                case "i" -> Integer.valueOf(parts[4]);
+                case "d" -> Double.valueOf(parts[4]);
+                case "s" -> parts[4];
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            };
+            return new ProductCursor(parts[0], Sort.Direction.valueOf(parts[1]), parts[2], value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
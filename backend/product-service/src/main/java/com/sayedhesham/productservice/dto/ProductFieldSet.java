@@ -0,0 +1,127 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The product properties a client asked for with {@code fields=} or
+ * {@code view=card}. Knows which Mongo fields each property is read from, so
+ * only those are fetched, and renders a response holding only the requested
+ * properties.
+ */
+public final class ProductFieldSet {
+
+    public static final String CARD_VIEW = "card";
+
+    private static final Map<String, Function<ProductResponseDTO, Object>> PROPERTIES = new LinkedHashMap<>();
+
+    static {
+        PROPERTIES.put("id", ProductResponseDTO::getId);
+        PROPERTIES.put("name", ProductResponseDTO::getName);
+        PROPERTIES.put("description", ProductResponseDTO::getDescription);
+        PROPERTIES.put("price", ProductResponseDTO::getPrice);
+        PROPERTIES.put("quantity", ProductResponseDTO::getQuantity);
+        PROPERTIES.put("sellerName", ProductResponseDTO::getSellerName);
+        PROPERTIES.put("category", ProductResponseDTO::getCategory);
+        PROPERTIES.put("categoryDisplayName", ProductResponseDTO::getCategoryDisplayName);
+        PROPERTIES.put("imageMediaIds", ProductResponseDTO::getImageMediaIds);
+    }
+
+    // What grid views render: no description
+    private static final List<String> CARD_PROPERTIES = List.of(
+            "id", "name", "price", "quantity", "sellerName", "categoryDisplayName", "imageMediaIds");
+
+    private final Set<String> properties;
+
+    private ProductFieldSet(Set<String> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param fields comma-separated property names, or null
+     * @param view "card" for the card view, or null
+     * @return the requested field set, or null when the full product was asked for
+     * @throws IllegalArgumentException on an unknown property or view
+     */
+    public static ProductFieldSet of(String fields, String view) {
+        boolean hasView = view != null && !view.isBlank();
+        boolean hasFields = fields != null && !fields.isBlank();
+        if (!hasView && !hasFields) {
+            return null;
+        }
+
+        Set<String> properties = new LinkedHashSet<>();
+        properties.add("id");
+        if (hasView) {
+            if (!CARD_VIEW.equalsIgnoreCase(view.trim())) {
+                throw new IllegalArgumentException("Unknown view: " + view);
+            }
+            properties.addAll(CARD_PROPERTIES);
+        }
+        if (hasFields) {
+            for (String field : fields.split(",")) {
+                String property = field.trim();
+                if (property.isEmpty()) {
+                    continue;
+                }
+                if (!PROPERTIES.containsKey(property)) {
+                    throw new IllegalArgumentException("Unknown field: " + property + ", supported fields are " + PROPERTIES.keySet());
+                }
+                properties.add(property);
+            }
+        }
+        return new ProductFieldSet(properties);
+    }
+
+    public boolean includes(String property) {
+        return properties.contains(property);
+    }
+
+    /**
+     * Fields to project from product_cards.
+     */
+    public List<String> cardFields() {
+        List<String> fields = new ArrayList<>();
+        for (String property : properties) {
+            switch (property) {
+                case "id" -> fields.add("_id");
+                default -> fields.add(property);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Fields to project from products.
+     */
+    public List<String> productFields() {
+        Set<String> fields = new LinkedHashSet<>();
+        for (String property : properties) {
+            switch (property) {
+                case "id" -> fields.add("_id");
+                case "sellerName" -> fields.add("userId");
+                case "categoryDisplayName" -> fields.add("category");
+                default -> fields.add(property);
+            }
+        }
+        return new ArrayList<>(fields);
+    }
+
+    /**
+     * The requested properties of a product, in a stable order.
+     */
+    public Map<String, Object> select(ProductResponseDTO product) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        PROPERTIES.forEach((property, getter) -> {
+            if (properties.contains(property)) {
+                selected.put(property, getter.apply(product));
+            }
+        });
+        return selected;
+    }
+}
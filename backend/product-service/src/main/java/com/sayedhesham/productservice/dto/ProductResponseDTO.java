@@ -2,6 +2,7 @@ package com.sayedhesham.productservice.dto;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.sayedhesham.productservice.model.Category;
 
 import lombok.Builder;
@@ -19,4 +20,6 @@ public class ProductResponseDTO {
     private Category category;
     private String categoryDisplayName;
     private List<String> imageMediaIds;
+    @JsonIgnore
+    private long version;
 }
\ No newline at end of file
@@ -17,4 +17,5 @@ public class ProductSearchRequest {
     private Double maxPrice;
     private String sellerName;
     private Category category;
+    private ProductFieldSet fields; // null returns whole products
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+
+import com.sayedhesham.productservice.model.Product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * In-process notification that a chunk of imported products was inserted.
+ * Published once per bulk insert in place of a CREATED
+ * {@link ProductChangedEvent} per product, so listeners that write to Mongo
+ * can do so once per chunk.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductsImportedEvent {
+    private String sellerId;
+    private List<Product> products; // State as inserted
+}
@@ -0,0 +1,44 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+
+import com.sayedhesham.productservice.model.Category;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Facet counts over every product matching a search, not only the current
+ * page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchFacetsDTO {
+    private List<CategoryCount> categories;
+    private List<PriceBucket> priceBuckets;
+    private long sellerCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CategoryCount {
+        private Category category;
+        private String displayName;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PriceBucket {
+        private Double min; // Inclusive
+        private Double max; // Exclusive, except for the last bucket
+        private long count;
+    }
+}
@@ -0,0 +1,23 @@
+package com.sayedhesham.productservice.dto;
+
+import com.sayedhesham.productservice.model.Category;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionDTO {
+    private String text;
+    private Type type;
+    private Category category; // Only set for CATEGORY suggestions
+
+    public enum Type {
+        PRODUCT,
+        CATEGORY
+    }
+}
@@ -0,0 +1,41 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies stock reservations and releases for orders. Selected with the
+ * {@code inventory.engine} property: {@code mongo} (default) or {@code ledger}.
+ */
+public interface InventoryEngine {
+
+    /**
+     * Reserve stock for every product, all or nothing.
+     *
+     * @param quantities product ID to positive quantity
+     * @return true if everything was reserved, false if any product is
+     * missing or short on stock, in which case nothing is reserved
+     */
+    boolean reserve(Map<String, Integer> quantities);
+
+    /**
+     * Reserve stock for several orders at once, e.g. a batch of order
+     * events. Each order is all or nothing on its own.
+     *
+     * @return whether each order was reserved, in the order given
+     */
+    default List<Boolean> reserveAll(List<Map<String, Integer>> orders) {
+        List<Boolean> results = new ArrayList<>(orders.size());
+        for (Map<String, Integer> order : orders) {
+            results.add(reserve(order));
+        }
+        return results;
+    }
+
+    /**
+     * Add stock, e.g. return previously reserved stock or restock a product.
+     * Products that no longer exist are skipped.
+     */
+    void release(Map<String, Integer> quantities);
+}
@@ -0,0 +1,270 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.repository.ProductRepository;
+import com.sayedhesham.productservice.service.ProductResponseCache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory inventory engine for hot SKUs. Products are hashed onto a fixed
+ * number of shards, each owned by one writer thread, so reservations on the
+ * same product never contend on a Mongo document. See {@link LedgerShard}
+ * for the write-ahead log and group commit.
+ *
+ * The ledger assumes it is the only writer of stock for the products it
+ * holds: run a single product-service instance with this engine (or
+ * partition order events by product). Product writes outside the ledger
+ * (seller edits, deletes) invalidate the affected counter.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inventory.engine", havingValue = "ledger")
+public class LedgerInventoryEngine implements InventoryEngine {
+
+    private final ProductRepository productRepository;
+    private final ProductResponseCache responseCache;
+    private final int shardCount;
+    private final Path walDir;
+    private final long flushIntervalMillis;
+    private final long commandTimeoutMillis;
+
+    private LedgerShard[] shards;
+
+    public LedgerInventoryEngine(ProductRepository productRepository, ProductResponseCache responseCache,
+            @Value("${inventory.ledger.shards:4}") int shardCount,
+            @Value("${inventory.ledger.wal-dir:./data/inventory-wal}") String walDir,
+            @Value("${inventory.ledger.flush-interval-ms:100}") long flushIntervalMillis,
+            @Value("${inventory.ledger.command-timeout-ms:5000}") long commandTimeoutMillis) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("inventory.ledger.shards must be positive");
+        }
+        this.productRepository = productRepository;
+        this.responseCache = responseCache;
+        this.shardCount = shardCount;
+        this.walDir = Path.of(walDir);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * Replay every shard's WAL into Mongo before any command is accepted.
+     * Runs during context startup, i.e. before the Kafka listeners start.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        LedgerStore store = mongoStore();
+        LedgerWal[] wals = new LedgerWal[shardCount];
+        List<List<LedgerWal.Group>> recovered = new ArrayList<>(shardCount);
+        long maxSequence = 0;
+        for (int i = 0; i < shardCount; i++) {
+            wals[i] = new LedgerWal(walDir.resolve("shard-" + i + ".wal"));
+            List<LedgerWal.Group> groups = wals[i].readGroups();
+            for (LedgerWal.Group group : groups) {
+                maxSequence = Math.max(maxSequence, group.sequence());
+            }
+            recovered.add(groups);
+        }
+
+        // Sequences must keep increasing across restarts for the per-product
+        // ledgerSeq check in Mongo to work
+        AtomicLong sequences = new AtomicLong(Math.max(System.currentTimeMillis() * 1000, maxSequence));
+
+        shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, store, wals[i], sequences::incrementAndGet, flushIntervalMillis);
+            shards[i].replay(recovered.get(i));
+        }
+        for (LedgerShard shard : shards) {
+            shard.start();
+        }
+        log.info("Inventory ledger started with {} shards, WAL in {}", shardCount, walDir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (shards == null) {
+            return;
+        }
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+        log.info("Inventory ledger stopped");
+    }
+
+    /**
+     * Each shard reserves its own products atomically. If one shard fails,
+     * the reservations already made on the other shards are released again.
+     */
+    @Override
+    public boolean reserve(Map<String, Integer> quantities) {
+        Map<LedgerShard, Map<String, Integer>> byShard = partition(quantities);
+        Map<LedgerShard, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+        byShard.forEach((shard, items) -> results.put(shard, shard.reserve(items)));
+
+        List<LedgerShard> reserved = new ArrayList<>();
+        boolean allReserved = true;
+        for (Map.Entry<LedgerShard, CompletableFuture<Boolean>> result : results.entrySet()) {
+            if (await(result.getValue())) {
+                reserved.add(result.getKey());
+            } else {
+                allReserved = false;
+            }
+        }
+        if (allReserved) {
+            return true;
+        }
+
+        for (LedgerShard shard : reserved) {
+            if (!await(shard.release(byShard.get(shard)))) {
+                log.error("Could not compensate reservation of {}", byShard.get(shard));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders that live on a single shard are all enqueued before waiting, so
+     * they share the shard's group commits; orders spanning shards go
+     * through {@link #reserve} one at a time.
+     */
+    @Override
+    public List<Boolean> reserveAll(List<Map<String, Integer>> orders) {
+        List<CompletableFuture<Boolean>> submitted = new ArrayList<>(orders.size());
+        for (Map<String, Integer> order : orders) {
+            Map<LedgerShard, Map<String, Integer>> byShard = partition(order);
+            if (byShard.size() == 1) {
+                Map.Entry<LedgerShard, Map<String, Integer>> only = byShard.entrySet().iterator().next();
+                submitted.add(only.getKey().reserve(only.getValue()));
+            } else {
+                submitted.add(null);
+            }
+        }
+
+        List<Boolean> results = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            CompletableFuture<Boolean> result = submitted.get(i);
+            results.add(result != null ? await(result) : reserve(orders.get(i)));
+        }
+        return results;
+    }
+
+    @Override
+    public void release(Map<String, Integer> quantities) {
+        Map<LedgerShard, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+        partition(quantities).forEach((shard, items) -> results.put(shard, shard.release(items)));
+        for (CompletableFuture<Boolean> result : results.values()) {
+            if (!await(result)) {
+                log.error("Could not release stock of {}", quantities);
+            }
+        }
+    }
+
+    /**
+     * Product writes outside the ledger may change the stored quantity, so
+     * the in-memory counter is reloaded, keeping the ledger's own deltas
+     * that have not reached Mongo yet. Stock changes published by the
+     * reservation flow itself are ignored.
+     */
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED, DELETED -> shardFor(event.getProductId()).invalidate(event.getProductId());
+            default -> {
+                // Stock and image changes do not rewrite the quantity
+            }
+        }
+    }
+
+    private Map<LedgerShard, Map<String, Integer>> partition(Map<String, Integer> quantities) {
+        Map<LedgerShard, Map<String, Integer>> byShard = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+            byShard.computeIfAbsent(shardFor(item.getKey()), s -> new HashMap<>()).put(item.getKey(), item.getValue());
+        }
+        return byShard;
+    }
+
+    private LedgerShard shardFor(String productId) {
+        int h = productId.hashCode();
+        return shards[Math.floorMod(h ^ (h >>> 16), shardCount)];
+    }
+
+    /**
+     * Wait for a shard to acknowledge a command. On timeout the command is
+     * cancelled; if the shard applies it anyway it undoes the reservation.
+     */
+    private boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (result.completeExceptionally(e)) {
+                log.warn("Inventory ledger command timed out after {} ms", commandTimeoutMillis);
+                return false;
+            }
+            return resultNow(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (result.completeExceptionally(e)) {
+                return false;
+            }
+            return resultNow(result);
+        } catch (ExecutionException e) {
+            log.error("Inventory ledger command failed: {}", e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    private boolean resultNow(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            return false;
+        }
+    }
+
+    private LedgerStore mongoStore() {
+        return new LedgerStore() {
+            @Override
+            public Map<String, Stock> loadStock(Collection<String> productIds) {
+                Map<String, Stock> loaded = new HashMap<>();
+                for (Product product : productRepository.findProjectedByIds(productIds, List.of("_id", "quantity", "ledgerSeq"))) {
+                    loaded.put(product.getId(), new Stock(
+                            product.getQuantity() != null ? product.getQuantity() : 0,
+                            product.getLedgerSeq() != null ? product.getLedgerSeq() : 0L));
+                }
+                return loaded;
+            }
+
+            @Override
+            public void applyDeltas(Map<String, Long> deltas, long sequence) {
+                productRepository.applyLedgerDeltas(deltas, sequence);
+                // The STOCK_CHANGED events evicted these before the group reached
+                // Mongo, so a read in between may have cached the old quantity
+                responseCache.invalidate(deltas.keySet());
+            }
+        };
+    }
+}
@@ -0,0 +1,337 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One shard of the inventory ledger: the stock of every product hashed to it,
+ * owned by a single writer thread.
+ *
+ * Callers enqueue commands on a lock-free queue. The writer drains them in
+ * batches, applies them to in-memory counters, appends the resulting deltas
+ * to the shard's WAL and forces it once per batch before acknowledging any
+ * command in it. Deltas accumulate in memory and are written to Mongo in one
+ * group commit per flush interval, after which the WAL is truncated.
+ */
+@Slf4j
+class LedgerShard implements Runnable {
+
+    private static final int MAX_BATCH = 1024;
+
+    private final int index;
+    private final LedgerStore store;
+    private final LedgerWal wal;
+    private final LongSupplier sequences;
+    private final long flushIntervalNanos;
+
+    private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+
+    // Writer thread state only
+    private final LongCounterMap stock = new LongCounterMap(1024);
+    private final LongCounterMap pending = new LongCounterMap();
+    private final List<LedgerWal.Group> unflushed = new ArrayList<>();
+    private boolean walDirty;
+    private long lastFlushAt;
+
+    private volatile boolean running;
+    private volatile boolean failed;
+    private Thread writer;
+
+    LedgerShard(int index, LedgerStore store, LedgerWal wal, LongSupplier sequences, long flushIntervalMillis) {
+        this.index = index;
+        this.store = store;
+        this.wal = wal;
+        this.sequences = sequences;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    /**
+     * Write the groups found in the WAL at startup to Mongo, then start
+     * from an empty log. Flushed groups keep their sequence, so groups that
+     * already reached Mongo before the crash are not applied twice.
+     */
+    void replay(List<LedgerWal.Group> groups) throws IOException {
+        for (LedgerWal.Group group : groups) {
+            if (!group.deltas().isEmpty()) {
+                long sequence = group.sequence() != 0 ? group.sequence() : sequences.getAsLong();
+                store.applyDeltas(group.deltas(), sequence);
+            }
+        }
+        wal.truncate();
+        if (!groups.isEmpty()) {
+            log.info("Inventory ledger shard {} replayed {} WAL groups", index, groups.size());
+        }
+    }
+
+    void start() {
+        running = true;
+        writer = new Thread(this, "inventory-ledger-" + index);
+        writer.start();
+    }
+
+    /**
+     * Stop accepting commands, finish the queued ones and flush to Mongo.
+     */
+    void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            log.error("Error closing inventory WAL of shard {}: {}", index, e.getMessage(), e);
+        }
+    }
+
+    CompletableFuture<Boolean> reserve(Map<String, Integer> quantities) {
+        return submit(new Command(CommandType.RESERVE, quantities, null));
+    }
+
+    CompletableFuture<Boolean> release(Map<String, Integer> quantities) {
+        return submit(new Command(CommandType.RELEASE, quantities, null));
+    }
+
+    /**
+     * Reload the counter of a product that was written outside the ledger.
+     * Deltas Mongo has not received yet are kept and applied on top of the
+     * reloaded quantity.
+     */
+    CompletableFuture<Boolean> invalidate(String productId) {
+        return submit(new Command(CommandType.INVALIDATE, null, productId));
+    }
+
+    private CompletableFuture<Boolean> submit(Command command) {
+        if (!running || failed) {
+            command.result.completeExceptionally(new IllegalStateException("Inventory ledger shard " + index + " is not accepting commands"));
+            return command.result;
+        }
+        queue.offer(command);
+        LockSupport.unpark(writer);
+        return command.result;
+    }
+
+    @Override
+    public void run() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH);
+        lastFlushAt = System.nanoTime();
+
+        while (running || !queue.isEmpty()) {
+            Command command;
+            while (batch.size() < MAX_BATCH && (command = queue.poll()) != null) {
+                batch.add(command);
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    process(batch);
+                } catch (RuntimeException e) {
+                    failed = true;
+                    log.error("Inventory ledger shard {} failed, shard stopped: {}", index, e.getMessage(), e);
+                    batch.forEach(c -> c.result.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+            if (System.nanoTime() - lastFlushAt >= flushIntervalNanos) {
+                flush();
+            }
+            if (running && queue.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        flush();
+    }
+
+    private void process(List<Command> batch) {
+        if (failed) {
+            batch.forEach(c -> c.result.completeExceptionally(new IllegalStateException("Inventory ledger shard " + index + " has failed")));
+            return;
+        }
+        try {
+            loadUnknown(batch);
+        } catch (RuntimeException e) {
+            log.error("Error loading stock for inventory ledger shard {}: {}", index, e.getMessage(), e);
+            batch.forEach(c -> c.result.completeExceptionally(e));
+            return;
+        }
+
+        List<Command> applied = new ArrayList<>(batch.size());
+        try {
+            for (Command command : batch) {
+                if (command.result.isDone()) {
+                    continue; // The caller timed out before we got to it
+                }
+                command.outcome = switch (command.type) {
+                    case RESERVE -> tryReserve(command.quantities);
+                    case RELEASE -> applyRelease(command.quantities);
+                    case INVALIDATE -> applyInvalidate(command.productId);
+                };
+                applied.add(command);
+            }
+            // Group commit: one fsync acknowledges the whole batch
+            wal.force();
+        } catch (IOException e) {
+            // Memory may now be ahead of the log. Stop here; a restart
+            // recovers the acknowledged state from the WAL.
+            failed = true;
+            log.error("Inventory WAL of shard {} failed, shard stopped: {}", index, e.getMessage(), e);
+            batch.forEach(c -> c.result.completeExceptionally(e));
+            return;
+        }
+
+        for (Command command : applied) {
+            boolean acknowledged = command.result.complete(command.outcome);
+            if (!acknowledged && command.type == CommandType.RESERVE && command.outcome) {
+                // The caller timed out after the reservation was applied; give it back
+                queue.offer(new Command(CommandType.RELEASE, command.quantities, null));
+            }
+        }
+    }
+
+    private void loadUnknown(List<Command> batch) {
+        Set<String> unknown = new HashSet<>();
+        for (Command command : batch) {
+            if (command.quantities != null) {
+                for (String productId : command.quantities.keySet()) {
+                    if (!stock.containsKey(productId)) {
+                        unknown.add(productId);
+                    }
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            load(unknown);
+        }
+    }
+
+    /**
+     * Load stock from Mongo. The stored quantity lacks the pending deltas and
+     * every unflushed group newer than the product's stored sequence, so
+     * those are added back; the deltas themselves stay queued for Mongo.
+     */
+    private void load(Collection<String> productIds) {
+        store.loadStock(productIds).forEach((productId, stored) -> {
+            long quantity = stored.quantity();
+            long pendingDelta = pending.get(productId);
+            if (pendingDelta != LongCounterMap.MISSING) {
+                quantity += pendingDelta;
+            }
+            for (LedgerWal.Group group : unflushed) {
+                if (group.sequence() > stored.sequence()) {
+                    quantity += group.deltas().getOrDefault(productId, 0L);
+                }
+            }
+            stock.put(productId, quantity);
+        });
+    }
+
+    private boolean tryReserve(Map<String, Integer> quantities) throws IOException {
+        for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+            long available = stock.get(item.getKey());
+            if (available == LongCounterMap.MISSING || available < item.getValue()) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+            applyDelta(item.getKey(), -item.getValue());
+        }
+        return true;
+    }
+
+    private boolean applyRelease(Map<String, Integer> quantities) throws IOException {
+        for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+            if (stock.containsKey(item.getKey())) {
+                applyDelta(item.getKey(), item.getValue());
+            }
+        }
+        return true;
+    }
+
+    private boolean applyInvalidate(String productId) {
+        stock.remove(productId);
+        // Reload now so later commands in the same batch see the new stock
+        try {
+            load(List.of(productId));
+        } catch (RuntimeException e) {
+            log.warn("Could not reload stock of product {}, will retry on next use: {}", productId, e.getMessage());
+        }
+        return true;
+    }
+
+    private void applyDelta(String productId, int delta) throws IOException {
+        stock.add(productId, delta);
+        pending.add(productId, delta);
+        wal.appendDelta(productId, delta);
+        walDirty = true;
+    }
+
+    /**
+     * Write accumulated deltas to Mongo. A group that fails is retried with
+     * the same sequence on the next flush; the WAL is only truncated once
+     * nothing in it is left unwritten.
+     */
+    private void flush() {
+        lastFlushAt = System.nanoTime();
+        if (failed) {
+            return;
+        }
+        try {
+            if (!pending.isEmpty()) {
+                Map<String, Long> deltas = pending.toNonZeroMap();
+                pending.clear();
+                if (!deltas.isEmpty()) {
+                    long sequence = sequences.getAsLong();
+                    wal.appendFlush(sequence);
+                    wal.force();
+                    unflushed.add(new LedgerWal.Group(sequence, deltas));
+                }
+            }
+            while (!unflushed.isEmpty()) {
+                LedgerWal.Group group = unflushed.get(0);
+                store.applyDeltas(group.deltas(), group.sequence());
+                unflushed.remove(0);
+            }
+            if (walDirty) {
+                wal.truncate();
+                walDirty = false;
+            }
+        } catch (IOException e) {
+            failed = true;
+            log.error("Inventory WAL of shard {} failed, shard stopped: {}", index, e.getMessage(), e);
+        } catch (RuntimeException e) {
+            log.warn("Inventory ledger shard {} could not write {} groups to Mongo, will retry: {}",
+                    index, unflushed.size(), e.getMessage());
+        }
+    }
+
+    private enum CommandType {
+        RESERVE, RELEASE, INVALIDATE
+    }
+
+    private static final class Command {
+        private final CommandType type;
+        private final Map<String, Integer> quantities;
+        private final String productId;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private boolean outcome;
+
+        private Command(CommandType type, Map<String, Integer> quantities, String productId) {
+            this.type = type;
+            this.quantities = quantities;
+            this.productId = productId;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Durable backing store of the inventory ledger.
+ */
+public interface LedgerStore {
+
+    /**
+     * Current stock of the given products; products that do not exist are
+     * absent from the result.
+     */
+    Map<String, Stock> loadStock(Collection<String> productIds);
+
+    /**
+     * Apply a group of stock deltas. Must be idempotent per sequence number:
+     * a product that already received a group with this or a later sequence
+     * is left unchanged, so a group can be replayed after a crash.
+     */
+    void applyDeltas(Map<String, Long> deltas, long sequence);
+
+    /**
+     * Stored quantity of a product and the sequence of the last group applied
+     * to it (0 if none).
+     */
+    record Stock(int quantity, long sequence) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only write-ahead log of one ledger shard.
+ *
+ * Records are stock deltas and flush markers carrying the sequence number a
+ * group of deltas is written to Mongo with.
+ * The log is truncated once every group in it has reached Mongo.
+ */
+class LedgerWal implements AutoCloseable {
+
+    private static final byte DELTA = 1;
+    private static final byte FLUSH = 3;
+
+    private final Path path;
+    private final FileOutputStream fileStream;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+
+    LedgerWal(Path path) throws IOException {
+        this.path = path;
+        Files.createDirectories(path.getParent());
+        this.fileStream = new FileOutputStream(path.toFile(), true);
+        this.channel = fileStream.getChannel();
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream));
+    }
+
+    void appendDelta(String productId, int delta) throws IOException {
+        out.writeByte(DELTA);
+        out.writeUTF(productId);
+        out.writeInt(delta);
+    }
+
+    void appendFlush(long sequence) throws IOException {
+        out.writeByte(FLUSH);
+        out.writeLong(sequence);
+    }
+
+    /**
+     * Make everything appended so far durable. Commands are acknowledged only
+     * after this returns.
+     */
+    void force() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    void truncate() throws IOException {
+        out.flush();
+        channel.truncate(0);
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+        channel.force(false);
+        fileStream.close();
+    }
+
+    /**
+     * Read the groups of deltas in the log, in order. Every group that was
+     * followed by a flush marker carries that marker's sequence; the
+     * trailing group, never flushed, has a sequence of 0. A torn record at
+     * the end (crash mid-append) ends the log: it was never acknowledged.
+     */
+    List<Group> readGroups() throws IOException {
+        List<Group> groups = new ArrayList<>();
+        Map<String, Long> current = new HashMap<>();
+
+        try (InputStream fileIn = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    switch (type) {
+                        case DELTA -> {
+                            String productId = in.readUTF();
+                            current.merge(productId, (long) in.readInt(), Long::sum);
+                        }
+                        case FLUSH -> {
+                            groups.add(new Group(in.readLong(), current));
+                            current = new HashMap<>();
+                        }
+                        default -> throw new IOException("Corrupt inventory WAL record type " + type + " in " + path);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+
+        if (!current.isEmpty()) {
+            groups.add(new Group(0, current));
+        }
+        return groups;
+    }
+
+    /**
+     * Deltas flushed together under one sequence number (0 if not yet flushed).
+     */
+    record Group(long sequence, Map<String, Long> deltas) {
+    }
+}
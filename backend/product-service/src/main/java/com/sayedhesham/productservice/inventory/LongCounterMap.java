@@ -0,0 +1,150 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open-addressing map from product ID to a primitive long, so per-SKU
+ * counters are updated without boxing. Not thread-safe: each instance is
+ * owned by a single ledger shard writer thread.
+ */
+class LongCounterMap {
+
+    static final long MISSING = Long.MIN_VALUE;
+
+    private String[] keys;
+    private long[] values;
+    private int size;
+
+    LongCounterMap() {
+        this(64);
+    }
+
+    LongCounterMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * @return the value, or {@link #MISSING} if the key is absent
+     */
+    long get(String key) {
+        int slot = find(key);
+        return keys[slot] != null ? values[slot] : MISSING;
+    }
+
+    boolean containsKey(String key) {
+        return keys[find(key)] != null;
+    }
+
+    void put(String key, long value) {
+        int slot = find(key);
+        if (keys[slot] == null) {
+            keys[slot] = key;
+            size++;
+            values[slot] = value;
+            growIfNeeded();
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Add to the value of a key, treating an absent key as zero.
+     */
+    void add(String key, long delta) {
+        int slot = find(key);
+        if (keys[slot] == null) {
+            keys[slot] = key;
+            values[slot] = delta;
+            size++;
+            growIfNeeded();
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    void remove(String key) {
+        int slot = find(key);
+        if (keys[slot] == null) {
+            return;
+        }
+        keys[slot] = null;
+        size--;
+
+        // Backward-shift the rest of the probe run so lookups never stop early
+        int mask = keys.length - 1;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                keys[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Copy the non-zero entries into a regular map, e.g. to hand a batch of
+     * deltas to the store.
+     */
+    Map<String, Long> toNonZeroMap() {
+        Map<String, Long> copy = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && values[i] != 0) {
+                copy.put(keys[i], values[i]);
+            }
+        }
+        return copy;
+    }
+
+    private int find(String key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growIfNeeded() {
+        if (size * 2 <= keys.length) {
+            return;
+        }
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,82 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.sayedhesham.productservice.repository.ProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reserves stock directly in Mongo with conditional atomic decrements, one
+ * bulk write per order.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inventory.engine", havingValue = "mongo", matchIfMissing = true)
+public class MongoInventoryEngine implements InventoryEngine {
+
+    private final ProductRepository productRepository;
+
+    public MongoInventoryEngine(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @Override
+    public boolean reserve(Map<String, Integer> quantities) {
+        return productRepository.reserveStock(quantities);
+    }
+
+    /**
+     * Decide every order against one snapshot of stock, then apply the summed
+     * decrements of all accepted orders in a single conditional bulk write.
+     */
+    @Override
+    public List<Boolean> reserveAll(List<Map<String, Integer>> orders) {
+        Set<String> productIds = new HashSet<>();
+        orders.forEach(order -> productIds.addAll(order.keySet()));
+        Map<String, Integer> available = new HashMap<>(productRepository.findQuantities(productIds));
+
+        Map<String, Integer> total = new HashMap<>();
+        List<Boolean> results = new ArrayList<>(orders.size());
+        for (Map<String, Integer> order : orders) {
+            boolean fits = order.entrySet().stream()
+                    .allMatch(item -> available.getOrDefault(item.getKey(), 0) >= item.getValue());
+            if (fits) {
+                order.forEach((productId, quantity) -> {
+                    available.merge(productId, -quantity, Integer::sum);
+                    total.merge(productId, quantity, Integer::sum);
+                });
+            }
+            results.add(fits);
+        }
+
+        if (total.isEmpty() || productRepository.reserveStock(total)) {
+            return results;
+        }
+
+        // Stock moved between the snapshot and the write, and the failed bulk
+        // was fully compensated; decide order by order instead
+        log.info("Stock changed during batch reservation of {} orders, reserving one by one", orders.size());
+        results.clear();
+        for (Map<String, Integer> order : orders) {
+            results.add(reserve(order));
+        }
+        return results;
+    }
+
+    @Override
+    public void release(Map<String, Integer> quantities) {
+        long released = productRepository.releaseStock(quantities);
+        if (released < quantities.size()) {
+            log.warn("Released stock of {} of {} products, the rest no longer exist", released, quantities.size());
+        }
+    }
+}
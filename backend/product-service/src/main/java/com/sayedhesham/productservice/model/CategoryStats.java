@@ -0,0 +1,32 @@
+package com.sayedhesham.productservice.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Persisted snapshot of the statistics of one category, written whenever
+ * they change so other readers and a restarting service see current values.
+ */
+@Document(collection = "category_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryStats {
+
+    @Id
+    private String id; // Category name
+    private Category category;
+    private long productCount;
+    private long inStockCount;
+    private Double minPrice; // Null when the category has no priced products
+    private Double maxPrice;
+    private Date updatedAt;
+}
@@ -0,0 +1,28 @@
+package com.sayedhesham.productservice.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Version a startup migration or repair last completed at, so it runs once
+ * per version instead of on every start of every instance.
+ */
+@Document(collection = "migration_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MigrationState {
+
+    @Id
+    private String id; // Name of the migration
+    private int version;
+    private Date completedAt;
+}
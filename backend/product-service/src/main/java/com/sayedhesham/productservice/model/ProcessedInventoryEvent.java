@@ -0,0 +1,47 @@
+package com.sayedhesham.productservice.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Marks an order event as handled so a Kafka redelivery does not reserve or
+ * release stock twice. Documents expire through a TTL index on processedAt.
+ */
+@Document(collection = "processed_inventory_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessedInventoryEvent {
+
+    @Id
+    private String id; // orderId:action
+    private String orderId;
+    private Action action;
+    private Status status;
+    private Date processedAt;
+    private Date claimedAt; // Start of the current claim's lease while PROCESSING
+
+    public enum Action {
+        RESERVE,
+        RELEASE
+    }
+
+    public enum Status {
+        PROCESSING, // Claimed, outcome not recorded yet
+        RESERVED,
+        FAILED,
+        RELEASED
+    }
+
+    public static String key(String orderId, Action action) {
+        return orderId + ":" + action.name();
+    }
+}
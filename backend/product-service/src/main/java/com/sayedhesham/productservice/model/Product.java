@@ -5,6 +5,8 @@ import java.util.List;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,4 +28,8 @@ public class Product {
     private String userId;
     private Category category;
     private List<String> imageMediaIds; // References to Media collection
+    @JsonIgnore
+    private Long version; // Bumped by every write, including stock increments; backs the ETag
+    @JsonIgnore
+    private Long ledgerSeq; // Last inventory ledger group commit applied to quantity
 }
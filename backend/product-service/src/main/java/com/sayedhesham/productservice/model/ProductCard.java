@@ -0,0 +1,39 @@
+package com.sayedhesham.productservice.model;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read-optimized projection of a product as shown on listing and search
+ * pages. Maintained by ProductCardProjector from product writes, media events
+ * and user profile events, so listings never have to join products with users.
+ */
+@Document(collection = "product_cards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductCard {
+
+    @Id
+    private String id; // Same as the product ID
+    private String name;
+    private String description;
+    private Double price;
+    private Integer quantity;
+    @Indexed
+    private String sellerId;
+    private String sellerName;
+    private Category category;
+    private String categoryDisplayName;
+    private List<String> imageMediaIds; // Same as the product's; the first is the thumbnail
+    private Long projectedAt;
+}
@@ -0,0 +1,29 @@
+package com.sayedhesham.productservice.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Version of a seller's set of product IDs. Incremented whenever the seller
+ * creates or deletes a product, so callers holding the ID set can revalidate
+ * it with a single point lookup.
+ */
+@Document(collection = "seller_catalog_versions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SellerCatalogVersion {
+
+    @Id
+    private String id; // Seller (user) ID
+    private long version;
+    private Date updatedAt;
+}
@@ -0,0 +1,8 @@
+package com.sayedhesham.productservice.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import com.sayedhesham.productservice.model.ProductCard;
+
+public interface ProductCardRepository extends MongoRepository<ProductCard, String>, ProductCardRepositoryCustom {
+}
@@ -0,0 +1,54 @@
+package com.sayedhesham.productservice.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.sayedhesham.productservice.dto.FacetedPageDTO;
+import com.sayedhesham.productservice.dto.ProductCursor;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.ProductCard;
+
+public interface ProductCardRepositoryCustom {
+    /**
+     * Search product cards. When {@code productIds} is given it replaces the
+     * name filter with an _id match (candidates from the in-memory name
+     * index); otherwise {@code name} is matched as a case-insensitive regex.
+     *
+     * @param fields card fields to read, or null for whole cards
+     */
+    Page<ProductCard> searchCards(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, Pageable pageable, Collection<String> fields);
+
+    /**
+     * Same as {@link #searchCards}, plus category counts, price buckets and
+     * the number of distinct sellers over all matching cards, computed in the
+     * same aggregation as the page.
+     */
+    FacetedPageDTO<ProductCard> searchCardsWithFacets(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, Pageable pageable, Collection<String> fields);
+
+    /**
+     * Keyset variant of {@link #searchCards}: returns up to {@code limit}
+     * cards ordered by {@code sortBy} then _id, strictly after the given
+     * cursor position (or from the start when {@code after} is null). No
+     * count is run and no documents are skipped.
+     */
+    List<ProductCard> searchCardsAfter(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, ProductCursor after, String sortBy, Sort.Direction direction, int limit, Collection<String> fields);
+
+    /**
+     * Cards with the given IDs, in no particular order.
+     *
+     * @param fields card fields to read, or null for whole cards
+     */
+    List<ProductCard> findCards(Collection<String> productIds, Collection<String> fields);
+
+    void applyQuantityDelta(String productId, int delta);
+
+    void setImageMediaIds(String productId, List<String> imageMediaIds);
+
+    long renameSeller(String sellerId, String sellerName);
+
+    long deleteProjectedBefore(long projectedAt);
+}
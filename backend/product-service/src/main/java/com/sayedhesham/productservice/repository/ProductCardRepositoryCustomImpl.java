@@ -0,0 +1,269 @@
+package com.sayedhesham.productservice.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import com.sayedhesham.productservice.dto.FacetedPageDTO;
+import com.sayedhesham.productservice.dto.ProductCursor;
+import com.sayedhesham.productservice.dto.SearchFacetsDTO;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.ProductCard;
+
+@Repository
+public class ProductCardRepositoryCustomImpl implements ProductCardRepositoryCustom {
+
+    private static final int PRICE_BUCKETS = 5;
+
+    private final MongoTemplate mongoTemplate;
+
+    public ProductCardRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * A plain find plus count, so the sort and limit can use an index; a
+     * $facet sub-pipeline cannot, and would sort every match in memory.
+     */
+    @Override
+    public Page<ProductCard> searchCards(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, Pageable pageable, Collection<String> fields) {
+        Query query = new Query();
+        searchCriteria(name, productIds, minPrice, maxPrice, sellerName, category).forEach(query::addCriteria);
+
+        long total = mongoTemplate.count(query, ProductCard.class);
+        query.with(pageable);
+        if (fields != null) {
+            query.fields().include(fields.toArray(String[]::new));
+        }
+        List<ProductCard> cards = mongoTemplate.find(query, ProductCard.class);
+        return new PageImpl<>(cards, pageable, total);
+    }
+
+    /**
+     * Page, total and facets come from a single $facet aggregation. Every
+     * match flows into the facet stage, so it may spill to disk on large
+     * result sets.
+     */
+    @Override
+    public FacetedPageDTO<ProductCard> searchCardsWithFacets(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, Pageable pageable, Collection<String> fields) {
+        return facetedSearch(searchCriteria(name, productIds, minPrice, maxPrice, sellerName, category), pageable, fields);
+    }
+
+    private FacetedPageDTO<ProductCard> facetedSearch(List<Criteria> criteria, Pageable pageable, Collection<String> fields) {
+        Criteria match = criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria);
+
+        List<AggregationOperation> resultStages = new ArrayList<>();
+        if (pageable.getSort().isSorted()) {
+            resultStages.add(Aggregation.sort(pageable.getSort()));
+        }
+        if (pageable.isPaged()) {
+            resultStages.add(Aggregation.skip(pageable.getOffset()));
+            resultStages.add(Aggregation.limit(pageable.getPageSize()));
+        }
+        if (fields != null) {
+            // Only the page is projected; facets still see whole cards
+            resultStages.add(Aggregation.project(fields.toArray(String[]::new)));
+        }
+        if (resultStages.isEmpty()) {
+            // A $facet sub-pipeline needs at least one stage
+            resultStages.add(Aggregation.skip(0L));
+        }
+
+        FacetOperation facets = Aggregation.facet(resultStages.toArray(AggregationOperation[]::new)).as("results")
+                .and(Aggregation.count().as("count")).as("total")
+                .and(Aggregation.group("category").count().as("count")).as("categories")
+                .and(Aggregation.bucketAuto("price", PRICE_BUCKETS)).as("priceBuckets")
+                .and(Aggregation.group("sellerId"), Aggregation.count().as("count")).as("sellers");
+
+        Aggregation aggregation = Aggregation.newAggregation(ProductCard.class, Aggregation.match(match), facets)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        Document output = mongoTemplate.aggregate(aggregation, ProductCard.class, Document.class).getUniqueMappedResult();
+
+        List<ProductCard> cards = new ArrayList<>();
+        for (Document card : documents(output, "results")) {
+            cards.add(mongoTemplate.getConverter().read(ProductCard.class, card));
+        }
+        long total = firstCount(output, "total");
+        int pageSize = pageable.isPaged() ? pageable.getPageSize() : cards.size();
+
+        return FacetedPageDTO.<ProductCard>builder()
+                .content(cards)
+                .number(pageable.isPaged() ? pageable.getPageNumber() : 0)
+                .size(pageSize)
+                .totalElements(total)
+                .totalPages(pageSize == 0 ? 1 : (int) Math.ceil((double) total / pageSize))
+                .facets(readFacets(output))
+                .build();
+    }
+
+    private SearchFacetsDTO readFacets(Document output) {
+        List<SearchFacetsDTO.CategoryCount> categories = new ArrayList<>();
+        for (Document bucket : documents(output, "categories")) {
+            String categoryName = bucket.getString("_id");
+            Category category = categoryName != null ? Category.valueOf(categoryName) : null;
+            categories.add(SearchFacetsDTO.CategoryCount.builder()
+                    .category(category)
+                    .displayName(category != null ? category.toDisplayName() : "Other")
+                    .count(((Number) bucket.get("count")).longValue())
+                    .build());
+        }
+        categories.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+
+        List<SearchFacetsDTO.PriceBucket> priceBuckets = new ArrayList<>();
+        for (Document bucket : documents(output, "priceBuckets")) {
+            Document range = bucket.get("_id", Document.class);
+            priceBuckets.add(SearchFacetsDTO.PriceBucket.builder()
+                    .min(toDouble(range.get("min")))
+                    .max(toDouble(range.get("max")))
+                    .count(((Number) bucket.get("count")).longValue())
+                    .build());
+        }
+
+        return SearchFacetsDTO.builder()
+                .categories(categories)
+                .priceBuckets(priceBuckets)
+                .sellerCount(firstCount(output, "sellers"))
+                .build();
+    }
+
+    private static List<Document> documents(Document output, String facet) {
+        if (output == null) {
+            return List.of();
+        }
+        return output.getList(facet, Document.class, List.of());
+    }
+
+    private static long firstCount(Document output, String facet) {
+        List<Document> counts = documents(output, facet);
+        return counts.isEmpty() ? 0 : ((Number) counts.get(0).get("count")).longValue();
+    }
+
+    private static Double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : null;
+    }
+
+    @Override
+    public List<ProductCard> searchCardsAfter(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category, ProductCursor after, String sortBy, Sort.Direction direction, int limit, Collection<String> fields) {
+        Query query = new Query();
+        if (fields != null) {
+            query.fields().include(fields.toArray(String[]::new));
+        }
+        searchCriteria(name, productIds, minPrice, maxPrice, sellerName, category).forEach(query::addCriteria);
+
+        if (after != null) {
+            query.addCriteria(keysetCriteria(sortBy, direction, after.getLastValue(), after.getLastId()));
+        }
+
+        // _id breaks ties so the order is total and no card is returned twice
+        query.with(Sort.by(direction, sortBy).and(Sort.by(direction, "_id")));
+        query.limit(limit);
+
+        return mongoTemplate.find(query, ProductCard.class);
+    }
+
+    @Override
+    public List<ProductCard> findCards(Collection<String> productIds, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        if (fields != null) {
+            query.fields().include(fields.toArray(String[]::new));
+        }
+        return mongoTemplate.find(query, ProductCard.class);
+    }
+
+    /**
+     * Match everything that sorts strictly after (sortValue, id). Mongo sorts
+     * nulls before any other value, so a null sort value needs its own case.
+     */
+    private Criteria keysetCriteria(String sortBy, Sort.Direction direction, Object sortValue, String id) {
+        boolean ascending = direction.isAscending();
+        Criteria sameValueLaterId = ascending
+                ? Criteria.where(sortBy).is(sortValue).and("_id").gt(id)
+                : Criteria.where(sortBy).is(sortValue).and("_id").lt(id);
+
+        if (sortValue == null) {
+            return ascending
+                    ? new Criteria().orOperator(sameValueLaterId, Criteria.where(sortBy).ne(null))
+                    : sameValueLaterId;
+        }
+        if (ascending) {
+            return new Criteria().orOperator(Criteria.where(sortBy).gt(sortValue), sameValueLaterId);
+        }
+        return new Criteria().orOperator(Criteria.where(sortBy).lt(sortValue), sameValueLaterId,
+                Criteria.where(sortBy).is(null));
+    }
+
+    private List<Criteria> searchCriteria(String name, Collection<String> productIds, Double minPrice, Double maxPrice, String sellerName, Category category) {
+        List<Criteria> criteria = new ArrayList<>();
+
+        if (productIds != null) {
+            criteria.add(Criteria.where("_id").in(productIds));
+        } else if (name != null && !name.isEmpty()) {
+            criteria.add(Criteria.where("name").regex(name, "i"));
+        }
+
+        if (minPrice != null && maxPrice != null) {
+            criteria.add(Criteria.where("price").gte(minPrice).lte(maxPrice));
+        } else if (minPrice != null) {
+            criteria.add(Criteria.where("price").gte(minPrice));
+        } else if (maxPrice != null) {
+            criteria.add(Criteria.where("price").lte(maxPrice));
+        }
+
+        // Seller name is denormalized onto the card, so no users lookup is needed
+        if (sellerName != null && !sellerName.trim().isEmpty()) {
+            criteria.add(Criteria.where("sellerName").regex(sellerName.trim(), "i"));
+        }
+
+        if (category != null) {
+            criteria.add(Criteria.where("category").is(category));
+        }
+
+        return criteria;
+    }
+
+    @Override
+    public void applyQuantityDelta(String productId, int delta) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(productId)),
+                new Update().inc("quantity", delta),
+                ProductCard.class);
+    }
+
+    @Override
+    public void setImageMediaIds(String productId, List<String> imageMediaIds) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(productId)),
+                new Update().set("imageMediaIds", imageMediaIds),
+                ProductCard.class);
+    }
+
+    @Override
+    public long renameSeller(String sellerId, String sellerName) {
+        return mongoTemplate.updateMulti(
+                Query.query(Criteria.where("sellerId").is(sellerId)),
+                new Update().set("sellerName", sellerName),
+                ProductCard.class).getModifiedCount();
+    }
+
+    @Override
+    public long deleteProjectedBefore(long projectedAt) {
+        return mongoTemplate.remove(
+                Query.query(Criteria.where("projectedAt").lt(projectedAt)),
+                ProductCard.class).getDeletedCount();
+    }
+}
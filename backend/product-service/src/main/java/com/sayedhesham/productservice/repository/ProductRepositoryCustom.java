@@ -6,8 +6,105 @@ import org.springframework.data.domain.Pageable;
 import com.sayedhesham.productservice.model.Category;
 import com.sayedhesham.productservice.model.Product;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface ProductRepositoryCustom {
     Page<Product> searchProducts(String name, Double minPrice, Double maxPrice, List<String> userIds, Category category, Pageable pageable);
+
+    /**
+     * Decrement the stock of every product by the given quantity, all or
+     * nothing. Each decrement only applies while the product still has at
+     * least that many units, so concurrent reservations cannot oversell.
+     *
+     * @param quantities product ID to positive quantity
+     * @return true if every product was decremented, false if any product is
+     * missing or short on stock, in which case no stock is changed
+     */
+    boolean reserveStock(Map<String, Integer> quantities);
+
+    /**
+     * Increment the stock of every product by the given quantity.
+     *
+     * @return number of products that were found and updated
+     */
+    long releaseStock(Map<String, Integer> quantities);
+
+    /**
+     * Current stock of the given products, reading only the quantity field.
+     */
+    Map<String, Integer> findQuantities(Collection<String> productIds);
+
+    /**
+     * Apply a group commit of the inventory ledger. Each product is only
+     * incremented if it has not yet received this or a later sequence, so
+     * replaying a group after a crash is harmless.
+     */
+    void applyLedgerDeltas(Map<String, Long> deltas, long sequence);
+
+    /**
+     * $set the given fields of a product and bump its version with $inc in
+     * the same atomic update, so concurrent writes never share a version.
+     * Only the fields a seller edited go in: stock, images and the ledger
+     * sequence have their own atomic updates and are never written here.
+     *
+     * @param fields field name to new value
+     * @return the product as updated, or null if it no longer exists
+     */
+    Product updateFields(String productId, Map<String, Object> fields);
+
+    /**
+     * Bump the version of every product of a seller, e.g. after the seller
+     * was renamed and the product representation changed with it.
+     *
+     * @return number of products updated
+     */
+    long incrementSellerVersions(String userId);
+
+    /**
+     * Products with the given IDs, reading only the given fields.
+     */
+    List<Product> findProjectedByIds(Collection<String> ids, Collection<String> fields);
+
+    /**
+     * Products with the given IDs, read lazily from a Mongo cursor. The
+     * caller must close the stream.
+     *
+     * @param fields fields to read, or null for whole products
+     */
+    Stream<Product> streamByIds(Collection<String> ids, Collection<String> fields);
+
+    /**
+     * Apply image media ID changes with field-level updates instead of
+     * rewriting whole products. All changes go out as one ordered bulk, so
+     * the changes of each product are applied in the given order.
+     *
+     * @param changesByProduct product ID to its changes, in event order
+     */
+    void applyImageMediaChanges(Map<String, List<ImageMediaChange>> changesByProduct);
+
+    /**
+     * Set new seller prices as one unordered bulk of atomic $set updates.
+     * Each update only matches a product owned by the given seller.
+     *
+     * @param prices product ID to new price
+     * @return number of products updated
+     */
+    long applyPrices(String userId, Map<String, Double> prices);
+
+    /**
+     * One change to a product's imageMediaIds. ADD appends and REMOVE pulls
+     * all given IDs; REPLACE_FIRST replaces the first image with its single
+     * ID, or adds it when there is none.
+     */
+    record ImageMediaChange(Kind kind, List<String> mediaIds) {
+
+        public enum Kind {
+            ADD,
+            REMOVE,
+            REPLACE_FIRST
+        }
+    }
 }
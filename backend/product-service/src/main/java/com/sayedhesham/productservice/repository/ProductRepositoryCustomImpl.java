@@ -3,15 +3,28 @@ package com.sayedhesham.productservice.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.sayedhesham.productservice.model.Category;
 import com.sayedhesham.productservice.model.Product;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
@@ -53,4 +66,201 @@ public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
 
         return new PageImpl<>(products, pageable, total);
     }
+
+    /**
+     * All decrements go out as one ordered bulk of conditional upserts on
+     * {_id, quantity >= requested}. When a product is short on stock the
+     * filter misses, the upsert collides with the existing _id and the
+     * ordered bulk stops right there, so the error index tells exactly which
+     * earlier decrements were applied and have to be compensated.
+     */
+    @Override
+    public boolean reserveStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return true;
+        }
+        List<Map.Entry<String, Integer>> items = new ArrayList<>(quantities.entrySet());
+
+        // Upserting a product that does not exist would insert a stub instead
+        // of failing, so missing products are rejected up front
+        long existing = mongoTemplate.count(Query.query(Criteria.where("_id").in(quantities.keySet())), Product.class);
+        if (existing != items.size()) {
+            return false;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Product.class);
+        for (Map.Entry<String, Integer> item : items) {
+            bulkOps.upsert(
+                    Query.query(Criteria.where("_id").is(item.getKey()).and("quantity").gte(item.getValue())),
+                    new Update().inc("quantity", -item.getValue()).inc("version", 1));
+        }
+
+        int appliedCount;
+        List<BulkWriteUpsert> upserts;
+        try {
+            BulkWriteResult result = bulkOps.execute();
+            if (result.getUpserts().isEmpty()) {
+                return true;
+            }
+            // A product was deleted after the existence check
+            appliedCount = items.size();
+            upserts = result.getUpserts();
+        } catch (BulkOperationException e) {
+            // Without write errors the bulk failed only on its write concern:
+            // every decrement was applied but none is known to be durable
+            appliedCount = e.getErrors().isEmpty() ? items.size() : e.getErrors().get(0).getIndex();
+            upserts = e.getResult().getUpserts();
+        }
+
+        compensate(items, appliedCount, upserts);
+        return false;
+    }
+
+    /**
+     * Undo the first {@code appliedCount} decrements of a failed reservation
+     * and remove any stub documents the upserts created.
+     */
+    private void compensate(List<Map.Entry<String, Integer>> items, int appliedCount, List<BulkWriteUpsert> upserts) {
+        Set<Integer> upsertedIndexes = new HashSet<>();
+        for (BulkWriteUpsert upsert : upserts) {
+            upsertedIndexes.add(upsert.getIndex());
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        boolean hasOps = false;
+        for (int i = 0; i < appliedCount; i++) {
+            Map.Entry<String, Integer> item = items.get(i);
+            if (upsertedIndexes.contains(i)) {
+                // Stubs only hold _id and quantity
+                bulkOps.remove(Query.query(Criteria.where("_id").is(item.getKey()).and("name").exists(false)));
+            } else {
+                bulkOps.updateOne(Query.query(Criteria.where("_id").is(item.getKey())),
+                        new Update().inc("quantity", item.getValue()).inc("version", 1));
+            }
+            hasOps = true;
+        }
+        if (hasOps) {
+            bulkOps.execute();
+        }
+    }
+
+    @Override
+    public long releaseStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(item.getKey())),
+                    new Update().inc("quantity", item.getValue()).inc("version", 1));
+        }
+        return bulkOps.execute().getMatchedCount();
+    }
+
+    @Override
+    public Map<String, Integer> findQuantities(Collection<String> productIds) {
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("quantity");
+
+        Map<String, Integer> quantities = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            quantities.put(product.getId(), product.getQuantity() != null ? product.getQuantity() : 0);
+        }
+        return quantities;
+    }
+
+    @Override
+    public void applyLedgerDeltas(Map<String, Long> deltas, long sequence) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            Criteria notYetApplied = new Criteria().orOperator(
+                    Criteria.where("ledgerSeq").lt(sequence),
+                    Criteria.where("ledgerSeq").exists(false));
+            bulkOps.updateOne(
+                    Query.query(Criteria.where("_id").is(delta.getKey()).andOperator(notYetApplied)),
+                    new Update().inc("quantity", Math.toIntExact(delta.getValue())).inc("version", 1)
+                            .set("ledgerSeq", sequence));
+        }
+        bulkOps.execute();
+    }
+
+    @Override
+    public Product updateFields(String productId, Map<String, Object> fields) {
+        Update update = new Update().inc("version", 1);
+        fields.forEach(update::set);
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(productId)), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public long incrementSellerVersions(String userId) {
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("userId").is(userId)),
+                new Update().inc("version", 1), Product.class).getModifiedCount();
+    }
+
+    @Override
+    public List<Product> findProjectedByIds(Collection<String> ids, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include(fields.toArray(String[]::new));
+        return mongoTemplate.find(query, Product.class);
+    }
+
+    @Override
+    public Stream<Product> streamByIds(Collection<String> ids, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        if (fields != null) {
+            query.fields().include(fields.toArray(String[]::new));
+        }
+        return mongoTemplate.stream(query, Product.class);
+    }
+
+    @Override
+    public void applyImageMediaChanges(Map<String, List<ImageMediaChange>> changesByProduct) {
+        if (changesByProduct.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Product.class);
+        for (Map.Entry<String, List<ImageMediaChange>> entry : changesByProduct.entrySet()) {
+            String productId = entry.getKey();
+            // $push and positional $set fail on a null array, so start older documents off empty
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(productId).and("imageMediaIds").is(null)),
+                    new Update().set("imageMediaIds", new ArrayList<>()));
+
+            for (ImageMediaChange change : entry.getValue()) {
+                Object[] mediaIds = change.mediaIds().toArray();
+                switch (change.kind()) {
+                    case ADD -> bulkOps.updateOne(Query.query(Criteria.where("_id").is(productId)),
+                            new Update().push("imageMediaIds").each(mediaIds).inc("version", 1));
+                    case REMOVE -> bulkOps.updateOne(Query.query(Criteria.where("_id").is(productId)),
+                            new Update().pullAll("imageMediaIds", mediaIds).inc("version", 1));
+                    case REPLACE_FIRST -> {
+                        // Exactly one of the two matches: the array either has a first element or is empty
+                        bulkOps.updateOne(
+                                Query.query(Criteria.where("_id").is(productId).and("imageMediaIds.0").exists(true)),
+                                new Update().set("imageMediaIds.0", mediaIds[0]).inc("version", 1));
+                        bulkOps.updateOne(
+                                Query.query(Criteria.where("_id").is(productId).and("imageMediaIds").size(0)),
+                                new Update().push("imageMediaIds", mediaIds[0]).inc("version", 1));
+                    }
+                }
+            }
+        }
+        bulkOps.execute();
+    }
+
+    @Override
+    public long applyPrices(String userId, Map<String, Double> prices) {
+        if (prices.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<String, Double> price : prices.entrySet()) {
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(price.getKey()).and("userId").is(userId)),
+                    new Update().set("price", price.getValue()).inc("version", 1));
+        }
+        return bulkOps.execute().getMatchedCount();
+    }
 }
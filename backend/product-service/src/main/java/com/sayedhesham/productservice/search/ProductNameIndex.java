@@ -0,0 +1,340 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokenizing inverted index over product names.
+ *
+ * Every product gets a dense int ordinal; each token maps to a sorted int[]
+ * posting list of the ordinals whose name contains it. A query matches a
+ * product when every query token is a prefix of at least one of the
+ * product's name tokens, so "wire mou" finds "Wireless Mouse".
+ * {@link #containsBits} instead matches the query anywhere in the name, like
+ * a case-insensitive substring search, using the tokens only to narrow the
+ * names it has to check.
+ *
+ * Thread-safe: lookups share a read lock, writes take the write lock.
+ */
+public class ProductNameIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinalById = new HashMap<>();
+    private final List<String> idByOrdinal = new ArrayList<>();
+    private final List<String[]> tokensByOrdinal = new ArrayList<>();
+    private final List<String> namesByOrdinal = new ArrayList<>(); // Lower-cased
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+
+    /**
+     * Split a name into lower-case letter/digit tokens.
+     */
+    public static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+        }
+        return tokens.toArray(String[]::new);
+    }
+
+    /**
+     * Lower-case a name or query char by char, the same way tokens are.
+     */
+    private static String lowerCase(String text) {
+        StringBuilder lower = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            lower.append(Character.toLowerCase(text.charAt(i)));
+        }
+        return lower.toString();
+    }
+
+    /**
+     * Add or re-index a product under its current name.
+     */
+    public void put(String productId, String name) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinalById.get(productId);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                unlinkTokens(ordinal);
+            } else {
+                ordinal = allocateOrdinal(productId);
+            }
+            String[] tokens = tokenize(name);
+            tokensByOrdinal.set(ordinal, tokens);
+            namesByOrdinal.set(ordinal, name != null ? lowerCase(name) : "");
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, t -> new PostingList()).add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalById.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            unlinkTokens(ordinal);
+            idByOrdinal.set(ordinal, null);
+            tokensByOrdinal.set(ordinal, null);
+            namesByOrdinal.set(ordinal, null);
+            freeOrdinals.push(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinalById.clear();
+            idByOrdinal.clear();
+            tokensByOrdinal.clear();
+            namesByOrdinal.clear();
+            freeOrdinals.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordinals of all products matching the query, in ascending order. An
+     * empty or token-less query matches nothing.
+     */
+    public int[] searchOrdinals(String query) {
+        return searchBits(query).stream().toArray();
+    }
+
+    /**
+     * Ordinals of all products matching the query as a bit set, ready to be
+     * intersected with other ordinal filters such as price ranges.
+     */
+    public BitSet searchBits(String query) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return new BitSet();
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (String queryToken : queryTokens) {
+                BitSet matches = new BitSet(idByOrdinal.size());
+                for (PostingList list : postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).values()) {
+                    list.addTo(matches);
+                }
+                if (result == null) {
+                    result = matches;
+                } else {
+                    result.and(matches);
+                }
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordinals of all products whose name contains the query, ignoring case.
+     * A name can only contain the query if each query token lies inside one
+     * of its tokens, so the postings of those tokens give the candidates,
+     * whose names are then checked for the whole query.
+     *
+     * @return the matches, or null if the query has no letter or digit and
+     * every name would have to be checked
+     */
+    public BitSet containsBits(String query) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return null;
+        }
+        String needle = lowerCase(query);
+
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (String queryToken : queryTokens) {
+                BitSet matches = new BitSet(idByOrdinal.size());
+                for (Map.Entry<String, PostingList> posting : postings.entrySet()) {
+                    if (posting.getKey().contains(queryToken)) {
+                        posting.getValue().addTo(matches);
+                    }
+                }
+                if (result == null) {
+                    result = matches;
+                } else {
+                    result.and(matches);
+                }
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            for (int ordinal = result.nextSetBit(0); ordinal >= 0; ordinal = result.nextSetBit(ordinal + 1)) {
+                if (!namesByOrdinal.get(ordinal).contains(needle)) {
+                    result.clear(ordinal);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * IDs of all products matching the query.
+     */
+    public List<String> search(String query) {
+        return idsOf(searchOrdinals(query));
+    }
+
+    /**
+     * Ordinal of an indexed product, or -1 if it is not indexed.
+     */
+    public int ordinalOf(String productId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinalById.get(productId);
+            return ordinal != null ? ordinal : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Product IDs of the given ordinals, in the same order. Ordinals freed
+     * in the meantime are skipped.
+     */
+    public List<String> idsOf(int[] ordinals) {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>(ordinals.length);
+            for (int ordinal : ordinals) {
+                String id = ordinal < idByOrdinal.size() ? idByOrdinal.get(ordinal) : null;
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocateOrdinal(String productId) {
+        int ordinal;
+        if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.pop();
+            idByOrdinal.set(ordinal, productId);
+        } else {
+            ordinal = idByOrdinal.size();
+            idByOrdinal.add(productId);
+            tokensByOrdinal.add(null);
+            namesByOrdinal.add(null);
+        }
+        ordinalById.put(productId, ordinal);
+        return ordinal;
+    }
+
+    private void unlinkTokens(int ordinal) {
+        String[] tokens = tokensByOrdinal.get(ordinal);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list != null) {
+                list.remove(ordinal);
+                if (list.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorted, duplicate-free int list backed by a growable primitive array.
+     */
+    static final class PostingList {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, insertAt, ordinals, insertAt + 1, size - insertAt);
+            ordinals[insertAt] = ordinal;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+            size--;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ordinals[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.sayedhesham.productservice.model.Category;
+
+/**
+ * Per-category price index over product ordinals.
+ *
+ * Each category keeps a pair of parallel primitive arrays, double[] prices
+ * and int[] ordinals, sorted by (price, ordinal). A price range is then a
+ * contiguous slice found by binary search, and walking the arrays visits
+ * products in price order. Ordinals are the ones handed out by
+ * {@link ProductNameIndex}, so range results combine with name matches as
+ * plain bit sets.
+ *
+ * Thread-safe: lookups share a read lock, writes take the write lock.
+ */
+public class ProductPriceIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Category, SortedPrices> pricesByCategory = new EnumMap<>(Category.class);
+    // Products without a category
+    private final SortedPrices uncategorized = new SortedPrices();
+    private final Map<Integer, Entry> entryByOrdinal = new HashMap<>();
+
+    /**
+     * Index a product under its current price and category, replacing any
+     * previous entry. A null price removes the product.
+     */
+    public void put(int ordinal, Category category, Double price) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(ordinal);
+            if (price == null || price.isNaN()) {
+                return;
+            }
+            pricesOf(category, true).add(price, ordinal);
+            entryByOrdinal.put(ordinal, new Entry(category, price));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int ordinal) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            pricesByCategory.clear();
+            uncategorized.clear();
+            entryByOrdinal.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryByOrdinal.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordinals of products priced within [minPrice, maxPrice].
+     *
+     * @param category only this category, or null for every product
+     * @param minPrice inclusive lower bound, or null for none
+     * @param maxPrice inclusive upper bound, or null for none
+     */
+    public BitSet range(Category category, Double minPrice, Double maxPrice) {
+        double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        BitSet result = new BitSet();
+        if (min > max) {
+            return result;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (category != null) {
+                SortedPrices prices = pricesOf(category, false);
+                if (prices != null) {
+                    prices.addRangeTo(min, max, result);
+                }
+            } else {
+                for (SortedPrices prices : pricesByCategory.values()) {
+                    prices.addRangeTo(min, max, result);
+                }
+                uncategorized.addRangeTo(min, max, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of the products priced within [minPrice, maxPrice], ordered
+     * by price and then by ordinal, together with the number of such
+     * products. Only the price range of each category is merged, and only
+     * up to the end of the page.
+     *
+     * @param filter ordinals to consider, typically a name match, or null
+     * for every product in the range
+     * @param category only this category, or null for every product
+     * @param minPrice inclusive lower bound, or null for none
+     * @param maxPrice inclusive upper bound, or null for none
+     */
+    public Slice slice(BitSet filter, Category category, Double minPrice, Double maxPrice, boolean descending,
+            long offset, int limit) {
+        double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        if (min > max) {
+            return new Slice(new int[0], 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            SortedPrices[] sources;
+            if (category != null) {
+                SortedPrices prices = pricesOf(category, false);
+                sources = prices != null ? new SortedPrices[] { prices } : new SortedPrices[0];
+            } else {
+                sources = pricesByCategory.values().toArray(new SortedPrices[pricesByCategory.size() + 1]);
+                sources[sources.length - 1] = uncategorized;
+            }
+
+            // [from, to) of each category's arrays lies within the price range
+            int[] from = new int[sources.length];
+            int[] to = new int[sources.length];
+            long total = 0;
+            for (int i = 0; i < sources.length; i++) {
+                from[i] = sources[i].lowerBound(min);
+                to[i] = sources[i].upperBound(max);
+                total += to[i] - from[i];
+            }
+            if (filter != null) {
+                total = countMatching(filter, category, min, max);
+            }
+            if (offset >= total || limit <= 0) {
+                return new Slice(new int[0], total);
+            }
+
+            // Merge the per-category ranges; there are only a handful of categories
+            int[] positions = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                positions[i] = descending ? to[i] - 1 : from[i];
+            }
+            int[] page = new int[(int) Math.min(limit, total - offset)];
+            int pageSize = 0;
+            long matched = 0;
+            while (pageSize < page.length) {
+                int next = -1;
+                for (int i = 0; i < sources.length; i++) {
+                    if (positions[i] < from[i] || positions[i] >= to[i]) {
+                        continue;
+                    }
+                    if (next < 0 || comesBefore(sources[i], positions[i], sources[next], positions[next], descending)) {
+                        next = i;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                int ordinal = sources[next].ordinals[positions[next]];
+                positions[next] += descending ? -1 : 1;
+                if (filter != null && !filter.get(ordinal)) {
+                    continue;
+                }
+                if (matched >= offset) {
+                    page[pageSize++] = ordinal;
+                }
+                matched++;
+            }
+            return new Slice(Arrays.copyOf(page, pageSize), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of filter ordinals in the category and price range, looked up
+     * per ordinal so no range bit set is built.
+     */
+    private long countMatching(BitSet filter, Category category, double min, double max) {
+        long count = 0;
+        for (int ordinal = filter.nextSetBit(0); ordinal >= 0; ordinal = filter.nextSetBit(ordinal + 1)) {
+            Entry entry = entryByOrdinal.get(ordinal);
+            if (entry != null && (category == null || category == entry.category())
+                    && entry.price() >= min && entry.price() <= max) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean comesBefore(SortedPrices a, int i, SortedPrices b, int j, boolean descending) {
+        int cmp = Double.compare(a.prices[i], b.prices[j]);
+        if (cmp == 0) {
+            cmp = Integer.compare(a.ordinals[i], b.ordinals[j]);
+        }
+        return descending ? cmp > 0 : cmp < 0;
+    }
+
+    private SortedPrices pricesOf(Category category, boolean create) {
+        if (category == null) {
+            return uncategorized;
+        }
+        return create ? pricesByCategory.computeIfAbsent(category, c -> new SortedPrices()) : pricesByCategory.get(category);
+    }
+
+    private void removeEntry(int ordinal) {
+        Entry entry = entryByOrdinal.remove(ordinal);
+        if (entry == null) {
+            return;
+        }
+        SortedPrices prices = pricesOf(entry.category(), false);
+        if (prices != null) {
+            prices.remove(entry.price(), ordinal);
+            if (prices.size == 0 && entry.category() != null) {
+                pricesByCategory.remove(entry.category());
+            }
+        }
+    }
+
+    /**
+     * A page of ordinals and the total number of matching products.
+     */
+    public record Slice(int[] ordinals, long total) {
+    }
+
+    private record Entry(Category category, double price) {
+    }
+
+    /**
+     * (price, ordinal) pairs sorted ascending, stored as two growable
+     * parallel primitive arrays.
+     */
+    static final class SortedPrices {
+
+        private double[] prices = new double[8];
+        private int[] ordinals = new int[8];
+        private int size;
+
+        void add(double price, int ordinal) {
+            int index = indexOf(price, ordinal);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(prices, insertAt, prices, insertAt + 1, size - insertAt);
+            System.arraycopy(ordinals, insertAt, ordinals, insertAt + 1, size - insertAt);
+            prices[insertAt] = price;
+            ordinals[insertAt] = ordinal;
+            size++;
+        }
+
+        void remove(double price, int ordinal) {
+            int index = indexOf(price, ordinal);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+            System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+            size--;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void addRangeTo(double min, double max, BitSet bits) {
+            for (int i = lowerBound(min); i < size && prices[i] <= max; i++) {
+                bits.set(ordinals[i]);
+            }
+        }
+
+        /**
+         * First position whose price is at least the given price.
+         */
+        private int lowerBound(double price) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * First position whose price is above the given price.
+         */
+        private int upperBound(double price) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] <= price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Binary search for the exact pair, with the same contract as
+         * Arrays.binarySearch.
+         */
+        private int indexOf(double price, int ordinal) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Double.compare(prices[mid], price);
+                if (cmp == 0) {
+                    cmp = Integer.compare(ordinals[mid], ordinal);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
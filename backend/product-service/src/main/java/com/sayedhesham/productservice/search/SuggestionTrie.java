@@ -0,0 +1,341 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed (radix) trie of type-ahead suggestions.
+ *
+ * A suggestion is reachable from its whole normalized text and from every
+ * word inside it, so "mou" suggests "Wireless Mouse". Every node caches the
+ * top K suggestions of its subtree by weight, so a lookup is a walk down the
+ * prefix followed by returning that cached list; writes recompute the cached
+ * lists along the affected paths only.
+ *
+ * Thread-safe: lookups share a read lock, writes take the write lock.
+ *
+ * @param <T> caller data carried by each suggestion, e.g. its kind
+ */
+public class SuggestionTrie<T> {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int topK;
+    private final Node<T> root = new Node<>("");
+    private int size;
+
+    public SuggestionTrie(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive");
+        }
+        this.topK = topK;
+    }
+
+    /**
+     * Normalized form of a text or prefix: lower-case letter/digit tokens
+     * separated by single spaces.
+     */
+    public static String normalize(String text) {
+        return String.join(" ", ProductNameIndex.tokenize(text));
+    }
+
+    /**
+     * Add a suggestion with its current weight. Adding the same instance
+     * twice has no effect.
+     */
+    public void put(Suggestion<T> suggestion) {
+        lock.writeLock().lock();
+        try {
+            if (suggestion.indexed) {
+                return;
+            }
+            for (String key : keysOf(suggestion.key)) {
+                insert(key, suggestion);
+            }
+            suggestion.indexed = true;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Suggestion<T> suggestion) {
+        lock.writeLock().lock();
+        try {
+            if (!suggestion.indexed) {
+                return;
+            }
+            for (String key : keysOf(suggestion.key)) {
+                delete(key, suggestion);
+            }
+            suggestion.indexed = false;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Change the weight of a suggestion and re-rank it on all its paths.
+     */
+    public void setWeight(Suggestion<T> suggestion, long weight) {
+        lock.writeLock().lock();
+        try {
+            suggestion.weight = weight;
+            if (!suggestion.indexed) {
+                return;
+            }
+            for (String key : keysOf(suggestion.key)) {
+                List<Node<T>> path = pathTo(key);
+                for (int i = path.size() - 1; i >= 0; i--) {
+                    refreshTop(path.get(i));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.terminals.clear();
+            root.top = List.of();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Highest weighted suggestions under a prefix, heaviest first.
+     *
+     * @param limit at most this many, capped at the trie's K
+     */
+    public List<Suggestion<T>> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node<T> node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node<T> child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefixLength(child.label, key, i);
+                if (i + common == key.length()) {
+                    // The prefix ends on or inside this edge
+                    node = child;
+                    break;
+                }
+                if (common < child.label.length()) {
+                    return List.of();
+                }
+                node = child;
+                i += common;
+            }
+            List<Suggestion<T>> top = node.top;
+            return top.size() <= limit ? top : List.copyOf(top.subList(0, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The whole key plus the part starting at each later word.
+     */
+    private static List<String> keysOf(String key) {
+        List<String> keys = new ArrayList<>();
+        if (key.isEmpty()) {
+            return keys;
+        }
+        keys.add(key);
+        for (int i = key.indexOf(' '); i >= 0; i = key.indexOf(' ', i + 1)) {
+            keys.add(key.substring(i + 1));
+        }
+        return keys;
+    }
+
+    private void insert(String key, Suggestion<T> suggestion) {
+        List<Node<T>> path = new ArrayList<>();
+        path.add(root);
+        Node<T> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            Node<T> child = node.children.get(c);
+            if (child == null) {
+                child = new Node<>(key.substring(i));
+                node.children.put(c, child);
+                node = child;
+                path.add(node);
+                break;
+            }
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                // Split the edge where the key leaves it
+                Node<T> middle = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(c, middle);
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        if (!node.terminals.contains(suggestion)) {
+            node.terminals.add(suggestion);
+        }
+        for (int j = path.size() - 1; j >= 0; j--) {
+            refreshTop(path.get(j));
+        }
+    }
+
+    private void delete(String key, Suggestion<T> suggestion) {
+        List<Node<T>> path = pathTo(key);
+        if (path.size() == 1) {
+            return;
+        }
+        Node<T> last = path.get(path.size() - 1);
+        last.terminals.remove(suggestion);
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node<T> node = path.get(i);
+            if (i > 0 && node.terminals.isEmpty()) {
+                Node<T> parent = path.get(i - 1);
+                if (node.children.isEmpty()) {
+                    parent.children.remove(node.label.charAt(0));
+                    continue;
+                }
+                if (node.children.size() == 1) {
+                    // Merge a pass-through node into its only child to stay compressed
+                    Node<T> child = node.children.values().iterator().next();
+                    child.label = node.label + child.label;
+                    parent.children.put(child.label.charAt(0), child);
+                    continue;
+                }
+            }
+            refreshTop(node);
+        }
+    }
+
+    /**
+     * Nodes from the root down to the node whose path spells the key, or
+     * only the nodes found so far if the key is not in the trie.
+     */
+    private List<Node<T>> pathTo(String key) {
+        List<Node<T>> path = new ArrayList<>();
+        path.add(root);
+        Node<T> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node<T> child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return List.of(root);
+            }
+            node = child;
+            path.add(node);
+            i += child.label.length();
+        }
+        return path;
+    }
+
+    private void refreshTop(Node<T> node) {
+        List<Suggestion<T>> candidates = new ArrayList<>(node.terminals);
+        for (Node<T> child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        candidates.sort(Suggestion::compareByRank);
+
+        Set<Suggestion<T>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Suggestion<T>> top = new ArrayList<>(topK);
+        for (Suggestion<T> candidate : candidates) {
+            if (seen.add(candidate)) {
+                top.add(candidate);
+                if (top.size() == topK) {
+                    break;
+                }
+            }
+        }
+        node.top = List.copyOf(top);
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node<T> {
+
+        private String label; // Edge label from the parent
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private final List<Suggestion<T>> terminals = new ArrayList<>(1);
+        private List<Suggestion<T>> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * A suggestion and its ranking weight. Instances are compared by
+     * identity; callers keep one instance per distinct suggestion.
+     */
+    public static final class Suggestion<T> {
+
+        private final String text;
+        private final String key;
+        private final T payload;
+        private long weight;
+        private boolean indexed;
+
+        /**
+         * @param text text shown to the user
+         * @param payload caller data returned with the suggestion
+         */
+        public Suggestion(String text, T payload, long weight) {
+            this.text = text;
+            this.key = normalize(text);
+            this.payload = payload;
+            this.weight = weight;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        private static int compareByRank(Suggestion<?> a, Suggestion<?> b) {
+            int byWeight = Long.compare(b.weight, a.weight);
+            return byWeight != 0 ? byWeight : a.key.compareTo(b.key);
+        }
+    }
+}
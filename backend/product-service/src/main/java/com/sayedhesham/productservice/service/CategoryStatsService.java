@@ -0,0 +1,298 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.dto.CategoryStatsDTO;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.CategoryStats;
+import com.sayedhesham.productservice.model.Product;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Product count, in-stock count and price range per category, maintained
+ * incrementally from product writes and stock changes. Reads return a
+ * precomputed snapshot; every change to a category's numbers is also
+ * written to category_stats.
+ *
+ * Until the startup rebuild finishes, the snapshot persisted by the
+ * previous run is served.
+ */
+@Slf4j
+@Service
+public class CategoryStatsService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<String, ProductStat> statsByProduct = new HashMap<>();
+    private final Map<Category, Tally> tallies = new EnumMap<>(Category.class);
+
+    private volatile Map<Category, CategoryStatsDTO> snapshot = Map.of();
+
+    public CategoryStatsService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        long startedAt = System.currentTimeMillis();
+        loadPersisted();
+
+        Query query = new Query();
+        query.fields().include("category").include("price").include("quantity");
+        statsByProduct.clear();
+        tallies.clear();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> {
+                ProductStat stat = ProductStat.of(product);
+                statsByProduct.put(product.getId(), stat);
+                add(stat);
+            });
+        }
+
+        Map<Category, CategoryStatsDTO> previous = snapshot;
+        publish(List.of(Category.values()), previous);
+        log.info("Built category statistics for {} products in {} ms",
+                statsByProduct.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        try {
+            switch (event.getType()) {
+                case CREATED, UPDATED, IMAGES_CHANGED -> update(event.getProductId(), ProductStat.of(event.getProduct()));
+                case DELETED -> update(event.getProductId(), null);
+                case STOCK_CHANGED -> {
+                    ProductStat current = statsByProduct.get(event.getProductId());
+                    if (current != null) {
+                        update(event.getProductId(), current.withQuantityDelta(event.getQuantityDelta()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error updating category statistics for product {}: {}", event.getProductId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tally a whole import chunk, then publish and persist each touched
+     * category once instead of once per product.
+     */
+    @EventListener
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        try {
+            List<Category> touched = new ArrayList<>();
+            for (Product product : event.getProducts()) {
+                ProductStat stat = ProductStat.of(product);
+                ProductStat previous = statsByProduct.put(product.getId(), stat);
+                if (previous != null) {
+                    remove(previous);
+                    touch(touched, previous.category());
+                }
+                add(stat);
+                touch(touched, stat.category());
+            }
+            publish(touched, snapshot);
+        } catch (Exception e) {
+            log.error("Error updating category statistics for {} imported products: {}",
+                    event.getProducts().size(), e.getMessage(), e);
+        }
+    }
+
+    private static void touch(List<Category> touched, Category category) {
+        if (category != null && !touched.contains(category)) {
+            touched.add(category);
+        }
+    }
+
+    /**
+     * Statistics of every category, in enum order. Categories without
+     * products are included with zero counts.
+     */
+    public List<CategoryStatsDTO> getAll() {
+        Map<Category, CategoryStatsDTO> current = snapshot;
+        List<CategoryStatsDTO> stats = new ArrayList<>(Category.values().length);
+        for (Category category : Category.values()) {
+            stats.add(current.getOrDefault(category, empty(category)));
+        }
+        return stats;
+    }
+
+    public CategoryStatsDTO get(Category category) {
+        return snapshot.getOrDefault(category, empty(category));
+    }
+
+    private void update(String productId, ProductStat next) {
+        ProductStat previous = next != null ? statsByProduct.put(productId, next) : statsByProduct.remove(productId);
+        if (Objects.equals(previous, next)) {
+            return;
+        }
+        if (previous != null) {
+            remove(previous);
+        }
+        if (next != null) {
+            add(next);
+        }
+
+        List<Category> touched = new ArrayList<>(2);
+        if (previous != null && previous.category() != null) {
+            touched.add(previous.category());
+        }
+        if (next != null && next.category() != null && !touched.contains(next.category())) {
+            touched.add(next.category());
+        }
+        publish(touched, snapshot);
+    }
+
+    private void add(ProductStat stat) {
+        if (stat.category() == null) {
+            return;
+        }
+        Tally tally = tallies.computeIfAbsent(stat.category(), c -> new Tally());
+        tally.productCount++;
+        if (stat.inStock()) {
+            tally.inStockCount++;
+        }
+        if (stat.price() != null) {
+            tally.prices.merge(stat.price(), 1, Integer::sum);
+        }
+    }
+
+    private void remove(ProductStat stat) {
+        Tally tally = stat.category() != null ? tallies.get(stat.category()) : null;
+        if (tally == null) {
+            return;
+        }
+        tally.productCount--;
+        if (stat.inStock()) {
+            tally.inStockCount--;
+        }
+        if (stat.price() != null) {
+            tally.prices.computeIfPresent(stat.price(), (price, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Swap in new snapshot entries for the given categories and persist the
+     * ones whose numbers changed.
+     */
+    private void publish(List<Category> categories, Map<Category, CategoryStatsDTO> previous) {
+        Map<Category, CategoryStatsDTO> next = new EnumMap<>(Category.class);
+        next.putAll(snapshot);
+        List<CategoryStatsDTO> changed = new ArrayList<>();
+        for (Category category : categories) {
+            CategoryStatsDTO stats = toDTO(category, tallies.get(category));
+            next.put(category, stats);
+            if (!stats.equals(previous.get(category))) {
+                changed.add(stats);
+            }
+        }
+        snapshot = next;
+
+        for (CategoryStatsDTO stats : changed) {
+            persist(stats);
+        }
+    }
+
+    private void persist(CategoryStatsDTO stats) {
+        try {
+            mongoTemplate.save(CategoryStats.builder()
+                    .id(stats.getCategory().name())
+                    .category(stats.getCategory())
+                    .productCount(stats.getProductCount())
+                    .inStockCount(stats.getInStockCount())
+                    .minPrice(stats.getMinPrice())
+                    .maxPrice(stats.getMaxPrice())
+                    .updatedAt(new Date())
+                    .build());
+        } catch (Exception e) {
+            // The in-memory snapshot stays authoritative; the next change rewrites the document
+            log.error("Error persisting statistics of category {}: {}", stats.getCategory(), e.getMessage(), e);
+        }
+    }
+
+    private void loadPersisted() {
+        try {
+            Map<Category, CategoryStatsDTO> persisted = new EnumMap<>(Category.class);
+            for (CategoryStats stats : mongoTemplate.findAll(CategoryStats.class)) {
+                if (stats.getCategory() != null) {
+                    persisted.put(stats.getCategory(), CategoryStatsDTO.builder()
+                            .category(stats.getCategory())
+                            .displayName(stats.getCategory().toDisplayName())
+                            .productCount(stats.getProductCount())
+                            .inStockCount(stats.getInStockCount())
+                            .minPrice(stats.getMinPrice())
+                            .maxPrice(stats.getMaxPrice())
+                            .build());
+                }
+            }
+            snapshot = persisted;
+        } catch (Exception e) {
+            log.warn("Could not load persisted category statistics: {}", e.getMessage());
+        }
+    }
+
+    private static CategoryStatsDTO toDTO(Category category, Tally tally) {
+        if (tally == null || tally.productCount == 0) {
+            return empty(category);
+        }
+        return CategoryStatsDTO.builder()
+                .category(category)
+                .displayName(category.toDisplayName())
+                .productCount(tally.productCount)
+                .inStockCount(tally.inStockCount)
+                .minPrice(tally.prices.isEmpty() ? null : tally.prices.firstKey())
+                .maxPrice(tally.prices.isEmpty() ? null : tally.prices.lastKey())
+                .build();
+    }
+
+    private static CategoryStatsDTO empty(Category category) {
+        return CategoryStatsDTO.builder()
+                .category(category)
+                .displayName(category.toDisplayName())
+                .build();
+    }
+
+    /**
+     * What one product contributes to its category's statistics.
+     */
+    private record ProductStat(Category category, Double price, int quantity) {
+
+        static ProductStat of(Product product) {
+            return new ProductStat(product.getCategory(), product.getPrice(),
+                    product.getQuantity() != null ? product.getQuantity() : 0);
+        }
+
+        ProductStat withQuantityDelta(int delta) {
+            return new ProductStat(category, price, quantity + delta);
+        }
+
+        boolean inStock() {
+            return quantity > 0;
+        }
+    }
+
+    private static final class Tally {
+
+        private long productCount;
+        private long inStockCount;
+        // Price to number of products at that price, for min/max under removals
+        private final TreeMap<Double, Integer> prices = new TreeMap<>();
+    }
+}
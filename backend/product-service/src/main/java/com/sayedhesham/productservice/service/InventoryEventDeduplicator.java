@@ -0,0 +1,326 @@
+package com.sayedhesham.productservice.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.UpdateResult;
+import com.sayedhesham.productservice.cache.BloomFilter;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Action;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Status;
+import com.sayedhesham.productservice.repository.ProcessedInventoryEventRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rejects redelivered order events before they touch any product.
+ *
+ * An event is claimed by inserting its orderId:action key into
+ * processed_inventory_events, whose unique _id makes the claim atomic across
+ * instances. A Bloom filter of every key seen by this node sits in front of
+ * it: a key the filter has never seen is claimed with a single insert, and
+ * only possible duplicates cost a lookup. Keys expire in Mongo after the
+ * configured TTL, comfortably longer than Kafka can redeliver.
+ *
+ * A claim is a lease: a delivery that finds a claim without an outcome
+ * waits for it, and once the lease has run out assumes the consumer holding
+ * it is dead and takes the claim over, so the order is not left unanswered.
+ * The lease must be far longer than processing one poll takes, and shorter
+ * than the consumer's max.poll.interval.ms.
+ */
+@Slf4j
+@Service
+public class InventoryEventDeduplicator {
+
+    // How often a claim held by another consumer is re-read while waiting
+    private static final long LEASE_POLL_MILLIS = 500;
+
+    private final ProcessedInventoryEventRepository processedRepo;
+    private final MongoTemplate mongoTemplate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Duration ttl;
+    private final Duration lease;
+
+    // Two generations, so the filter forgets old keys roughly as Mongo expires them
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    public InventoryEventDeduplicator(ProcessedInventoryEventRepository processedRepository, MongoTemplate mongoTemplate,
+            @Value("${inventory.dedup.bloom-expected-insertions:1000000}") long expectedInsertions,
+            @Value("${inventory.dedup.bloom-fpp:0.01}") double falsePositiveRate,
+            @Value("${inventory.dedup.ttl-hours:168}") long ttlHours,
+            @Value("${inventory.dedup.lease-seconds:30}") long leaseSeconds) {
+        this.processedRepo = processedRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.previous = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    /**
+     * Create the TTL index and load the keys still in Mongo into the filter.
+     * Claims stay correct while this runs, they just cannot skip lookups yet.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        mongoTemplate.indexOps(ProcessedInventoryEvent.class)
+                .ensureIndex(new Index().on("processedAt", Sort.Direction.ASC).expire(ttl));
+
+        Query query = new Query();
+        query.fields().include("_id");
+        long loaded = 0;
+        try (Stream<ProcessedInventoryEvent> events = mongoTemplate.stream(query, ProcessedInventoryEvent.class)) {
+            for (ProcessedInventoryEvent event : (Iterable<ProcessedInventoryEvent>) events::iterator) {
+                remember(event.getId());
+                loaded++;
+            }
+        }
+        log.info("Loaded {} processed inventory event keys into the Bloom filter", loaded);
+    }
+
+    /**
+     * Claim an order event for processing.
+     *
+     * @return null if this call claimed the event or took over an expired
+     * claim, otherwise the record left by whoever processed it first
+     */
+    public ProcessedInventoryEvent claim(String orderId, Action action) {
+        String key = ProcessedInventoryEvent.key(orderId, action);
+        if (mightHaveSeen(key)) {
+            ProcessedInventoryEvent existing = processedRepo.findById(key).orElse(null);
+            if (existing != null) {
+                return settle(orderId, action, existing);
+            }
+        }
+        try {
+            mongoTemplate.insert(newClaim(orderId, action));
+            remember(key);
+            return null;
+        } catch (DuplicateKeyException e) {
+            remember(key);
+            return settle(orderId, action, processedRepo.findById(key).orElse(null));
+        }
+    }
+
+    /**
+     * Claim a batch of order events: one lookup for the keys the filter may
+     * have seen, then one unordered bulk insert for the rest.
+     *
+     * @param orderIds distinct order IDs
+     * @return records of the orders that were already processed, keyed by
+     * order ID; every other order is now claimed by this call
+     */
+    public Map<String, ProcessedInventoryEvent> claimAll(Collection<String> orderIds, Action action) {
+        Map<String, ProcessedInventoryEvent> duplicates = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return duplicates;
+        }
+
+        List<String> maybeSeen = new ArrayList<>();
+        Set<String> takenOver = new HashSet<>();
+        for (String orderId : orderIds) {
+            String key = ProcessedInventoryEvent.key(orderId, action);
+            if (mightHaveSeen(key)) {
+                maybeSeen.add(key);
+            }
+        }
+        if (!maybeSeen.isEmpty()) {
+            for (ProcessedInventoryEvent existing : processedRepo.findAllById(maybeSeen)) {
+                ProcessedInventoryEvent settled = settle(existing.getOrderId(), action, existing);
+                if (settled != null) {
+                    duplicates.put(existing.getOrderId(), settled);
+                } else {
+                    takenOver.add(existing.getOrderId());
+                }
+            }
+        }
+
+        List<String> toClaim = orderIds.stream()
+                .filter(orderId -> !duplicates.containsKey(orderId) && !takenOver.contains(orderId))
+                .toList();
+        if (toClaim.isEmpty()) {
+            return duplicates;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedInventoryEvent.class);
+        for (String orderId : toClaim) {
+            bulkOps.insert(newClaim(orderId, action));
+        }
+        try {
+            bulkOps.execute();
+        } catch (BulkOperationException e) {
+            // Claimed concurrently by another consumer since the lookup
+            Map<String, String> lost = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                String orderId = toClaim.get(error.getIndex());
+                lost.put(ProcessedInventoryEvent.key(orderId, action), orderId);
+            }
+            Map<String, ProcessedInventoryEvent> found = new HashMap<>();
+            processedRepo.findAllById(lost.keySet()).forEach(existing -> found.put(existing.getId(), existing));
+            lost.forEach((key, orderId) -> {
+                ProcessedInventoryEvent settled = settle(orderId, action, found.get(key));
+                if (settled != null) {
+                    duplicates.put(orderId, settled);
+                }
+            });
+        }
+        for (String orderId : toClaim) {
+            remember(ProcessedInventoryEvent.key(orderId, action));
+        }
+        return duplicates;
+    }
+
+    /**
+     * Record the outcome of a claimed event, so a redelivery can repeat the
+     * original reply. If this fails the claim stays PROCESSING until its
+     * lease runs out.
+     */
+    public void complete(String orderId, Action action, Status status) {
+        completeAll(Map.of(orderId, status), action);
+    }
+
+    public void completeAll(Map<String, Status> statuses, Action action) {
+        if (statuses.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedInventoryEvent.class);
+        statuses.forEach((orderId, status) -> bulkOps.updateOne(
+                Query.query(Criteria.where("_id").is(ProcessedInventoryEvent.key(orderId, action))),
+                new Update().set("status", status)));
+        bulkOps.execute();
+    }
+
+    /**
+     * Drop claims whose processing failed, so a redelivery is processed again
+     * instead of being skipped as in progress.
+     */
+    public void forget(Collection<String> orderIds, Action action) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = orderIds.stream().map(orderId -> ProcessedInventoryEvent.key(orderId, action)).toList();
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(keys)), ProcessedInventoryEvent.class);
+    }
+
+    /**
+     * Settle a claim found in Mongo. A claim still PROCESSING is re-read
+     * until it gets an outcome, and taken over once its lease has run out:
+     * a consumer that dies mid-event has it redelivered to another consumer
+     * within seconds, long before the lease ends, so skipping it would leave
+     * the order unanswered. A claim that was dropped meanwhile is claimed
+     * again.
+     *
+     * @param found the claim as read, or null if it was not found
+     * @return null if this call now holds the claim, otherwise the record
+     * left by whoever processed the event
+     */
+    private ProcessedInventoryEvent settle(String orderId, Action action, ProcessedInventoryEvent found) {
+        String key = ProcessedInventoryEvent.key(orderId, action);
+        ProcessedInventoryEvent claim = found;
+        while (claim == null || claim.getStatus() == Status.PROCESSING) {
+            if (claim == null) {
+                try {
+                    mongoTemplate.insert(newClaim(orderId, action));
+                    return null;
+                } catch (DuplicateKeyException e) {
+                    // Claimed again by someone else, read it below
+                }
+            } else if (isExpired(claim)) {
+                if (takeOver(claim)) {
+                    return null;
+                }
+            } else {
+                try {
+                    Thread.sleep(LEASE_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return claim;
+                }
+            }
+            claim = processedRepo.findById(key).orElse(null);
+        }
+        return claim;
+    }
+
+    private boolean isExpired(ProcessedInventoryEvent claim) {
+        Date claimedAt = claim.getClaimedAt() != null ? claim.getClaimedAt() : claim.getProcessedAt();
+        return claimedAt == null || !claimedAt.toInstant().plus(lease).isAfter(Instant.now());
+    }
+
+    /**
+     * The update only matches the claim as it was read, so of several
+     * consumers seeing the same expired claim only one takes it over.
+     */
+    private boolean takeOver(ProcessedInventoryEvent claim) {
+        Date now = new Date();
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(claim.getId())
+                        .and("status").is(Status.PROCESSING)
+                        .and("claimedAt").is(claim.getClaimedAt())),
+                new Update().set("claimedAt", now).set("processedAt", now),
+                ProcessedInventoryEvent.class);
+        if (result.getModifiedCount() == 0) {
+            return false;
+        }
+        log.warn("Took over expired {} claim of order {}", claim.getAction(), claim.getOrderId());
+        return true;
+    }
+
+    private boolean mightHaveSeen(String key) {
+        return current.mightContain(key) || previous.mightContain(key);
+    }
+
+    private void remember(String key) {
+        BloomFilter filter = current;
+        filter.put(key);
+        if (filter.insertions() >= expectedInsertions) {
+            rotate(filter);
+        }
+    }
+
+    private synchronized void rotate(BloomFilter full) {
+        if (current == full) {
+            previous = full;
+            current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        }
+    }
+
+    private ProcessedInventoryEvent newClaim(String orderId, Action action) {
+        Date now = new Date();
+        return ProcessedInventoryEvent.builder()
+                .id(ProcessedInventoryEvent.key(orderId, action))
+                .orderId(orderId)
+                .action(action)
+                .status(Status.PROCESSING)
+                .processedAt(now)
+                .claimedAt(now)
+                .build();
+    }
+}
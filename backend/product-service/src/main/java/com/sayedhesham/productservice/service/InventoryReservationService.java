@@ -1,11 +1,18 @@
 package com.sayedhesham.productservice.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
@@ -13,11 +20,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.config.KafkaConfig;
 import com.sayedhesham.productservice.dto.InventoryReleaseEvent;
 import com.sayedhesham.productservice.dto.OrderEvent;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
 import com.sayedhesham.productservice.dto.ProductReservationRequest;
-import com.sayedhesham.productservice.model.Product;
-import com.sayedhesham.productservice.repository.ProductRepository;
+import com.sayedhesham.productservice.inventory.InventoryEngine;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Action;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Status;
 
 @Service
 public class InventoryReservationService {
@@ -25,7 +36,10 @@ public class InventoryReservationService {
     private static final Logger logger = LoggerFactory.getLogger(InventoryReservationService.class);
 
     @Autowired
-    private ProductRepository productRepository;
+    private InventoryEngine inventoryEngine;
+
+    @Autowired
+    private InventoryEventDeduplicator deduplicator;
 
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
@@ -33,6 +47,9 @@ public class InventoryReservationService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Value("${kafka.topic.products.reservation.success}")
     private String productReservationSuccessTopic;
 
@@ -42,24 +59,35 @@ public class InventoryReservationService {
     @Value("${kafka.topic.order.inventory.release}")
     private String orderInventoryReleaseTopic;
 
-    @KafkaListener(topics = "${kafka.topic.order.product.event}", groupId = "productservice-group")
+    @KafkaListener(topics = "${kafka.topic.order.product.event}", groupId = "productservice-group",
+            autoStartup = "#{!${inventory.kafka.batch-listener:false}}")
     @Transactional
     public void handleOrderCreatedEvent(String message) {
         try {
             logger.info("Received order created event: {}", message);
             OrderEvent orderEvent = objectMapper.readValue(message, OrderEvent.class);
-            
-            ProductReservationRequest reservationResponse = processInventoryReservation(orderEvent);
-            
-            String responseJson = objectMapper.writeValueAsString(reservationResponse);
-            
-            if (reservationResponse.getStatus() == ProductReservationRequest.ReservationStatus.RESERVED) {
-                kafkaTemplate.send(productReservationSuccessTopic, orderEvent.getOrderId(), responseJson);
-                logger.info("Sent product reservation success event for order: {}", orderEvent.getOrderId());
-            } else {
-                kafkaTemplate.send(productReservationFailedTopic, orderEvent.getOrderId(), responseJson);
-                logger.info("Sent product reservation failed event for order: {}", orderEvent.getOrderId());
+
+            ProcessedInventoryEvent processed = deduplicator.claim(orderEvent.getOrderId(), Action.RESERVE);
+            if (processed != null) {
+                replayReservation(orderEvent, processed);
+                return;
+            }
+
+            ProductReservationRequest reservationResponse;
+            try {
+                reservationResponse = processInventoryReservation(orderEvent);
+            } catch (RuntimeException e) {
+                deduplicator.forget(List.of(orderEvent.getOrderId()), Action.RESERVE);
+                throw e;
+            }
+            // Stock is already changed, so the order gets its reply either way
+            try {
+                deduplicator.complete(orderEvent.getOrderId(), Action.RESERVE, outcomeOf(reservationResponse));
+            } catch (RuntimeException e) {
+                logger.error("Error recording reservation outcome of order {}: {}", orderEvent.getOrderId(), e.getMessage(), e);
             }
+
+            sendReservationResponse(reservationResponse);
             
         } catch (JsonProcessingException e) {
             logger.error("Error processing order event: {}", e.getMessage(), e);
@@ -68,56 +96,194 @@ public class InventoryReservationService {
         }
     }
 
-    private ProductReservationRequest processInventoryReservation(OrderEvent orderEvent) {
-        ProductReservationRequest reservationResponse = ProductReservationRequest.builder()
-                .orderId(orderEvent.getOrderId())
-                .productIdToQuantityMap(orderEvent.getProductIdToQuantityMap())
-                .status(ProductReservationRequest.ReservationStatus.RESERVED)
-                .build();
-
-        // First pass: Validate all products have sufficient stock
-        for (Map.Entry<String, Integer> entry : orderEvent.getProductIdToQuantityMap().entrySet()) {
-            String productId = entry.getKey();
-            Integer requestedQuantity = entry.getValue();
+    /**
+     * Batch mode of {@link #handleOrderCreatedEvent}, enabled with
+     * inventory.kafka.batch-listener=true. A whole poll is reserved with one
+     * engine call, stock change events are published once per product, and
+     * all replies are sent before a single producer flush. Orders are claimed
+     * with one deduplicator call; redelivered orders, in this poll or an
+     * earlier one, get their original reply and never reach the engine.
+     */
+    @KafkaListener(topics = "${kafka.topic.order.product.event}", groupId = "productservice-group",
+            containerFactory = KafkaConfig.BATCH_LISTENER_FACTORY,
+            autoStartup = "${inventory.kafka.batch-listener:false}",
+            properties = "max.poll.records=${inventory.kafka.batch-max-records:500}")
+    public void handleOrderCreatedEvents(List<String> messages) {
+        logger.info("Received batch of {} order created events", messages.size());
 
+        List<OrderEvent> received = new ArrayList<>(messages.size());
+        Set<String> orderIds = new HashSet<>();
+        for (String message : messages) {
             try {
-                Product product = productRepository.findById(productId)
-                        .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
-
-                if (product.getQuantity() < requestedQuantity) {
-                    logger.error("Insufficient stock for product: {}, requested: {}, available: {}", 
-                            productId, requestedQuantity, product.getQuantity());
-                    reservationResponse.setStatus(ProductReservationRequest.ReservationStatus.FAILED);
-                    return reservationResponse;
+                OrderEvent orderEvent = objectMapper.readValue(message, OrderEvent.class);
+                // The first copy of an order redelivered within the same poll wins
+                if (orderIds.add(orderEvent.getOrderId())) {
+                    received.add(orderEvent);
                 }
-            } catch (Exception e) {
-                logger.error("Error validating product: {}", productId, e);
-                reservationResponse.setStatus(ProductReservationRequest.ReservationStatus.FAILED);
-                return reservationResponse;
+            } catch (JsonProcessingException e) {
+                logger.error("Error processing order event: {}", e.getMessage(), e);
             }
         }
 
-        // Second pass: Reserve all products (only if all validations passed)
-        for (Map.Entry<String, Integer> entry : orderEvent.getProductIdToQuantityMap().entrySet()) {
-            String productId = entry.getKey();
-            Integer requestedQuantity = entry.getValue();
+        List<OrderEvent> orders = new ArrayList<>(received.size());
+        try {
+            Map<String, ProcessedInventoryEvent> processed = deduplicator.claimAll(orderIds, Action.RESERVE);
+            for (OrderEvent orderEvent : received) {
+                ProcessedInventoryEvent previous = processed.get(orderEvent.getOrderId());
+                if (previous != null) {
+                    replayReservation(orderEvent, previous);
+                } else {
+                    orders.add(orderEvent);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error claiming order created event batch: {}", e.getMessage(), e);
+            return;
+        }
 
-            try {
-                Product product = productRepository.findById(productId).get();
-                product.setQuantity(product.getQuantity() - requestedQuantity);
-                productRepository.save(product);
-                logger.info("Reserved {} units of product: {}", requestedQuantity, productId);
-            } catch (Exception e) {
-                logger.error("Error reserving product: {} - This should not happen after validation", productId, e);
-                reservationResponse.setStatus(ProductReservationRequest.ReservationStatus.FAILED);
-                throw new RuntimeException("Failed to reserve product after validation: " + productId, e);
+        boolean[] reserved = new boolean[orders.size()];
+        int reservedCount = 0;
+        List<Integer> validIndexes = new ArrayList<>();
+        List<Boolean> results;
+        try {
+            for (int i = 0; i < orders.size(); i++) {
+                if (isValidReservation(orders.get(i))) {
+                    validIndexes.add(i);
+                }
+            }
+            results = inventoryEngine.reserveAll(validIndexes.stream()
+                    .map(i -> orders.get(i).getProductIdToQuantityMap())
+                    .toList());
+        } catch (Exception e) {
+            logger.error("Error handling order created event batch: {}", e.getMessage(), e);
+            // Nothing was reserved, so let a redelivery retry these orders
+            deduplicator.forget(orders.stream().map(OrderEvent::getOrderId).toList(), Action.RESERVE);
+            return;
+        }
+
+        // Stock is changed from here on, so every order gets its reply even
+        // if the events or the outcome bookkeeping fail
+        Map<String, Integer> reservedTotals = new LinkedHashMap<>();
+        for (int j = 0; j < validIndexes.size(); j++) {
+            if (results.get(j)) {
+                int i = validIndexes.get(j);
+                reserved[i] = true;
+                reservedCount++;
+                orders.get(i).getProductIdToQuantityMap().forEach((productId, quantity) ->
+                        reservedTotals.merge(productId, quantity, Integer::sum));
+            }
+        }
+        try {
+            reservedTotals.forEach((productId, quantity) ->
+                    eventPublisher.publishEvent(ProductChangedEvent.stockChanged(productId, -quantity)));
+        } catch (Exception e) {
+            logger.error("Error publishing stock changes of order batch: {}", e.getMessage(), e);
+        }
+        try {
+            Map<String, Status> outcomes = new HashMap<>();
+            for (int i = 0; i < orders.size(); i++) {
+                outcomes.put(orders.get(i).getOrderId(), reserved[i] ? Status.RESERVED : Status.FAILED);
             }
+            deduplicator.completeAll(outcomes, Action.RESERVE);
+        } catch (Exception e) {
+            logger.error("Error recording reservation outcomes of order batch: {}", e.getMessage(), e);
         }
 
-        return reservationResponse;
+        try {
+            for (int i = 0; i < orders.size(); i++) {
+                sendReservationResponse(reservationResponse(orders.get(i), reserved[i]));
+            }
+            kafkaTemplate.flush();
+            logger.info("Reserved {} of {} orders in batch", reservedCount, orders.size());
+        } catch (Exception e) {
+            logger.error("Error sending order reservation replies: {}", e.getMessage(), e);
+        }
     }
 
-    @KafkaListener(topics = "${kafka.topic.order.inventory.release}", groupId = "productservice-group")
+    /**
+     * Answer a redelivered order with the outcome recorded the first time,
+     * without touching stock. An order still being processed elsewhere is
+     * left to that consumer.
+     */
+    private void replayReservation(OrderEvent orderEvent, ProcessedInventoryEvent processed) {
+        if (processed.getStatus() == Status.PROCESSING) {
+            logger.warn("Skipping order {} already being reserved", orderEvent.getOrderId());
+            return;
+        }
+        logger.info("Order {} already processed ({}), resending reply", orderEvent.getOrderId(), processed.getStatus());
+        try {
+            sendReservationResponse(reservationResponse(orderEvent, processed.getStatus() == Status.RESERVED));
+        } catch (JsonProcessingException e) {
+            logger.error("Error resending reservation reply for order {}: {}", orderEvent.getOrderId(), e.getMessage(), e);
+        }
+    }
+
+    private Status outcomeOf(ProductReservationRequest reservationResponse) {
+        return reservationResponse.getStatus() == ProductReservationRequest.ReservationStatus.RESERVED
+                ? Status.RESERVED : Status.FAILED;
+    }
+
+    private ProductReservationRequest processInventoryReservation(OrderEvent orderEvent) {
+        if (!isValidReservation(orderEvent)) {
+            return reservationResponse(orderEvent, false);
+        }
+        Map<String, Integer> quantities = orderEvent.getProductIdToQuantityMap();
+
+        // Stock check and decrement happen as one atomic step in the engine,
+        // so two orders for the same product can no longer both pass validation
+        if (!inventoryEngine.reserve(quantities)) {
+            logger.error("Insufficient stock or missing product for order: {}, requested: {}",
+                    orderEvent.getOrderId(), quantities);
+            return reservationResponse(orderEvent, false);
+        }
+
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(entry.getKey(), -entry.getValue()));
+            logger.info("Reserved {} units of product: {}", entry.getValue(), entry.getKey());
+        }
+
+        return reservationResponse(orderEvent, true);
+    }
+
+    private boolean isValidReservation(OrderEvent orderEvent) {
+        Map<String, Integer> quantities = orderEvent.getProductIdToQuantityMap();
+        if (quantities == null || quantities.isEmpty()) {
+            logger.error("Order {} has no products to reserve", orderEvent.getOrderId());
+            return false;
+        }
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                logger.error("Invalid quantity for product: {}, requested: {}", entry.getKey(), entry.getValue());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ProductReservationRequest reservationResponse(OrderEvent orderEvent, boolean reserved) {
+        return ProductReservationRequest.builder()
+                .orderId(orderEvent.getOrderId())
+                .productIdToQuantityMap(orderEvent.getProductIdToQuantityMap())
+                .status(reserved ? ProductReservationRequest.ReservationStatus.RESERVED
+                        : ProductReservationRequest.ReservationStatus.FAILED)
+                .build();
+    }
+
+    private void sendReservationResponse(ProductReservationRequest reservationResponse) throws JsonProcessingException {
+        String responseJson = objectMapper.writeValueAsString(reservationResponse);
+        String orderId = reservationResponse.getOrderId();
+
+        if (reservationResponse.getStatus() == ProductReservationRequest.ReservationStatus.RESERVED) {
+            kafkaTemplate.send(productReservationSuccessTopic, orderId, responseJson);
+            logger.info("Sent product reservation success event for order: {}", orderId);
+        } else {
+            kafkaTemplate.send(productReservationFailedTopic, orderId, responseJson);
+            logger.info("Sent product reservation failed event for order: {}", orderId);
+        }
+    }
+
+    @KafkaListener(topics = "${kafka.topic.order.inventory.release}", groupId = "productservice-group",
+            autoStartup = "#{!${inventory.kafka.batch-listener:false}}")
     @Transactional
     public void handleInventoryReleaseEvent(String message) {
         try {
@@ -128,8 +294,18 @@ public class InventoryReservationService {
                 logger.warn("Ignoring invalid action for order {}: {}", releaseEvent.getOrderId(), releaseEvent.getAction());
                 return;
             }
-            
-            releaseInventory(releaseEvent);
+
+            if (deduplicator.claim(releaseEvent.getOrderId(), Action.RELEASE) != null) {
+                logger.info("Inventory for order {} already released, skipping", releaseEvent.getOrderId());
+                return;
+            }
+            try {
+                releaseInventory(releaseEvent);
+            } catch (RuntimeException e) {
+                deduplicator.forget(List.of(releaseEvent.getOrderId()), Action.RELEASE);
+                throw e;
+            }
+            deduplicator.complete(releaseEvent.getOrderId(), Action.RELEASE, Status.RELEASED);
             logger.info("Successfully released inventory for order: {}", releaseEvent.getOrderId());
         } catch (JsonProcessingException e) {
             logger.error("Error parsing inventory release event: {}", e.getMessage(), e);
@@ -138,22 +314,82 @@ public class InventoryReservationService {
         }
     }
 
-    private void releaseInventory(InventoryReleaseEvent releaseEvent) {
-        for (InventoryReleaseEvent.OrderItem item : releaseEvent.getOrderItems()) {
-            String productId = item.getProductId();
-            Integer quantity = item.getQuantity();
-            
+    /**
+     * Batch mode of {@link #handleInventoryReleaseEvent}: the items of every
+     * release in the poll are summed per product and released with one
+     * engine call. Releases already applied are skipped.
+     */
+    @KafkaListener(topics = "${kafka.topic.order.inventory.release}", groupId = "productservice-group",
+            containerFactory = KafkaConfig.BATCH_LISTENER_FACTORY,
+            autoStartup = "${inventory.kafka.batch-listener:false}",
+            properties = "max.poll.records=${inventory.kafka.batch-max-records:500}")
+    public void handleInventoryReleaseEvents(List<String> messages) {
+        logger.info("Received batch of {} inventory release events", messages.size());
+
+        Map<String, InventoryReleaseEvent> releases = new LinkedHashMap<>();
+        for (String message : messages) {
+            try {
+                InventoryReleaseEvent releaseEvent = objectMapper.readValue(message, InventoryReleaseEvent.class);
+                if (!"RELEASE".equals(releaseEvent.getAction())) {
+                    logger.warn("Ignoring invalid action for order {}: {}", releaseEvent.getOrderId(), releaseEvent.getAction());
+                    continue;
+                }
+                releases.putIfAbsent(releaseEvent.getOrderId(), releaseEvent);
+            } catch (JsonProcessingException e) {
+                logger.error("Error parsing inventory release event: {}", e.getMessage(), e);
+            }
+        }
+        if (releases.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, ProcessedInventoryEvent> processed = deduplicator.claimAll(releases.keySet(), Action.RELEASE);
+            if (!processed.isEmpty()) {
+                logger.info("Skipping {} inventory releases already applied", processed.size());
+                releases.keySet().removeAll(processed.keySet());
+            }
+
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            for (InventoryReleaseEvent releaseEvent : releases.values()) {
+                addReleaseItems(releaseEvent, quantities);
+            }
             try {
-                Product product = productRepository.findById(productId)
-                        .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
-                
-                product.setQuantity(product.getQuantity() + quantity);
-                productRepository.save(product);
-                logger.info("Released {} units of product: {}", quantity, productId);
-            } catch (Exception e) {
-                logger.error("Error releasing inventory for product {}: {}", productId, e.getMessage(), e);
+                if (!quantities.isEmpty()) {
+                    releaseQuantities(quantities);
+                }
+            } catch (RuntimeException e) {
+                deduplicator.forget(releases.keySet(), Action.RELEASE);
                 throw e;
             }
+
+            Map<String, Status> outcomes = new HashMap<>();
+            releases.keySet().forEach(orderId -> outcomes.put(orderId, Status.RELEASED));
+            deduplicator.completeAll(outcomes, Action.RELEASE);
+        } catch (Exception e) {
+            logger.error("Error handling inventory release event batch: {}", e.getMessage(), e);
+        }
+    }
+
+    private void releaseInventory(InventoryReleaseEvent releaseEvent) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        addReleaseItems(releaseEvent, quantities);
+        releaseQuantities(quantities);
+    }
+
+    private void addReleaseItems(InventoryReleaseEvent releaseEvent, Map<String, Integer> quantities) {
+        for (InventoryReleaseEvent.OrderItem item : releaseEvent.getOrderItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+    }
+
+    private void releaseQuantities(Map<String, Integer> quantities) {
+        // Increment rather than read-modify-save, so a release cannot overwrite
+        // a reservation applied to the same product in the meantime
+        inventoryEngine.release(quantities);
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(entry.getKey(), entry.getValue()));
+            logger.info("Released {} units of product: {}", entry.getValue(), entry.getKey());
         }
     }
 }
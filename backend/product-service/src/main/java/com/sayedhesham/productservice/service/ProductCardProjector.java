@@ -0,0 +1,263 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.MigrationState;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.model.ProductCard;
+import com.sayedhesham.productservice.repository.ProductCardRepository;
+import com.sayedhesham.productservice.repository.ProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the product_cards read model in step with the products collection.
+ * Cards are written after the product itself, so a failure here never fails
+ * the originating write; the card is repaired by the next change or by the
+ * check that re-projects every card that differs from its product. That
+ * check scans every product, so it runs at startup only once per
+ * {@link #PROJECTION_VERSION}, or on every start when
+ * product.cards.check-drift-on-startup is set.
+ */
+@Slf4j
+@Service
+public class ProductCardProjector {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // Bump when the card shape or projection changes, to re-project drifted cards once
+    private static final int PROJECTION_VERSION = 2;
+    private static final String MIGRATION_ID = "product_cards";
+
+    private final ProductCardRepository cardRepo;
+    private final ProductRepository prodRepo;
+    private final SellerNameResolver sellerNameResolver;
+    private final MongoTemplate mongoTemplate;
+    private final boolean checkDriftOnStartup;
+
+    public ProductCardProjector(ProductCardRepository cardRepository, ProductRepository prodRepository,
+            SellerNameResolver sellerNameResolver, MongoTemplate mongoTemplate,
+            @Value("${product.cards.check-drift-on-startup:false}") boolean checkDriftOnStartup) {
+        this.cardRepo = cardRepository;
+        this.prodRepo = prodRepository;
+        this.sellerNameResolver = sellerNameResolver;
+        this.mongoTemplate = mongoTemplate;
+        this.checkDriftOnStartup = checkDriftOnStartup;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        try {
+            switch (event.getType()) {
+                case CREATED, UPDATED -> project(event.getProduct());
+                case DELETED -> cardRepo.deleteById(event.getProductId());
+                case STOCK_CHANGED -> cardRepo.applyQuantityDelta(event.getProductId(), event.getQuantityDelta());
+                case IMAGES_CHANGED -> cardRepo.setImageMediaIds(event.getProductId(), event.getProduct().getImageMediaIds());
+            }
+        } catch (Exception e) {
+            log.error("Error projecting product card for product {}: {}", event.getProductId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Project a whole import chunk with one seller lookup and one bulk write.
+     */
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        try {
+            writeBatch(event.getProducts(), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Error projecting product cards for {} imported products: {}",
+                    event.getProducts().size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Apply a seller rename to every card of that seller.
+     */
+    public void renameSeller(String sellerId, String sellerName) {
+        sellerNameResolver.evict(sellerId);
+        long updated = cardRepo.renameSeller(sellerId, sellerName);
+        log.info("Renamed seller {} on {} product cards", sellerId, updated);
+    }
+
+    private void project(Product product) {
+        Map<String, String> sellerNames = sellerNameResolver.resolveNames(List.of(product.getUserId()));
+        cardRepo.save(toCard(product, sellerNames, System.currentTimeMillis()));
+    }
+
+    /**
+     * Create the (sortField, _id) indexes that keyset pagination seeks on.
+     * Listing sorts by name by default, so that one matters most.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(ProductCard.class);
+        for (String sortField : List.of("name", "price", "quantity")) {
+            indexOps.ensureIndex(new Index().on(sortField, Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+        }
+    }
+
+    /**
+     * Repair the read model at startup. It is rebuilt in full if it does not
+     * hold exactly one card per product, e.g. on first deployment. Otherwise
+     * the cards that differ from their product are re-projected if the
+     * projection changed since the last check, or on every start if
+     * configured to, which also catches cards that were never written and
+     * edits made to products directly.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfStale() {
+        long products = prodRepo.count();
+        long cards = cardRepo.count();
+        if (products != cards) {
+            log.info("Product cards out of date ({} cards for {} products), rebuilding", cards, products);
+            rebuild();
+            markProjected();
+            return;
+        }
+        if (!checkDriftOnStartup && projectedVersion() >= PROJECTION_VERSION) {
+            log.info("Product cards up to date ({} cards, projection version {})", cards, PROJECTION_VERSION);
+            return;
+        }
+        int repaired = reprojectDrifted();
+        markProjected();
+        log.info("Product cards up to date ({} cards, {} re-projected)", cards, repaired);
+    }
+
+    private int projectedVersion() {
+        MigrationState state = mongoTemplate.findById(MIGRATION_ID, MigrationState.class);
+        return state != null ? state.getVersion() : 0;
+    }
+
+    private void markProjected() {
+        mongoTemplate.save(MigrationState.builder()
+                .id(MIGRATION_ID)
+                .version(PROJECTION_VERSION)
+                .completedAt(new Date())
+                .build());
+    }
+
+    /**
+     * Re-project the products whose card is missing or differs in any field
+     * projected from the product. Seller names are kept current by renames
+     * and are not compared.
+     *
+     * @return number of cards re-projected
+     */
+    public int reprojectDrifted() {
+        List<Document> pipeline = List.of(
+                new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(ProductCard.class))
+                        .append("localField", "_id")
+                        .append("foreignField", "_id")
+                        .append("as", "card")),
+                new Document("$unwind", new Document("path", "$card").append("preserveNullAndEmptyArrays", true)),
+                new Document("$match", new Document("$expr", new Document("$or", List.of(
+                        differs("name", "name"),
+                        differs("description", "description"),
+                        differs("price", "price"),
+                        differs("quantity", "quantity"),
+                        differs("userId", "sellerId"),
+                        differs("category", "category"),
+                        differs("imageMediaIds", "imageMediaIds"))))),
+                new Document("$project", new Document("_id", 1)));
+
+        long startedAt = System.currentTimeMillis();
+        List<String> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        int projected = 0;
+        for (Document drifted : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            batch.add(drifted.get("_id").toString());
+            if (batch.size() == REBUILD_BATCH_SIZE) {
+                projected += writeBatch(prodRepo.findAllById(batch), startedAt);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            projected += writeBatch(prodRepo.findAllById(batch), startedAt);
+        }
+        return projected;
+    }
+
+    private static Document differs(String productField, String cardField) {
+        return new Document("$ne", List.of("$" + productField, "$card." + cardField));
+    }
+
+    /**
+     * Re-project every product in bounded batches, then drop cards whose
+     * product no longer exists.
+     */
+    public void rebuild() {
+        long rebuildStartedAt = System.currentTimeMillis();
+        List<Product> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        int projected = 0;
+
+        try (Stream<Product> products = mongoTemplate.stream(new Query(), Product.class)) {
+            var iterator = products.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == REBUILD_BATCH_SIZE) {
+                    projected += writeBatch(batch, rebuildStartedAt);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            projected += writeBatch(batch, rebuildStartedAt);
+        }
+
+        long removed = cardRepo.deleteProjectedBefore(rebuildStartedAt);
+        log.info("Rebuilt {} product cards, removed {} orphaned cards", projected, removed);
+    }
+
+    private int writeBatch(List<Product> products, long projectedAt) {
+        Map<String, String> sellerNames = sellerNameResolver.resolveNames(products.stream()
+                .map(Product::getUserId)
+                .toList());
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductCard.class);
+        for (Product product : products) {
+            ProductCard card = toCard(product, sellerNames, projectedAt);
+            bulkOps.replaceOne(Query.query(Criteria.where("_id").is(card.getId())),
+                    card, FindAndReplaceOptions.options().upsert());
+        }
+        bulkOps.execute();
+        return products.size();
+    }
+
+    private ProductCard toCard(Product product, Map<String, String> sellerNames, long projectedAt) {
+        return ProductCard.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .description(product.getDescription())
+                .price(product.getPrice())
+                .quantity(product.getQuantity())
+                .sellerId(product.getUserId())
+                .sellerName(sellerNames.getOrDefault(product.getUserId(), SellerNameResolver.UNKNOWN_SELLER))
+                .category(product.getCategory())
+                .categoryDisplayName(product.getCategory() != null ? product.getCategory().toDisplayName() : "Other")
+                .imageMediaIds(product.getImageMediaIds())
+                .projectedAt(projectedAt)
+                .build();
+    }
+}
@@ -1,8 +1,24 @@
 package com.sayedhesham.productservice.service;
 
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -14,15 +30,29 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Publishes product image events. Image bytes are staged in a GridFS bucket
+ * that media-service reads from (claim check), so the Kafka record only
+ * carries a reference, a SHA-256 checksum and the size. media-service
+ * deletes a staged image once it has read it; images it never reads, e.g.
+ * because the event was lost, are swept once they are older than the
+ * staging TTL.
+ */
 @Service
 @Slf4j
 public class ProductImageEventService {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
     
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private GridFsTemplate imageStaging;
+
     @Value("${kafka.topic.product.image.upload}")
     private String productImageUploadTopic;
 
@@ -32,15 +62,45 @@ public class ProductImageEventService {
     @Value("${kafka.topic.product.image.delete}")
     private String productImageDeleteTopic;
 
-    public void publishProductImageUploadEvent(String productId, String imageData, String contentType) {
+    @Value("${media.staging.ttl-hours:24}")
+    private long stagingTtlHours;
+
+    /**
+     * Decode a base64 image, optionally a data URL naming its content type,
+     * so it can be rejected before anything is saved.
+     *
+     * @throws IllegalArgumentException if the image is empty or not valid
+     * base64
+     */
+    public ImageUpload decodeImage(String imageData) {
+        if (imageData == null || imageData.isBlank()) {
+            throw new IllegalArgumentException("Image data is required");
+        }
+        String base64 = imageData.contains(",") ? imageData.substring(imageData.indexOf(',') + 1) : imageData;
+        byte[] bytes;
         try {
-            ProductImageEvent event = ProductImageEvent.builder()
-                    .productId(productId)
-                    .imageData(imageData)
-                    .contentType(contentType)
-                    .timestamp(System.currentTimeMillis())
-                    .build();
+            // The MIME decoder silently skips invalid characters, so only whitespace is dropped here
+            bytes = Base64.getDecoder().decode(WHITESPACE.matcher(base64).replaceAll(""));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Image is not valid base64");
+        }
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Image data is required");
+        }
+        return new ImageUpload(bytes, extractContentType(imageData));
+    }
+
+    public void publishProductImageUploadEvent(String productId, ImageUpload image) {
+        publishProductImageUploadEvent(stageImage(productId, image));
+    }
 
+    /**
+     * Publish the upload event of an image staged earlier with
+     * {@link #stageImage}.
+     */
+    public void publishProductImageUploadEvent(ProductImageEvent event) {
+        String productId = event.getProductId();
+        try {
             String eventJson = objectMapper.writeValueAsString(event);
             kafkaTemplate.send(productImageUploadTopic, productId, eventJson);
             log.info("Published product image upload event for product: {}", productId);
@@ -50,14 +110,9 @@ public class ProductImageEventService {
         }
     }
 
-    public void publishProductImageUpdateEvent(String productId, String imageData, String contentType) {
+    public void publishProductImageUpdateEvent(String productId, ImageUpload image) {
         try {
-            ProductImageEvent event = ProductImageEvent.builder()
-                    .productId(productId)
-                    .imageData(imageData)
-                    .contentType(contentType)
-                    .timestamp(System.currentTimeMillis())
-                    .build();
+            ProductImageEvent event = stageImage(productId, image);
 
             String eventJson = objectMapper.writeValueAsString(event);
             kafkaTemplate.send(productImageUpdateTopic, productId, eventJson);
@@ -85,13 +140,85 @@ public class ProductImageEventService {
         }
     }
 
+    /**
+     * Delete staged images media-service never picked up.
+     */
+    @Scheduled(fixedDelayString = "${media.staging.sweep-interval-ms:3600000}")
+    public void sweepStagedImages() {
+        Date cutoff = Date.from(Instant.now().minus(Duration.ofHours(stagingTtlHours)));
+        Query expired = Query.query(Criteria.where("uploadDate").lt(cutoff));
+        try {
+            imageStaging.delete(expired);
+        } catch (RuntimeException e) {
+            log.error("Error sweeping staged product images", e);
+        }
+    }
+
+    /**
+     * Delete a staged image whose upload event will not be published.
+     */
+    public void discardStagedImage(String stagedImageId) {
+        imageStaging.delete(Query.query(Criteria.where("_id").is(new ObjectId(stagedImageId))));
+    }
+
+    /**
+     * Store the bytes of a decoded image in the staging bucket, so they need
+     * not be held until the upload event is published.
+     */
+    public ProductImageEvent stageImage(String productId, ImageUpload image) {
+        byte[] bytes = image.bytes();
+        String checksum = sha256(bytes);
+
+        ObjectId stagedId = imageStaging.store(new ByteArrayInputStream(bytes), "product_image_" + productId,
+                image.contentType(), new Document("productId", productId).append("sha256", checksum));
+        log.debug("Staged {} byte image {} for product: {}", bytes.length, stagedId, productId);
+
+        return ProductImageEvent.builder()
+                .productId(productId)
+                .stagedImageId(stagedId.toHexString())
+                .checksum(checksum)
+                .sizeBytes((long) bytes.length)
+                .contentType(image.contentType())
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private static String extractContentType(String imageData) {
+        if (imageData.contains(",")) {
+            String dataUrl = imageData.split(",")[0];
+            int imageIndex = dataUrl.indexOf("image/");
+            int semicolonIndex = dataUrl.indexOf(";");
+            // Ensure 'image/' appears before the semicolon and the substring is not empty
+            if (imageIndex != -1 && semicolonIndex != -1 && imageIndex < semicolonIndex) {
+                return dataUrl.substring(imageIndex, semicolonIndex);
+            }
+        }
+        return "image/jpeg"; // default
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A decoded image waiting to be staged.
+     */
+    public record ImageUpload(byte[] bytes, String contentType) {
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     @Builder
     public static class ProductImageEvent {
         private String productId;
-        private String imageData;
+        private String stagedImageId; // GridFS file ID in the image staging bucket
+        private String checksum; // SHA-256 of the image bytes, hex
+        private Long sizeBytes;
         private String contentType;
         private Long timestamp;
     }
@@ -0,0 +1,450 @@
+package com.sayedhesham.productservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.sayedhesham.productservice.dto.ProductDTO;
+import com.sayedhesham.productservice.dto.ProductImportResultDTO;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.service.ProductImageEventService.ProductImageEvent;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk product import for sellers from NDJSON (one ProductDTO object per
+ * line) or CSV (header line naming name, description, price, quantity and
+ * category columns).
+ *
+ * Rows are read and validated as they arrive and inserted in unordered bulk
+ * writes of {@value #CHUNK_SIZE}, so memory stays bounded by one chunk no
+ * matter how large the upload is: lines are capped at
+ * {@value #MAX_LINE_LENGTH} characters and a row's images are staged before
+ * it joins the chunk, which then only holds their references. An invalid or
+ * rejected row is reported with its line number and the import carries on.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    private static final int CHUNK_SIZE = 500;
+    // Room for a few base64 images of up to media-service's 2 MB each
+    private static final int MAX_LINE_LENGTH = 8 * 1024 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final List<String> CSV_COLUMNS = List.of("name", "description", "price", "quantity", "category");
+
+    private final ProductService productService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductImportService(ProductService productService, MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher) {
+        this.productService = productService;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Import every row of the input for the authenticated seller.
+     *
+     * @param format {@link #NDJSON} or {@link #CSV}
+     * @throws IllegalArgumentException if the seller does not exist, the
+     * format is not supported or the CSV header is invalid
+     */
+    public ProductImportResultDTO importProducts(InputStream input, String format) throws IOException {
+        boolean csv = CSV.equals(format);
+        if (!csv && !NDJSON.equals(format)) {
+            throw new IllegalArgumentException("Unsupported import format: " + format);
+        }
+        // One seller check for the whole upload instead of one per product
+        String sellerId = productService.requireCurrentSeller();
+
+        Import state = new Import();
+        BoundedLineReader reader = new BoundedLineReader(new InputStreamReader(input, StandardCharsets.UTF_8), MAX_LINE_LENGTH);
+        int[] columns = null;
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (reader.lastLineTooLong()) {
+                if (csv && columns == null) {
+                    throw new IllegalArgumentException("CSV header is longer than " + MAX_LINE_LENGTH + " characters");
+                }
+                state.rows++;
+                state.fail(lineNumber, "Line is longer than " + MAX_LINE_LENGTH + " characters");
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            if (csv && columns == null) {
+                columns = readCsvHeader(line);
+                continue;
+            }
+
+            state.rows++;
+            try {
+                ProductDTO productDTO = csv ? parseCsvRow(line, columns) : parseJsonRow(line);
+                productService.validateNewProduct(productDTO);
+                Product product = toProduct(productDTO, sellerId);
+                chunk.add(new Row(lineNumber, product, productService.stageImages(product.getId(), productDTO.getImages())));
+            } catch (IllegalArgumentException e) {
+                state.fail(lineNumber, e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Staging images of import line {} failed", lineNumber, e);
+                state.fail(lineNumber, "Staging images failed: " + e.getMessage());
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                insert(chunk, sellerId, state);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insert(chunk, sellerId, state);
+        }
+
+        log.info("Imported {} of {} products for seller {}", state.imported, state.rows, sellerId);
+        return ProductImportResultDTO.builder()
+                .rows(state.rows)
+                .imported(state.imported)
+                .failed(state.failed)
+                .errors(state.errors)
+                .errorsTruncated(state.errorsTruncated)
+                .build();
+    }
+
+    /**
+     * Insert a chunk with one unordered bulk write, then announce the
+     * products that made it in one event so read models and indexes pick
+     * them up in bulk. A failure of the whole write or of one row's images
+     * is reported as row errors and the import carries on with the next
+     * chunk.
+     */
+    private void insert(List<Row> chunk, String sellerId, Import state) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        bulkOps.insert(chunk.stream().map(Row::product).toList());
+
+        Set<Integer> rejected = new HashSet<>();
+        try {
+            bulkOps.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                rejected.add(error.getIndex());
+                state.fail(chunk.get(error.getIndex()).line(), error.getMessage());
+            }
+        } catch (DataAccessException e) {
+            log.error("Bulk insert of {} imported products failed", chunk.size(), e);
+            Set<String> inserted = findInserted(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (!inserted.contains(chunk.get(i).product().getId())) {
+                    rejected.add(i);
+                    state.fail(chunk.get(i).line(), "Insert failed: " + e.getMessage());
+                }
+            }
+        }
+
+        List<Row> inserted = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (rejected.contains(i)) {
+                productService.discardStagedImages(chunk.get(i).images());
+            } else {
+                inserted.add(chunk.get(i));
+            }
+        }
+        if (inserted.isEmpty()) {
+            return;
+        }
+        state.imported += inserted.size();
+        eventPublisher.publishEvent(ProductsImportedEvent.builder()
+                .sellerId(sellerId)
+                .products(inserted.stream().map(Row::product).toList())
+                .build());
+
+        for (Row row : inserted) {
+            try {
+                productService.publishStagedImages(row.images());
+            } catch (RuntimeException e) {
+                log.error("Publishing images of imported product {} failed", row.product().getId(), e);
+                state.report(row.line(), "Product imported without some images: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * IDs of the chunk's products that made it into Mongo before a write
+     * failed part way, or none if they cannot be looked up either.
+     */
+    private Set<String> findInserted(List<Row> chunk) {
+        List<String> ids = chunk.stream().map(row -> row.product().getId()).toList();
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("_id");
+        try {
+            Set<String> inserted = new HashSet<>();
+            mongoTemplate.find(query, Product.class).forEach(product -> inserted.add(product.getId()));
+            return inserted;
+        } catch (DataAccessException e) {
+            return Set.of();
+        }
+    }
+
+    private static Product toProduct(ProductDTO productDTO, String sellerId) {
+        return Product.builder()
+                // Assigned up front so the inserted products can be announced by ID
+                .id(new ObjectId().toHexString())
+                .name(productDTO.getName())
+                .description(productDTO.getDescription())
+                .price(productDTO.getPrice())
+                .quantity(productDTO.getQuantity())
+                .category(productDTO.getCategory())
+                .userId(sellerId)
+                .imageMediaIds(new ArrayList<>())
+                .version(1L)
+                .build();
+    }
+
+    private ProductDTO parseJsonRow(String line) {
+        try {
+            ProductDTO productDTO = objectMapper.readValue(line, ProductDTO.class);
+            if (productDTO == null) {
+                throw new IllegalArgumentException("Row is not a product object");
+            }
+            return productDTO;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Position of each expected column in the header.
+     */
+    private static int[] readCsvHeader(String line) {
+        List<String> header = splitCsvLine(line).stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+            columns[i] = header.indexOf(CSV_COLUMNS.get(i));
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("CSV header is missing column " + CSV_COLUMNS.get(i));
+            }
+        }
+        return columns;
+    }
+
+    private static ProductDTO parseCsvRow(String line, int[] columns) {
+        List<String> values = splitCsvLine(line);
+        return ProductDTO.builder()
+                .name(column(values, columns[0]))
+                .description(column(values, columns[1]))
+                .price(parseNumber(column(values, columns[2]), "price", Double::valueOf))
+                .quantity(parseNumber(column(values, columns[3]), "quantity", Integer::valueOf))
+                .category(parseCategory(column(values, columns[4])))
+                .build();
+    }
+
+    private static String column(List<String> values, int index) {
+        if (index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T parseNumber(String value, String field, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+
+    private static Category parseCategory(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Category.valueOf(value.toUpperCase(Locale.ROOT).replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown category: " + value);
+        }
+    }
+
+    /**
+     * Split one CSV line. Fields may be quoted, with "" standing for a quote
+     * inside a quoted field; quoted fields cannot span lines.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private record Row(long line, Product product, List<ProductImageEvent> images) {
+    }
+
+    /**
+     * Reads lines like {@link java.io.BufferedReader#readLine()}, but drops
+     * the rest of a line longer than the limit instead of buffering it.
+     */
+    static final class BoundedLineReader {
+
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean tooLong;
+
+        BoundedLineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * @return the next line without its terminator, empty if it was too
+         * long, or null at the end of the input
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+                    position = 0;
+                    if (limit == 0) {
+                        return read ? finish() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    position++;
+                    return finish();
+                }
+            }
+        }
+
+        /**
+         * Whether the line last returned was cut off for exceeding the limit.
+         */
+        boolean lastLineTooLong() {
+            return tooLong;
+        }
+
+        private void append(int start, int end) {
+            if (tooLong) {
+                return;
+            }
+            if (line.length() + end - start > maxLength + 1) {
+                // One extra for the \r of a \r\n terminator
+                tooLong = true;
+                line.setLength(0);
+                return;
+            }
+            line.append(buffer, start, end - start);
+        }
+
+        private String finish() {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            if (line.length() > maxLength) {
+                tooLong = true;
+                line.setLength(0);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * Running totals of one import, keeping only the first errors.
+     */
+    private static final class Import {
+
+        private long rows;
+        private long imported;
+        private long failed;
+        private final List<ProductImportResultDTO.RowError> errors = new ArrayList<>();
+        private boolean errorsTruncated;
+
+        private void fail(long line, String message) {
+            failed++;
+            report(line, message);
+        }
+
+        /**
+         * Report a problem with a row, whether or not it was imported.
+         */
+        private void report(long line, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(ProductImportResultDTO.RowError.builder().line(line).message(message).build());
+            } else {
+                errorsTruncated = true;
+            }
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.sayedhesham.productservice.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.config.KafkaConfig;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
 import com.sayedhesham.productservice.model.Product;
 import com.sayedhesham.productservice.repository.ProductRepository;
+import com.sayedhesham.productservice.repository.ProductRepositoryCustom.ImageMediaChange;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -22,63 +31,79 @@ public class ProductMediaEventConsumerService {
 
     private final ProductRepository productRepository;
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @KafkaListener(topics = "${kafka.topic.media-uploaded}", groupId = "productservice-group")
-    public void handleMediaProcessedEvent(String eventJson) {
-        try {
-            MediaProcessedEvent event = objectMapper.readValue(eventJson, MediaProcessedEvent.class);
-            if (event.getProductId() == null) {
-                log.warn("Received media processed event with null productId: {}", eventJson);
-                return;
+    /**
+     * Applies a whole poll of media events at once. Image IDs are changed
+     * with $push/$pull/positional $set rather than by saving the loaded
+     * product, so these updates cannot overwrite concurrent seller edits or
+     * stock changes. Consecutive events of the same kind for a product are
+     * coalesced, e.g. every image uploaded for a product becomes one $push.
+     */
+    @KafkaListener(topics = "${kafka.topic.media-uploaded}", groupId = "productservice-group",
+            containerFactory = KafkaConfig.BATCH_LISTENER_FACTORY)
+    public void handleMediaProcessedEvents(List<String> messages) {
+        Map<String, List<ImageMediaChange>> changesByProduct = new LinkedHashMap<>();
+        for (String eventJson : messages) {
+            try {
+                MediaProcessedEvent event = objectMapper.readValue(eventJson, MediaProcessedEvent.class);
+                if (event.getProductId() == null) {
+                    log.warn("Received media processed event with null productId: {}", eventJson);
+                    continue;
+                }
+                log.info("Processing media processed event for product: {}, action: {}", event.getProductId(), event.getAction());
+
+                if ("product_image".equals(event.getMediaType())) {
+                    addImageMediaChange(event, changesByProduct);
+                }
+            } catch (JsonProcessingException e) {
+                log.error("Error parsing media processed event: {}", eventJson, e);
             }
-            log.info("Processing media processed event for product: {}, action: {}", event.getProductId(), event.getAction());
+        }
+        if (changesByProduct.isEmpty()) {
+            return;
+        }
 
-            if ("product_image".equals(event.getMediaType())) {
-                handleProductImageMediaEvent(event);
+        try {
+            productRepository.applyImageMediaChanges(changesByProduct);
+            for (Product product : productRepository.findAllById(changesByProduct.keySet())) {
+                eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.IMAGES_CHANGED, product));
             }
-        } catch (JsonProcessingException e) {
-            log.error("Error parsing media processed event: {}", eventJson, e);
+            log.info("Successfully updated image media IDs of {} products", changesByProduct.size());
         } catch (Exception e) {
-            log.error("Error processing media processed event", e);
+            log.error("Error processing media processed events", e);
         }
     }
 
-    private void handleProductImageMediaEvent(MediaProcessedEvent event) {
-        Product product = productRepository.findById(event.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found: " + event.getProductId()));
-
+    private void addImageMediaChange(MediaProcessedEvent event, Map<String, List<ImageMediaChange>> changesByProduct) {
+        if (event.getMediaId() == null || event.getAction() == null) {
+            log.warn("Ignoring product image event without mediaId or action for product: {}", event.getProductId());
+            return;
+        }
+        ImageMediaChange.Kind kind;
         switch (event.getAction()) {
-            case "uploaded" -> {
-                if (product.getImageMediaIds() == null) {
-                    product.setImageMediaIds(new java.util.ArrayList<>());
-                }
-                product.getImageMediaIds().add(event.getMediaId());
-                log.info("Added image media ID {} to product: {}", event.getMediaId(), event.getProductId());
-            }
-            case "updated" -> {
-                // For updates, replace the first image or add if list is empty
-                if (product.getImageMediaIds() == null || product.getImageMediaIds().isEmpty()) {
-                    product.setImageMediaIds(new java.util.ArrayList<>());
-                    product.getImageMediaIds().add(event.getMediaId());
-                } else {
-                    product.getImageMediaIds().set(0, event.getMediaId());
-                }
-                log.info("Updated product {} with new image media ID: {}", event.getProductId(), event.getMediaId());
-            }
-            case "deleted" -> {
-                if (product.getImageMediaIds() != null) {
-                    product.getImageMediaIds().remove(event.getMediaId());
-                    log.info("Removed image media ID {} from product: {}", event.getMediaId(), event.getProductId());
-                }
-            }
+            case "uploaded" -> kind = ImageMediaChange.Kind.ADD;
+            // For updates, replace the first image or add if list is empty
+            case "updated" -> kind = ImageMediaChange.Kind.REPLACE_FIRST;
+            case "deleted" -> kind = ImageMediaChange.Kind.REMOVE;
             default -> {
                 log.warn("Unknown product image action: {}", event.getAction());
                 return;
             }
         }
 
-        productRepository.save(product);
-        log.info("Successfully updated product {} image media IDs", event.getProductId());
+        List<ImageMediaChange> changes = changesByProduct.computeIfAbsent(event.getProductId(), id -> new ArrayList<>());
+        ImageMediaChange last = changes.isEmpty() ? null : changes.get(changes.size() - 1);
+        if (last != null && last.kind() == kind) {
+            if (kind == ImageMediaChange.Kind.REPLACE_FIRST) {
+                // Only the latest replacement of the first image survives
+                last.mediaIds().set(0, event.getMediaId());
+            } else {
+                last.mediaIds().add(event.getMediaId());
+            }
+        } else {
+            changes.add(new ImageMediaChange(kind, new ArrayList<>(List.of(event.getMediaId()))));
+        }
     }
 
     // Event class
@@ -0,0 +1,86 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.cache.BoundedTtlCache;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductResponseDTO;
+
+/**
+ * Per-node cache of product detail responses, so hot products are served
+ * without reading the product and its seller on every request. Entries are
+ * evicted by every local product change; changes made by other instances
+ * are picked up when the short TTL runs out.
+ *
+ * A load only caches its response if the product was not invalidated while
+ * it ran. Invalidations are counted per stripe of products rather than
+ * globally, so a busy catalog does not keep every load from caching.
+ */
+@Service
+public class ProductResponseCache {
+
+    private static final int STRIPES = 1024;
+
+    private final BoundedTtlCache<String, ProductResponseDTO> responses;
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    public ProductResponseCache(@Value("${product.response-cache.max-size:1000}") int maxSize,
+            @Value("${product.response-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.responses = new BoundedTtlCache<>(maxSize, ttlSeconds * 1000);
+    }
+
+    public ProductResponseDTO get(String productId) {
+        return responses.get(productId);
+    }
+
+    /**
+     * Stamp to take before loading a product and hand to {@link #put}.
+     */
+    public long stamp(String productId) {
+        return invalidations.get(stripe(productId));
+    }
+
+    /**
+     * Cache a loaded response unless the product was invalidated since the
+     * load started, in which case the response may already be stale.
+     */
+    public void put(String productId, ProductResponseDTO response, long stamp) {
+        if (invalidations.get(stripe(productId)) == stamp) {
+            responses.put(productId, response);
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        responses.invalidateAll();
+    }
+
+    /**
+     * Evict products whose stored state changed without an event of its
+     * own, e.g. when the inventory ledger's group commit reaches Mongo.
+     */
+    public void invalidate(Collection<String> productIds) {
+        productIds.forEach(this::invalidate);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.getProductId());
+    }
+
+    private void invalidate(String productId) {
+        invalidations.incrementAndGet(stripe(productId));
+        responses.invalidate(productId);
+    }
+
+    private static int stripe(String productId) {
+        return Math.floorMod(productId.hashCode(), STRIPES);
+    }
+}
@@ -0,0 +1,183 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.search.ProductNameIndex;
+import com.sayedhesham.productservice.search.ProductPriceIndex;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Owns the in-memory product name and price indexes: builds them from the
+ * products collection at startup and keeps them current from product
+ * writes. The price index uses the ordinals of the name index, so writes to
+ * the two are serialized here.
+ *
+ * Name queries are answered with the same semantics as the Mongo
+ * case-insensitive regex they replace: the index matches the query anywhere
+ * in the name, inside words too ("ouse" in "Mouse"). Queries with regex
+ * metacharacters, or without a letter or digit, are left to Mongo.
+ */
+@Slf4j
+@Service
+public class ProductSearchIndexService {
+
+    private static final Pattern REGEX_METACHARACTERS = Pattern.compile("[.^$*+?()\\[\\]{}|\\\\]");
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductNameIndex nameIndex = new ProductNameIndex();
+    private final ProductPriceIndex priceIndex = new ProductPriceIndex();
+    private final int maxCandidates;
+
+    private volatile boolean ready;
+
+    public ProductSearchIndexService(MongoTemplate mongoTemplate,
+            @Value("${product.search.index.max-candidates:5000}") int maxCandidates) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        long startedAt = System.currentTimeMillis();
+        Query query = new Query();
+        query.fields().include("name").include("price").include("category");
+
+        nameIndex.clear();
+        priceIndex.clear();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(this::index);
+        }
+        ready = true;
+        log.info("Built product name and price indexes with {} products in {} ms",
+                nameIndex.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED -> index(event.getProduct());
+            case DELETED -> {
+                int ordinal = nameIndex.ordinalOf(event.getProductId());
+                if (ordinal >= 0) {
+                    // Drop the price before the name index frees the ordinal for reuse
+                    priceIndex.remove(ordinal);
+                }
+                nameIndex.remove(event.getProductId());
+            }
+            default -> {
+                // Stock and image changes do not touch the name or price
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        event.getProducts().forEach(this::index);
+    }
+
+    private void index(Product product) {
+        nameIndex.put(product.getId(), product.getName());
+        priceIndex.put(nameIndex.ordinalOf(product.getId()), product.getCategory(), product.getPrice());
+    }
+
+    /**
+     * IDs of products whose name matches the query and whose price lies in
+     * the range, intersected in memory before any document is read. The
+     * category only narrows the price lookup; callers still filter on it.
+     *
+     * @param name name query, or null/empty for no name filter
+     * @return empty when there is neither a name nor a price filter, or
+     * when the index cannot answer, in which case callers query Mongo with
+     * the plain filters
+     */
+    public Optional<List<String>> findCandidateIds(String name, Category category, Double minPrice, Double maxPrice) {
+        boolean byName = name != null && !name.isEmpty();
+        boolean byPrice = minPrice != null || maxPrice != null;
+        if (!ready || (!byName && !byPrice)) {
+            return Optional.empty();
+        }
+
+        BitSet matches = null;
+        if (byName) {
+            matches = nameMatches(name);
+            if (matches == null) {
+                return Optional.empty();
+            }
+        }
+        if (byPrice) {
+            BitSet inRange = priceIndex.range(category, minPrice, maxPrice);
+            if (matches == null) {
+                matches = inRange;
+            } else {
+                matches.and(inRange);
+            }
+        }
+        int count = matches.cardinality();
+        if (count > maxCandidates) {
+            log.debug("Search for name '{}' and price {}..{} matched {} products, falling back to Mongo",
+                    name, minPrice, maxPrice, count);
+            return Optional.empty();
+        }
+        return Optional.of(nameIndex.idsOf(matches.stream().toArray()));
+    }
+
+    /**
+     * One page of product IDs in price order, for searches sorted by price
+     * alone. The page is cut from the sorted price arrays within the price
+     * range, skipping products the name does not match, so only the cards
+     * of the page itself need to be read.
+     *
+     * @return empty when the index is still building, the page is not
+     * sorted by price alone or the index cannot answer the name query
+     */
+    public Optional<Page<String>> findPriceOrderedIds(String name, Category category, Double minPrice, Double maxPrice,
+            Pageable pageable) {
+        Sort.Order priceOrder = pageable.getSort().getOrderFor("price");
+        if (!ready || pageable.isUnpaged() || priceOrder == null || pageable.getSort().stream().count() != 1) {
+            return Optional.empty();
+        }
+
+        BitSet byName = null;
+        if (name != null && !name.isEmpty()) {
+            byName = nameMatches(name);
+            if (byName == null) {
+                return Optional.empty();
+            }
+        }
+        ProductPriceIndex.Slice slice = priceIndex.slice(byName, category, minPrice, maxPrice, priceOrder.isDescending(),
+                pageable.getOffset(), pageable.getPageSize());
+        return Optional.of(new PageImpl<>(nameIndex.idsOf(slice.ordinals()), pageable, slice.total()));
+    }
+
+    /**
+     * Ordinals of the products whose name the Mongo regex would match, or
+     * null when the query is not plain text and only Mongo can evaluate it.
+     */
+    private BitSet nameMatches(String name) {
+        if (REGEX_METACHARACTERS.matcher(name).find()) {
+            log.debug("Name query '{}' is a regex, falling back to Mongo", name);
+            return null;
+        }
+        return nameIndex.containsBits(name);
+    }
+}
@@ -1,25 +1,51 @@
 package com.sayedhesham.productservice.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import com.sayedhesham.productservice.dto.CursorPageDTO;
+import com.sayedhesham.productservice.dto.FacetedPageDTO;
+import com.sayedhesham.productservice.dto.ProductAdjustmentDTO;
+import com.sayedhesham.productservice.dto.ProductAdjustmentResultDTO;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductCursor;
 import com.sayedhesham.productservice.dto.ProductDTO;
+import com.sayedhesham.productservice.dto.ProductFieldSet;
 import com.sayedhesham.productservice.dto.ProductResponseDTO;
 import com.sayedhesham.productservice.dto.ProductSearchRequest;
 import com.sayedhesham.productservice.dto.ProductUpdateWithImagesDTO;
+import com.sayedhesham.productservice.dto.SearchFacetsDTO;
+import com.sayedhesham.productservice.inventory.InventoryEngine;
 import com.sayedhesham.productservice.model.Category;
 import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.model.ProductCard;
 import com.sayedhesham.productservice.model.User;
+import com.sayedhesham.productservice.repository.ProductCardRepository;
 import com.sayedhesham.productservice.repository.ProductRepository;
+import com.sayedhesham.productservice.repository.ProductRepositoryCustom.ImageMediaChange;
 import com.sayedhesham.productservice.repository.UserRepository;
+import com.sayedhesham.productservice.service.ProductImageEventService.ImageUpload;
+import com.sayedhesham.productservice.service.ProductImageEventService.ProductImageEvent;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,22 +55,59 @@ public class ProductService {
 
     private static final String PRODUCT_NOT_FOUND = "Product not found";
 
+    /**
+     * Products read from the cursor per seller name lookup when streaming.
+     */
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    /**
+     * Card fields that cursor pagination can order by.
+     */
+    private static final Set<String> CURSOR_SORT_FIELDS = Set.of("name", "price", "quantity");
+
+    /**
+     * Products one bulk adjustment request may change.
+     */
+    private static final int MAX_ADJUSTMENTS = 1000;
+
     private final ProductRepository prodRepo;
+    private final ProductCardRepository cardRepo;
     private final UserRepository userRepo;
     private final ProductImageEventService productImageEventService;
-
-    public ProductService(ProductRepository prodRepository, UserRepository userRepository, ProductImageEventService productImageEventService) {
+    private final SellerNameResolver sellerNameResolver;
+    private final ProductSearchIndexService searchIndexService;
+    private final ProductResponseCache responseCache;
+    private final SellerCatalogVersionService catalogVersions;
+    private final InventoryEngine inventoryEngine;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductService(ProductRepository prodRepository, ProductCardRepository cardRepository, UserRepository userRepository,
+            ProductImageEventService productImageEventService, SellerNameResolver sellerNameResolver,
+            ProductSearchIndexService searchIndexService, ProductResponseCache responseCache,
+            SellerCatalogVersionService catalogVersions, InventoryEngine inventoryEngine,
+            ApplicationEventPublisher eventPublisher) {
         this.prodRepo = prodRepository;
+        this.cardRepo = cardRepository;
         this.userRepo = userRepository;
         this.productImageEventService = productImageEventService;
+        this.sellerNameResolver = sellerNameResolver;
+        this.searchIndexService = searchIndexService;
+        this.responseCache = responseCache;
+        this.catalogVersions = catalogVersions;
+        this.inventoryEngine = inventoryEngine;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Product> getAll() {
         return prodRepo.findAll();
     }
 
+    /**
+     * Listing reads the product_cards read model, which already carries the
+     * seller name and category display name.
+     */
     public Page<ProductResponseDTO> getAll(Pageable pageable) {
-        return prodRepo.findAll(pageable).map(this::convertToProductResponseDTO);
+        return cardRepo.findAll(pageable).map(this::convertToProductResponseDTO);
     }
 
     public Page<ProductResponseDTO> searchProducts(ProductSearchRequest searchRequest, Pageable pageable) {
@@ -54,23 +117,183 @@ public class ProductService {
         String sellerName = searchRequest.getSellerName();
         Category category = searchRequest.getCategory();
 
-        List<String> userIds = null;
-        if (sellerName != null && !sellerName.trim().isEmpty()) {
-            userIds = userRepo.findByNameContainingIgnoreCase(sellerName)
-                    .stream()
-                    .map(User::getId)
-                    .toList();
+        if (sellerName == null || sellerName.trim().isEmpty()) {
+            Optional<Page<String>> priceOrderedIds = searchIndexService.findPriceOrderedIds(name, category, minPrice, maxPrice, pageable);
+            if (priceOrderedIds.isPresent()) {
+                Optional<Page<ProductResponseDTO>> page = cardsInOrder(priceOrderedIds.get(), cardFields(searchRequest));
+                if (page.isPresent()) {
+                    return page.get();
+                }
+            }
+        }
+
+        List<String> candidateIds = findCandidates(searchRequest);
+        if (candidateIds != null && candidateIds.isEmpty()) {
+            return Page.empty(pageable);
         }
 
-        Page<Product> products = prodRepo.searchProducts(name, minPrice, maxPrice, userIds, category, pageable);
-        return products.map(this::convertToProductResponseDTO);
+        Page<ProductCard> cards = cardRepo.searchCards(name, candidateIds, minPrice, maxPrice, sellerName, category, pageable,
+                cardFields(searchRequest));
+        return cards.map(this::convertToProductResponseDTO);
     }
 
-    private ProductResponseDTO convertToProductResponseDTO(Product product) {
-        User seller = userRepo.findById(product.getUserId())
-                .orElse(null);
+    /**
+     * Search plus category counts, price buckets and seller count over the
+     * whole result set, all from one aggregation on product_cards.
+     */
+    public FacetedPageDTO<ProductResponseDTO> searchProductsWithFacets(ProductSearchRequest searchRequest, Pageable pageable) {
+        String name = searchRequest.getName();
+        List<String> candidateIds = findCandidates(searchRequest);
+        if (candidateIds != null && candidateIds.isEmpty()) {
+            return FacetedPageDTO.<ProductResponseDTO>builder()
+                    .content(List.of())
+                    .number(pageable.getPageNumber())
+                    .size(pageable.getPageSize())
+                    .facets(SearchFacetsDTO.builder().categories(List.of()).priceBuckets(List.of()).build())
+                    .build();
+        }
+
+        FacetedPageDTO<ProductCard> cards = cardRepo.searchCardsWithFacets(name, candidateIds, searchRequest.getMinPrice(),
+                searchRequest.getMaxPrice(), searchRequest.getSellerName(), searchRequest.getCategory(), pageable,
+                cardFields(searchRequest));
+        return cards.map(this::convertToProductResponseDTO);
+    }
+
+    /**
+     * Card fields the requested field set is read from, or null for whole cards.
+     */
+    private List<String> cardFields(ProductSearchRequest searchRequest) {
+        return searchRequest.getFields() != null ? searchRequest.getFields().cardFields() : null;
+    }
+
+    /**
+     * Resolve the name query and price range through the in-memory indexes
+     * so Mongo gets an _id match instead of an unanchored regex and a price
+     * scan over the collection.
+     *
+     * @return candidate IDs (empty when nothing can match), or null when
+     * there is no name or price filter or the index cannot answer
+     */
+    private List<String> findCandidates(ProductSearchRequest searchRequest) {
+        String name = searchRequest.getName();
+        if ((name == null || name.isEmpty()) && searchRequest.getMinPrice() == null && searchRequest.getMaxPrice() == null) {
+            return null;
+        }
+        return searchIndexService.findCandidateIds(name, searchRequest.getCategory(),
+                searchRequest.getMinPrice(), searchRequest.getMaxPrice()).orElse(null);
+    }
 
-        String sellerName = seller != null ? seller.getName() : "Unknown Seller";
+    /**
+     * Read the cards of a page of IDs and keep the order of the IDs.
+     *
+     * @param fields card fields to read, or null for whole cards
+     * @return the page, or empty when some of the IDs have no card yet; the
+     * index total would then not match the cards Mongo can return, so the
+     * caller searches the cards instead
+     */
+    private Optional<Page<ProductResponseDTO>> cardsInOrder(Page<String> ids, List<String> fields) {
+        Map<String, ProductCard> cardsById = new HashMap<>();
+        for (ProductCard card : cardRepo.findCards(ids.getContent(), fields)) {
+            cardsById.put(card.getId(), card);
+        }
+        if (cardsById.size() < ids.getNumberOfElements()) {
+            log.debug("{} of {} price-ordered products have no card yet, searching the cards instead",
+                    ids.getNumberOfElements() - cardsById.size(), ids.getNumberOfElements());
+            return Optional.empty();
+        }
+        List<ProductResponseDTO> content = ids.getContent().stream()
+                .map(cardsById::get)
+                .map(this::convertToProductResponseDTO)
+                .toList();
+        return Optional.of(new PageImpl<>(content, ids.getPageable(), ids.getTotalElements()));
+    }
+
+    /**
+     * Keyset-paginated listing and search. Each page seeks directly past the
+     * last card of the previous one instead of skipping page * size
+     * documents, and no total count is computed.
+     *
+     * @param after opaque cursor from a previous page, or null/empty for the first page
+     * @throws IllegalArgumentException if the sort field is not supported or
+     * the cursor is malformed or was issued for a different sort
+     */
+    public CursorPageDTO<ProductResponseDTO> searchProductsAfter(ProductSearchRequest searchRequest, String sortBy,
+            Sort.Direction direction, String after, int size) {
+        if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination supports sorting by " + CURSOR_SORT_FIELDS);
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        ProductCursor cursor = null;
+        if (after != null && !after.isEmpty()) {
+            cursor = ProductCursor.decode(after);
+            if (!cursor.getSortBy().equals(sortBy) || cursor.getDirection() != direction) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort");
+            }
+        }
+
+        String name = searchRequest.getName();
+        List<String> candidateIds = findCandidates(searchRequest);
+        if (candidateIds != null && candidateIds.isEmpty()) {
+            return CursorPageDTO.<ProductResponseDTO>builder().content(List.of()).size(0).build();
+        }
+
+        // Fetch one extra card to learn whether another page exists
+        List<ProductCard> cards = new ArrayList<>(cardRepo.searchCardsAfter(name, candidateIds,
+                searchRequest.getMinPrice(), searchRequest.getMaxPrice(), searchRequest.getSellerName(),
+                searchRequest.getCategory(), cursor, sortBy, direction, size + 1, cursorFields(searchRequest, sortBy)));
+
+        String nextCursor = null;
+        if (cards.size() > size) {
+            cards = cards.subList(0, size);
+            ProductCard last = cards.get(size - 1);
+            nextCursor = new ProductCursor(sortBy, direction, last.getId(), sortValueOf(last, sortBy)).encode();
+        }
+
+        List<ProductResponseDTO> content = cards.stream()
+                .map(this::convertToProductResponseDTO)
+                .toList();
+        return CursorPageDTO.<ProductResponseDTO>builder()
+                .content(content)
+                .size(content.size())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private List<String> cursorFields(ProductSearchRequest searchRequest, String sortBy) {
+        List<String> fields = cardFields(searchRequest);
+        if (fields == null || fields.contains(sortBy)) {
+            return fields;
+        }
+        // The next cursor is built from the last card's sort value
+        List<String> withSortField = new ArrayList<>(fields);
+        withSortField.add(sortBy);
+        return withSortField;
+    }
+
+    private Object sortValueOf(ProductCard card, String sortBy) {
+        return switch (sortBy) {
+            case "name" -> card.getName();
+            case "price" -> card.getPrice();
+            case "quantity" -> card.getQuantity();
+            default -> throw new IllegalArgumentException("Unsupported cursor sort field: " + sortBy);
+        };
+    }
+
+    /**
+     * Resolve seller names for a whole page of products in one lookup instead
+     * of one users query per product.
+     */
+    private Map<String, String> resolveSellerNames(List<Product> products) {
+        return sellerNameResolver.resolveNames(products.stream()
+                .map(Product::getUserId)
+                .toList());
+    }
+
+    private ProductResponseDTO convertToProductResponseDTO(Product product, Map<String, String> sellerNames) {
+        String sellerName = sellerNames.getOrDefault(product.getUserId(), SellerNameResolver.UNKNOWN_SELLER);
 
         return ProductResponseDTO.builder()
                 .id(product.getId())
@@ -85,12 +308,36 @@ public class ProductService {
                 .build();
     }
 
+    private ProductResponseDTO convertToProductResponseDTO(ProductCard card) {
+        return ProductResponseDTO.builder()
+                .id(card.getId())
+                .name(card.getName())
+                .description(card.getDescription())
+                .price(card.getPrice())
+                .quantity(card.getQuantity())
+                .sellerName(card.getSellerName())
+                .category(card.getCategory())
+                .categoryDisplayName(card.getCategoryDisplayName())
+                .imageMediaIds(card.getImageMediaIds() != null ? card.getImageMediaIds() : List.of())
+                .build();
+    }
+
     public Product getById(String id) {
         return prodRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException(PRODUCT_NOT_FOUND));
     }
 
+    /**
+     * Product details, served from the per-node response cache when possible.
+     * The returned version changes with every write to the product.
+     */
     public ProductResponseDTO getByIdWithSellerName(String id) {
+        ProductResponseDTO cached = responseCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = responseCache.stamp(id);
+
         Product product = prodRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException(PRODUCT_NOT_FOUND));
 
@@ -107,57 +354,137 @@ public class ProductService {
                 .category(product.getCategory())
                 .categoryDisplayName(product.getCategory() != null ? product.getCategory().toDisplayName() : "Other")
                 .imageMediaIds(product.getImageMediaIds())
+                .version(versionOf(product))
                 .build();
 
+        responseCache.put(id, responseDTO, stamp);
         return responseDTO;
     }
 
     public Product create(ProductDTO productDTO) {
-        // Validate DTO
+        validateNewProduct(productDTO);
+        String currentUserId = requireCurrentSeller();
+        // Reject bad images before the product exists
+        List<ImageUpload> images = decodeImages(productDTO.getImages());
+
+        // Create product first without images
+        Product product = Product.builder()
+                .name(productDTO.getName())
+                .description(productDTO.getDescription())
+                .price(productDTO.getPrice())
+                .quantity(productDTO.getQuantity())
+                .category(productDTO.getCategory())
+                .userId(currentUserId)
+                .imageMediaIds(new ArrayList<>())
+                .version(1L)
+                .build();
+
+        Product savedProduct = prodRepo.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.CREATED, savedProduct));
+
+        publishImageUploads(savedProduct.getId(), images);
+
+        return savedProduct;
+    }
+
+    /**
+     * Validate the fields of a product to be created.
+     *
+     * @throws IllegalArgumentException naming the first invalid field
+     */
+    public void validateNewProduct(ProductDTO productDTO) {
         if (productDTO.getName() == null || productDTO.getName().isEmpty()) {
             throw new IllegalArgumentException("Product name is required");
         }
-        if (productDTO.getPrice() <= 0) {
+        if (productDTO.getPrice() == null || productDTO.getPrice() <= 0) {
             throw new IllegalArgumentException("Product price must be greater than zero");
         }
         if (productDTO.getDescription() == null || productDTO.getDescription().isEmpty()) {
             throw new IllegalArgumentException("Product description is required");
         }
-        if (productDTO.getQuantity() < 0) {
+        if (productDTO.getQuantity() == null || productDTO.getQuantity() < 0) {
             throw new IllegalArgumentException("Product quantity must be non-negative");
         }
         if (productDTO.getCategory() == null) {
             throw new IllegalArgumentException("Product category is required");
         }
+    }
 
+    /**
+     * ID of the authenticated seller, checked to exist.
+     *
+     * @throws IllegalArgumentException if nobody is authenticated or the
+     * user does not exist
+     */
+    public String requireCurrentSeller() {
         String currentUserId = getCurrentUserId();
         if (!userRepo.existsById(currentUserId)) {
             throw new IllegalArgumentException("User does not exist");
         }
+        return currentUserId;
+    }
 
-        // Create product first without images
-        Product product = Product.builder()
-                .name(productDTO.getName())
-                .description(productDTO.getDescription())
-                .price(productDTO.getPrice())
-                .quantity(productDTO.getQuantity())
-                .category(productDTO.getCategory())
-                .userId(currentUserId)
-                .imageMediaIds(new ArrayList<>())
-                .build();
+    /**
+     * Decode base64 images so invalid ones are rejected up front.
+     *
+     * @throws IllegalArgumentException if any image is invalid
+     */
+    public List<ImageUpload> decodeImages(List<String> images) {
+        if (images == null || images.isEmpty()) {
+            return List.of();
+        }
+        return images.stream().map(productImageEventService::decodeImage).toList();
+    }
 
-        Product savedProduct = prodRepo.save(product);
+    /**
+     * Stage decoded images and publish their upload events. media-service
+     * stores them asynchronously, so they show up on the product later.
+     */
+    public void publishImageUploads(String productId, List<ImageUpload> images) {
+        for (ImageUpload image : images) {
+            productImageEventService.publishProductImageUploadEvent(productId, image);
+        }
+    }
 
-        // Publish image upload events via Kafka (asynchronous)
-        if (productDTO.getImages() != null && !productDTO.getImages().isEmpty()) {
-            for (String imageBase64 : productDTO.getImages()) {
-                String contentType = extractContentType(imageBase64);
-                productImageEventService.publishProductImageUploadEvent(
-                        savedProduct.getId(), imageBase64, contentType);
+    /**
+     * Decode and stage the images of a product that is not saved yet, one
+     * at a time, so only one decoded image is held at once. Images staged
+     * before a failure are discarded again.
+     *
+     * @throws IllegalArgumentException if an image is not valid base64
+     */
+    public List<ProductImageEvent> stageImages(String productId, List<String> images) {
+        if (images == null || images.isEmpty()) {
+            return List.of();
+        }
+        List<ProductImageEvent> staged = new ArrayList<>(images.size());
+        try {
+            for (String image : images) {
+                staged.add(productImageEventService.stageImage(productId, productImageEventService.decodeImage(image)));
             }
+        } catch (RuntimeException e) {
+            discardStagedImages(staged);
+            throw e;
         }
+        return staged;
+    }
 
-        return savedProduct;
+    public void publishStagedImages(List<ProductImageEvent> staged) {
+        staged.forEach(productImageEventService::publishProductImageUploadEvent);
+    }
+
+    /**
+     * Best-effort delete of staged images that will not be published; the
+     * staging sweep removes any left behind.
+     */
+    public void discardStagedImages(List<ProductImageEvent> staged) {
+        for (ProductImageEvent image : staged) {
+            try {
+                productImageEventService.discardStagedImage(image.getStagedImageId());
+            } catch (RuntimeException e) {
+                log.warn("Could not discard staged image {}: {}", image.getStagedImageId(), e.getMessage());
+            }
+        }
     }
 
     public Product replaceProduct(String id, ProductDTO productDTO) {
@@ -188,14 +515,13 @@ public class ProductService {
             throw new IllegalArgumentException("Product category is required");
         }
 
-        existingProduct.setName(productDTO.getName());
-        existingProduct.setDescription(productDTO.getDescription());
-        existingProduct.setPrice(productDTO.getPrice());
-        existingProduct.setQuantity(productDTO.getQuantity());
-        existingProduct.setCategory(productDTO.getCategory());
-        existingProduct.setUserId(currentUserId);
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("name", productDTO.getName());
+        fields.put("description", productDTO.getDescription());
+        fields.put("price", productDTO.getPrice());
+        fields.put("category", productDTO.getCategory());
 
-        return prodRepo.save(existingProduct);
+        return applyEdit(existingProduct, fields, productDTO.getQuantity(), List.of());
     }
 
     public Product update(String id, ProductDTO productDTO) {
@@ -209,23 +535,22 @@ public class ProductService {
         if (!userRepo.existsById(currentUserId)) {
             throw new IllegalArgumentException("User does not exist");
         }
+        Map<String, Object> fields = new LinkedHashMap<>();
         if (productDTO.getName() != null && !productDTO.getName().isEmpty()) {
-            existingProduct.setName(productDTO.getName());
+            fields.put("name", productDTO.getName());
         }
         if (productDTO.getPrice() > 0) {
-            existingProduct.setPrice(productDTO.getPrice());
+            fields.put("price", productDTO.getPrice());
         }
         if (productDTO.getDescription() != null && !productDTO.getDescription().isEmpty()) {
-            existingProduct.setDescription(productDTO.getDescription());
-        }
-        if (productDTO.getQuantity() >= 0) {
-            existingProduct.setQuantity(productDTO.getQuantity());
+            fields.put("description", productDTO.getDescription());
         }
+        Integer quantity = productDTO.getQuantity() >= 0 ? productDTO.getQuantity() : null;
         if (productDTO.getCategory() != null) {
-            existingProduct.setCategory(productDTO.getCategory());
+            fields.put("category", productDTO.getCategory());
         }
 
-        return prodRepo.save(existingProduct);
+        return applyEdit(existingProduct, fields, quantity, List.of());
     }
 
     public void delete(String id) {
@@ -236,6 +561,119 @@ public class ProductService {
             throw new IllegalArgumentException("You can only delete your own products");
         }
         prodRepo.delete(existingProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(existingProduct.getId(), existingProduct.getUserId()));
+    }
+
+    /**
+     * Reprice and restock several products of the current seller at once.
+     * Ownership is checked with one projected read. Stock changes go through
+     * the inventory engine, which owns stock in ledger mode: removals are
+     * reserved all or nothing first, then new prices are written in a single
+     * bulk of atomic $set updates, and only then are additions released. If
+     * the price write fails the removals are released again, so a failed
+     * request leaves stock as it was.
+     *
+     * @throws IllegalArgumentException if an adjustment is invalid or names a
+     * product that does not exist or belongs to another seller, or if the
+     * stock does not cover a removal; nothing is changed in that case
+     */
+    public ProductAdjustmentResultDTO adjustProducts(List<ProductAdjustmentDTO> adjustments) {
+        if (adjustments == null || adjustments.isEmpty()) {
+            throw new IllegalArgumentException("Adjustments list cannot be null or empty");
+        }
+        if (adjustments.size() > MAX_ADJUSTMENTS) {
+            throw new IllegalArgumentException("At most " + MAX_ADJUSTMENTS + " products can be adjusted at once");
+        }
+        Map<String, Adjustment> byId = new LinkedHashMap<>();
+        for (ProductAdjustmentDTO adjustment : adjustments) {
+            Adjustment change = toAdjustment(adjustment);
+            if (byId.putIfAbsent(change.productId(), change) != null) {
+                throw new IllegalArgumentException("Product " + change.productId() + " is adjusted more than once");
+            }
+        }
+        String currentUserId = requireCurrentSeller();
+
+        Map<String, Product> current = new HashMap<>();
+        for (Product product : prodRepo.findProjectedByIds(byId.keySet(), List.of("_id", "userId"))) {
+            current.put(product.getId(), product);
+        }
+        Map<String, Integer> removals = new HashMap<>();
+        Map<String, Integer> additions = new HashMap<>();
+        Map<String, Double> prices = new HashMap<>();
+        for (Adjustment change : byId.values()) {
+            Product product = current.get(change.productId());
+            if (product == null) {
+                throw new IllegalArgumentException(PRODUCT_NOT_FOUND + ": " + change.productId());
+            }
+            if (!currentUserId.equals(product.getUserId())) {
+                throw new IllegalArgumentException("You can only modify your own products");
+            }
+            if (change.quantityDelta() < 0) {
+                removals.put(change.productId(), -change.quantityDelta());
+            } else if (change.quantityDelta() > 0) {
+                additions.put(change.productId(), change.quantityDelta());
+            }
+            if (change.price() != null) {
+                prices.put(change.productId(), change.price());
+            }
+        }
+
+        if (!removals.isEmpty() && !inventoryEngine.reserve(removals)) {
+            throw new IllegalArgumentException("Not enough stock to remove the requested quantities");
+        }
+        long pricesUpdated = 0;
+        if (!prices.isEmpty()) {
+            try {
+                pricesUpdated = prodRepo.applyPrices(currentUserId, prices);
+            } catch (RuntimeException e) {
+                if (!removals.isEmpty()) {
+                    inventoryEngine.release(removals);
+                }
+                throw e;
+            }
+        }
+        if (!additions.isEmpty()) {
+            inventoryEngine.release(additions);
+        }
+        removals.forEach((productId, quantity) ->
+                eventPublisher.publishEvent(ProductChangedEvent.stockChanged(productId, -quantity)));
+        additions.forEach((productId, quantity) ->
+                eventPublisher.publishEvent(ProductChangedEvent.stockChanged(productId, quantity)));
+
+        if (pricesUpdated > 0) {
+            for (Product product : prodRepo.findAllById(prices.keySet())) {
+                eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.UPDATED, product));
+            }
+        }
+        int stockAdjusted = removals.size() + additions.size();
+        log.info("Adjusted {} products for seller {}: {} repriced, {} restocked",
+                byId.size(), currentUserId, pricesUpdated, stockAdjusted);
+
+        return ProductAdjustmentResultDTO.builder()
+                .requested(byId.size())
+                .pricesUpdated(pricesUpdated)
+                .stockAdjusted(stockAdjusted)
+                .build();
+    }
+
+    private static Adjustment toAdjustment(ProductAdjustmentDTO adjustment) {
+        if (adjustment == null || adjustment.getProductId() == null || adjustment.getProductId().isEmpty()) {
+            throw new IllegalArgumentException("Product ID is required");
+        }
+        if (adjustment.getPrice() != null && adjustment.getPrice() <= 0) {
+            throw new IllegalArgumentException("Product price must be greater than zero");
+        }
+        int quantityDelta = adjustment.getQuantityDelta() != null ? adjustment.getQuantityDelta() : 0;
+        if (adjustment.getPrice() == null && quantityDelta == 0) {
+            throw new IllegalArgumentException("Adjustment of " + adjustment.getProductId() + " changes nothing");
+        }
+        return new Adjustment(adjustment.getProductId(), adjustment.getPrice(), quantityDelta);
+    }
+
+    /**
+     * Validated adjustment: new price (null to keep it) and stock delta.
+     */
+    private record Adjustment(String productId, Double price, int quantityDelta) {
     }
 
     public Product updateProductWithImages(String id, ProductUpdateWithImagesDTO productDTO) {
@@ -244,10 +682,73 @@ public class ProductService {
         
         validateProductOwnership(existingProduct);
         validateProductFields(productDTO);
-        updateProductFields(existingProduct, productDTO);
-        handleImageUpdates(id, existingProduct, productDTO);
+        List<ImageUpload> images = decodeImages(productDTO.getImages());
+
+        List<String> currentImageIds = existingProduct.getImageMediaIds() != null
+                ? existingProduct.getImageMediaIds() : new ArrayList<>();
+        List<String> retainedIds = productDTO.getRetainedImageIds() != null
+                ? productDTO.getRetainedImageIds() : new ArrayList<>();
+        validateRetainedImageIds(currentImageIds, retainedIds);
+        List<String> removedIds = currentImageIds.stream()
+                .filter(imageId -> !retainedIds.contains(imageId))
+                .toList();
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("name", productDTO.getName());
+        fields.put("description", productDTO.getDescription());
+        fields.put("price", productDTO.getPrice());
+        fields.put("category", productDTO.getCategory());
+        Product savedProduct = applyEdit(existingProduct, fields, productDTO.getQuantity(), removedIds);
+
+        // Only after the write, so media-service's $push of a new image cannot precede it
+        for (String imageId : removedIds) {
+            productImageEventService.publishProductImageDeleteEvent(id, imageId);
+        }
+        publishImageUploads(id, images);
+        return savedProduct;
+    }
+
+    /**
+     * Apply a seller's edit with atomic field-level updates instead of
+     * writing back the copy that was read, so stock changes, image events
+     * and ledger group commits landing meanwhile are kept.
+     *
+     * The new quantity is applied through the inventory engine as a change
+     * relative to the quantity read: reservations made meanwhile stay
+     * reserved, and a decrease the stock no longer covers is rejected.
+     *
+     * @param fields fields to $set
+     * @param quantity new quantity, or null to keep it
+     * @param removedImageIds image IDs to $pull
+     */
+    private Product applyEdit(Product product, Map<String, Object> fields, Integer quantity, List<String> removedImageIds) {
+        String id = product.getId();
+        if (quantity != null) {
+            int delta = quantity - (product.getQuantity() != null ? product.getQuantity() : 0);
+            if (delta < 0 && !inventoryEngine.reserve(Map.of(id, -delta))) {
+                throw new IllegalArgumentException("Not enough stock to lower the quantity to " + quantity);
+            }
+            if (delta > 0) {
+                inventoryEngine.release(Map.of(id, delta));
+            }
+            if (delta != 0) {
+                eventPublisher.publishEvent(ProductChangedEvent.stockChanged(id, delta));
+            }
+        }
+        if (!removedImageIds.isEmpty()) {
+            prodRepo.applyImageMediaChanges(Map.of(id, List.of(new ImageMediaChange(ImageMediaChange.Kind.REMOVE, removedImageIds))));
+        }
+
+        Product savedProduct = prodRepo.updateFields(id, fields);
+        if (savedProduct == null) {
+            throw new IllegalArgumentException(PRODUCT_NOT_FOUND);
+        }
+        eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.UPDATED, savedProduct));
+        return savedProduct;
+    }
 
-        return prodRepo.save(existingProduct);
+    private long versionOf(Product product) {
+        return product.getVersion() != null ? product.getVersion() : 0L;
     }
 
     private void validateProductOwnership(Product product) {
@@ -278,27 +779,6 @@ public class ProductService {
         }
     }
 
-    private void updateProductFields(Product product, ProductUpdateWithImagesDTO productDTO) {
-        product.setName(productDTO.getName());
-        product.setDescription(productDTO.getDescription());
-        product.setPrice(productDTO.getPrice());
-        product.setQuantity(productDTO.getQuantity());
-        product.setCategory(productDTO.getCategory());
-    }
-
-    private void handleImageUpdates(String productId, Product product, ProductUpdateWithImagesDTO productDTO) {
-        List<String> currentImageIds = product.getImageMediaIds() != null 
-                ? product.getImageMediaIds() : new ArrayList<>();
-        List<String> retainedIds = productDTO.getRetainedImageIds() != null 
-                ? productDTO.getRetainedImageIds() : new ArrayList<>();
-
-        validateRetainedImageIds(currentImageIds, retainedIds);
-        publishImageDeleteEvents(productId, currentImageIds, retainedIds);
-        publishImageUploadEvents(productId, productDTO.getImages());
-        
-        product.setImageMediaIds(new ArrayList<>(retainedIds));
-    }
-
     private void validateRetainedImageIds(List<String> currentImageIds, List<String> retainedIds) {
         for (String retainedId : retainedIds) {
             if (!currentImageIds.contains(retainedId)) {
@@ -307,39 +787,6 @@ public class ProductService {
         }
     }
 
-    private void publishImageDeleteEvents(String productId, List<String> currentImageIds, List<String> retainedIds) {
-        List<String> imagesToRemove = currentImageIds.stream()
-                .filter(imageId -> !retainedIds.contains(imageId))
-                .toList();
-
-        for (String imageId : imagesToRemove) {
-            productImageEventService.publishProductImageDeleteEvent(productId, imageId);
-        }
-    }
-
-    private void publishImageUploadEvents(String productId, List<String> images) {
-        if (images == null || images.isEmpty()) {
-            return;
-        }
-        for (String imageBase64 : images) {
-            String contentType = extractContentType(imageBase64);
-            productImageEventService.publishProductImageUploadEvent(productId, imageBase64, contentType);
-        }
-    }
-
-    private String extractContentType(String imageBase64) {
-        if (imageBase64.contains(",")) {
-            String dataUrl = imageBase64.split(",")[0];
-            int imageIndex = dataUrl.indexOf("image/");
-            int semicolonIndex = dataUrl.indexOf(";");
-            // Ensure 'image/' appears before the semicolon and the substring is not empty
-            if (imageIndex != -1 && semicolonIndex != -1 && imageIndex < semicolonIndex) {
-                return dataUrl.substring(imageIndex, semicolonIndex);
-            }
-        }
-        return "image/jpeg"; // default
-    }
-
     private String getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
@@ -376,6 +823,15 @@ public class ProductService {
         }
     }
 
+    /**
+     * Catalog version of the current seller. Read it before the product IDs:
+     * a product created in between then shows up under the older version,
+     * and the next revalidation fetches the set again.
+     */
+    public long getMyCatalogVersion() {
+        return catalogVersions.currentVersion(getCurrentUserId());
+    }
+
     /**
      * Get products by list of IDs
      *
@@ -383,13 +839,65 @@ public class ProductService {
      * @return List of product response DTOs
      */
     public List<ProductResponseDTO> getProductsByIds(List<String> ids) {
+        return getProductsByIds(ids, null);
+    }
+
+    /**
+     * Get products by list of IDs, reading only the fields a field set needs
+     *
+     * @param ids List of product IDs
+     * @param fields Requested fields, or null for whole products
+     * @return List of product response DTOs
+     */
+    public List<ProductResponseDTO> getProductsByIds(List<String> ids, ProductFieldSet fields) {
         log.debug("getProductsByIds called with {} IDs", ids.size());
         
-        List<Product> products = prodRepo.findAllById(ids);
+        List<Product> products = fields != null
+                ? prodRepo.findProjectedByIds(ids, fields.productFields())
+                : prodRepo.findAllById(ids);
         log.debug("Found {} products", products.size());
-        
+
+        Map<String, String> sellerNames = fields == null || fields.includes("sellerName")
+                ? resolveSellerNames(products) : Collections.emptyMap();
         return products.stream()
-                .map(this::convertToProductResponseDTO)
-                .collect(Collectors.toList());
+                .map(product -> convertToProductResponseDTO(product, sellerNames))
+                .toList();
+    }
+
+    /**
+     * Stream products by IDs to a sink as they come off the Mongo cursor.
+     * Seller names are resolved per chunk, so neither the products nor the
+     * responses are ever held in full.
+     *
+     * @param fields Requested fields, or null for whole products
+     * @return number of products passed to the sink
+     */
+    public int streamProductsByIds(Collection<String> ids, ProductFieldSet fields, Consumer<ProductResponseDTO> sink) {
+        boolean withSellerNames = fields == null || fields.includes("sellerName");
+        List<Product> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        int streamed = 0;
+
+        try (Stream<Product> products = prodRepo.streamByIds(ids, fields != null ? fields.productFields() : null)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    streamed += emitChunk(chunk, withSellerNames, sink);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            streamed += emitChunk(chunk, withSellerNames, sink);
+        }
+        return streamed;
+    }
+
+    private int emitChunk(List<Product> products, boolean withSellerNames, Consumer<ProductResponseDTO> sink) {
+        Map<String, String> sellerNames = withSellerNames ? resolveSellerNames(products) : Collections.emptyMap();
+        for (Product product : products) {
+            sink.accept(convertToProductResponseDTO(product, sellerNames));
+        }
+        return products.size();
     }
 }
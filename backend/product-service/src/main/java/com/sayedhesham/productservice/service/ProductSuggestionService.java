@@ -0,0 +1,197 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.dto.SuggestionDTO;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.search.SuggestionTrie;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Type-ahead suggestions for product names and categories, served from an
+ * in-memory trie that is built at startup and kept current from product
+ * writes, so suggesting never touches Mongo.
+ *
+ * A suggestion's weight is the number of products listed under it plus,
+ * for product names, the units reserved since startup, so names that sell
+ * rank first.
+ */
+@Slf4j
+@Service
+public class ProductSuggestionService {
+
+    private final MongoTemplate mongoTemplate;
+    private final SuggestionTrie<SuggestionDTO> trie;
+
+    private final Map<String, Listing> listingsByProduct = new HashMap<>();
+    private final Map<String, Tally> talliesByKey = new HashMap<>();
+
+    public ProductSuggestionService(MongoTemplate mongoTemplate,
+            @Value("${product.suggest.top-k:10}") int topK) {
+        this.mongoTemplate = mongoTemplate;
+        this.trie = new SuggestionTrie<>(topK);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        long startedAt = System.currentTimeMillis();
+        Query query = new Query();
+        query.fields().include("name").include("category");
+
+        trie.clear();
+        listingsByProduct.clear();
+        talliesByKey.clear();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(this::list);
+        }
+        log.info("Built suggestion trie with {} suggestions in {} ms",
+                trie.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED -> list(event.getProduct());
+            case DELETED -> unlist(event.getProductId());
+            case STOCK_CHANGED -> recordDemand(event.getProductId(), event.getQuantityDelta());
+            default -> {
+                // Image changes do not touch names or categories
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        event.getProducts().forEach(this::list);
+    }
+
+    /**
+     * Best suggestions for what the user typed so far, heaviest first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return trie.suggest(prefix, limit).stream()
+                .map(SuggestionTrie.Suggestion::getPayload)
+                .toList();
+    }
+
+    private void list(Product product) {
+        Listing listing = new Listing(SuggestionTrie.normalize(product.getName()), product.getCategory());
+        Listing previous = listingsByProduct.get(product.getId());
+        if (listing.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unlist(product.getId());
+        }
+        listingsByProduct.put(product.getId(), listing);
+
+        if (!listing.nameKey().isEmpty()) {
+            adjustListings(productKey(listing.nameKey()), 1, () -> SuggestionDTO.builder()
+                    .text(product.getName())
+                    .type(SuggestionDTO.Type.PRODUCT)
+                    .build());
+        }
+        if (listing.category() != null) {
+            adjustListings(categoryKey(listing.category()), 1, () -> SuggestionDTO.builder()
+                    .text(listing.category().toDisplayName())
+                    .type(SuggestionDTO.Type.CATEGORY)
+                    .category(listing.category())
+                    .build());
+        }
+    }
+
+    private void unlist(String productId) {
+        Listing listing = listingsByProduct.remove(productId);
+        if (listing == null) {
+            return;
+        }
+        if (!listing.nameKey().isEmpty()) {
+            adjustListings(productKey(listing.nameKey()), -1, null);
+        }
+        if (listing.category() != null) {
+            adjustListings(categoryKey(listing.category()), -1, null);
+        }
+    }
+
+    /**
+     * Reservations (negative deltas) make a name more popular; releases
+     * give the units back.
+     */
+    private void recordDemand(String productId, int quantityDelta) {
+        Listing listing = listingsByProduct.get(productId);
+        if (listing == null || listing.nameKey().isEmpty()) {
+            return;
+        }
+        Tally tally = talliesByKey.get(productKey(listing.nameKey()));
+        if (tally == null) {
+            return;
+        }
+        tally.demand = Math.max(0, tally.demand - quantityDelta);
+        trie.setWeight(tally.suggestion, tally.weight());
+    }
+
+    private void adjustListings(String key, int delta, Supplier<SuggestionDTO> newPayload) {
+        Tally tally = talliesByKey.get(key);
+        if (tally == null) {
+            if (delta <= 0) {
+                return;
+            }
+            SuggestionDTO payload = newPayload.get();
+            tally = new Tally(new SuggestionTrie.Suggestion<>(payload.getText(), payload, 0));
+            talliesByKey.put(key, tally);
+        }
+        tally.listings += delta;
+        if (tally.listings <= 0) {
+            talliesByKey.remove(key);
+            trie.remove(tally.suggestion);
+            return;
+        }
+        trie.setWeight(tally.suggestion, tally.weight());
+        trie.put(tally.suggestion);
+    }
+
+    private static String productKey(String nameKey) {
+        return "p:" + nameKey;
+    }
+
+    private static String categoryKey(Category category) {
+        return "c:" + category.name();
+    }
+
+    /**
+     * What a product contributes to the suggestions: its normalized name
+     * and its category.
+     */
+    private record Listing(String nameKey, Category category) {
+    }
+
+    private static final class Tally {
+
+        private final SuggestionTrie.Suggestion<SuggestionDTO> suggestion;
+        private int listings;
+        private long demand;
+
+        private Tally(SuggestionTrie.Suggestion<SuggestionDTO> suggestion) {
+            this.suggestion = suggestion;
+        }
+
+        private long weight() {
+            return listings + demand;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.SellerCatalogVersion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks a monotonically increasing version of each seller's product ID set
+ * in seller_catalog_versions. Only creates and deletes change the set, so
+ * edits, stock and image changes leave the version alone.
+ *
+ * Every new version is also announced on the catalog-changed topic, keyed by
+ * seller, so other services can drop cached copies of the ID set.
+ *
+ * A bump that fails is retried on a schedule until it succeeds: a version
+ * that never moves would let order-service revalidate a stale ID set
+ * forever.
+ */
+@Slf4j
+@Service
+public class SellerCatalogVersionService {
+
+    private final MongoTemplate mongoTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String catalogChangedTopic;
+
+    // Sellers whose product ID set changed but whose bump has not succeeded yet
+    private final Set<String> pendingSellers = ConcurrentHashMap.newKeySet();
+
+    public SellerCatalogVersionService(MongoTemplate mongoTemplate,
+            KafkaTemplate<String, String> kafkaTemplate,
+            ObjectMapper objectMapper,
+            @Value("${kafka.topic.product.catalog.changed}") String catalogChangedTopic) {
+        this.mongoTemplate = mongoTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.catalogChangedTopic = catalogChangedTopic;
+    }
+
+    /**
+     * Current catalog version of a seller, 0 if the seller never created or
+     * deleted a product since versions were tracked.
+     */
+    public long currentVersion(String sellerId) {
+        SellerCatalogVersion catalogVersion = mongoTemplate.findById(sellerId, SellerCatalogVersion.class);
+        return catalogVersion != null ? catalogVersion.getVersion() : 0L;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getSellerId() == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case CREATED, DELETED -> bump(event.getSellerId());
+            default -> {
+                // The product ID set is unchanged
+            }
+        }
+    }
+
+    /**
+     * One version per imported chunk rather than one per product.
+     */
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        if (event.getSellerId() != null && !event.getProducts().isEmpty()) {
+            bump(event.getSellerId());
+        }
+    }
+
+    /**
+     * Retry the bumps that failed. A seller stays pending until one succeeds.
+     */
+    @Scheduled(fixedDelayString = "${catalog.version.retry-interval-ms:5000}")
+    public void retryPending() {
+        for (String sellerId : List.copyOf(pendingSellers)) {
+            pendingSellers.remove(sellerId);
+            bump(sellerId);
+        }
+    }
+
+    private void bump(String sellerId) {
+        long version;
+        try {
+            version = increment(sellerId);
+        } catch (Exception e) {
+            pendingSellers.add(sellerId);
+            log.error("Error bumping catalog version of seller {}, will retry: {}", sellerId, e.getMessage(), e);
+            return;
+        }
+        log.debug("Catalog of seller {} is now at version {}", sellerId, version);
+        try {
+            publishCatalogChanged(sellerId, version);
+        } catch (Exception e) {
+            // Readers still see the new version on their next conditional request
+            log.error("Error announcing catalog version {} of seller {}: {}", version, sellerId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Atomically increment the catalog version of a seller.
+     *
+     * @return the new version
+     */
+    public long increment(String sellerId) {
+        Query query = Query.query(Criteria.where("_id").is(sellerId));
+        Update update = new Update().inc("version", 1L).set("updatedAt", new Date());
+        SellerCatalogVersion catalogVersion = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), SellerCatalogVersion.class);
+        return catalogVersion != null ? catalogVersion.getVersion() : 0L;
+    }
+
+    private void publishCatalogChanged(String sellerId, long version) throws JsonProcessingException {
+        CatalogChangedEvent event = CatalogChangedEvent.builder()
+                .sellerId(sellerId)
+                .version(version)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        kafkaTemplate.send(catalogChangedTopic, sellerId, objectMapper.writeValueAsString(event));
+    }
+
+    // Event class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CatalogChangedEvent {
+        private String sellerId;
+        private long version;
+        private Long timestamp;
+    }
+}
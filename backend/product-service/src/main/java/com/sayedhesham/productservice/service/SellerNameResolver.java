@@ -0,0 +1,80 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.sayedhesham.productservice.cache.BoundedTtlCache;
+import com.sayedhesham.productservice.model.User;
+import com.sayedhesham.productservice.repository.UserRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves seller display names for product listings. Names are looked up
+ * once per page with a single findAllById and kept in a bounded per-node
+ * cache, so listing a page no longer costs one users query per product.
+ */
+@Slf4j
+@Service
+public class SellerNameResolver {
+
+    public static final String UNKNOWN_SELLER = "Unknown Seller";
+
+    private final UserRepository userRepo;
+    private final BoundedTtlCache<String, String> nameCache;
+
+    public SellerNameResolver(UserRepository userRepository,
+            @Value("${product.seller-name-cache.max-size:10000}") int maxSize,
+            @Value("${product.seller-name-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepo = userRepository;
+        this.nameCache = new BoundedTtlCache<>(maxSize, ttlSeconds * 1000);
+    }
+
+    /**
+     * Resolve the names of the given sellers.
+     *
+     * @param sellerIds seller (user) IDs, duplicates and nulls are ignored
+     * @return map of seller ID to name, sellers that do not exist are absent
+     */
+    public Map<String, String> resolveNames(Collection<String> sellerIds) {
+        Map<String, String> names = new HashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+
+        for (String sellerId : sellerIds) {
+            if (sellerId == null || names.containsKey(sellerId)) {
+                continue;
+            }
+            String cached = nameCache.get(sellerId);
+            if (cached != null) {
+                names.put(sellerId, cached);
+            } else {
+                misses.add(sellerId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            log.debug("Resolving {} seller names from users collection", misses.size());
+            for (User user : userRepo.findAllById(misses)) {
+                if (user.getName() != null) {
+                    names.put(user.getId(), user.getName());
+                    nameCache.put(user.getId(), user.getName());
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Drop a cached name, e.g. after the user renamed themselves.
+     */
+    public void evict(String sellerId) {
+        nameCache.invalidate(sellerId);
+    }
+}
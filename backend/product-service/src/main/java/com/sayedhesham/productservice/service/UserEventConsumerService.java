@@ -0,0 +1,57 @@
+package com.sayedhesham.productservice.service;
+
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.repository.ProductRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserEventConsumerService {
+
+    private final ProductCardProjector productCardProjector;
+    private final ProductRepository productRepository;
+    private final ProductResponseCache productResponseCache;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(topics = "${kafka.topic.user.profile.updated}", groupId = "productservice-group")
+    public void handleUserProfileUpdatedEvent(String eventJson) {
+        try {
+            UserProfileUpdatedEvent event = objectMapper.readValue(eventJson, UserProfileUpdatedEvent.class);
+            if (event.getUserId() == null || event.getName() == null) {
+                log.warn("Received user profile event without userId or name: {}", eventJson);
+                return;
+            }
+            log.info("Processing user profile update for user: {}", event.getUserId());
+            productCardProjector.renameSeller(event.getUserId(), event.getName());
+            // Seller name is part of the product details, so their ETags must change too
+            productRepository.incrementSellerVersions(event.getUserId());
+            productResponseCache.invalidateAll();
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing user profile updated event: {}", eventJson, e);
+        } catch (Exception e) {
+            log.error("Error processing user profile updated event", e);
+        }
+    }
+
+    // Event class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class UserProfileUpdatedEvent {
+        private String userId;
+        private String name;
+        private Long timestamp;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class CompactIdSetTest {
+
+    @Test
+    void encode_ShouldPackTwelveBytesPerIdInAscendingOrder() {
+        List<String> ids = List.of("65f0c0ffee00000000000002", "65f0c0ffee00000000000001");
+
+        byte[] encoded = CompactIdSet.encode(ids);
+
+        assertEquals(24, encoded.length);
+        assertEquals(List.of("65f0c0ffee00000000000001", "65f0c0ffee00000000000002"), CompactIdSet.decode(encoded));
+    }
+
+    @Test
+    void encode_WithNonObjectId_ShouldThrowException() {
+        assertFalse(CompactIdSet.canEncode(List.of("prod1")));
+        assertTrue(CompactIdSet.canEncode(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> CompactIdSet.encode(List.of("prod1")));
+    }
+
+    @Test
+    void decode_WithTruncatedInput_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> CompactIdSet.decode(new byte[13]));
+    }
+}
@@ -0,0 +1,53 @@
+package com.sayedhesham.productservice.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+class ProductFieldSetTest {
+
+    @Test
+    void of_WithoutFieldsOrView_ShouldMeanWholeProduct() {
+        assertNull(ProductFieldSet.of(null, null));
+        assertNull(ProductFieldSet.of("", " "));
+    }
+
+    @Test
+    void of_WithUnknownField_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> ProductFieldSet.of("name,secret", null));
+        assertThrows(IllegalArgumentException.class, () -> ProductFieldSet.of(null, "full"));
+    }
+
+    @Test
+    void cardFields_ShouldMapPropertiesToCardDocumentFields() {
+        ProductFieldSet fields = ProductFieldSet.of("price, imageMediaIds", null);
+
+        assertEquals(List.of("_id", "price", "imageMediaIds"), fields.cardFields());
+    }
+
+    @Test
+    void productFields_ShouldReadSellerAndCategoryFromSourceFields() {
+        ProductFieldSet fields = ProductFieldSet.of("sellerName,category,categoryDisplayName", null);
+
+        assertEquals(List.of("_id", "userId", "category"), fields.productFields());
+    }
+
+    @Test
+    void select_ShouldKeepOnlyRequestedPropertiesInStableOrder() {
+        ProductResponseDTO product = ProductResponseDTO.builder()
+                .id("prod1")
+                .name("Mouse")
+                .description("A very long description")
+                .price(10.0)
+                .build();
+
+        Map<String, Object> selected = ProductFieldSet.of("price,name", null).select(product);
+
+        assertEquals(List.of("id", "name", "price"), List.copyOf(selected.keySet()));
+        assertEquals(10.0, selected.get("price"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.sayedhesham.productservice.inventory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LedgerShardTest {
+
+    @TempDir
+    Path walDir;
+
+    private FakeStore store;
+    private AtomicLong sequences;
+    private LedgerShard shard;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new FakeStore();
+        store.quantities.put("prod1", 100);
+        store.quantities.put("prod2", 3);
+        sequences = new AtomicLong(1000);
+        shard = new LedgerShard(0, store, new LedgerWal(walDir.resolve("shard-0.wal")), sequences::incrementAndGet, 10);
+        shard.replay(List.of());
+        shard.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        shard.stop();
+    }
+
+    @Test
+    void reserve_UnderConcurrentLoad_ShouldNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            results.add(executor.submit(() -> shard.reserve(Map.of("prod1", 1)).get()));
+        }
+        int reserved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                reserved++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(100, reserved);
+        shard.stop();
+        assertEquals(0, store.quantities.get("prod1"));
+    }
+
+    @Test
+    void reserve_WhenAnyProductIsShort_ShouldReserveNothing() throws Exception {
+        assertFalse(shard.reserve(Map.of("prod1", 1, "prod2", 4)).get());
+        assertFalse(shard.reserve(Map.of("missing", 1)).get());
+        assertTrue(shard.reserve(Map.of("prod1", 100, "prod2", 3)).get());
+    }
+
+    @Test
+    void replay_ShouldApplyFlushedGroupOnlyOnce() throws Exception {
+        store.failing = true;
+        shard.reserve(Map.of("prod1", 5)).get();
+        Thread.sleep(50); // Flush attempt fails, leaving a marked group in the WAL
+
+        List<LedgerWal.Group> groups = new LedgerWal(walDir.resolve("shard-0.wal")).readGroups();
+        assertEquals(1, groups.size());
+        assertEquals(Map.of("prod1", -5L), groups.get(0).deltas());
+
+        store.failing = false;
+        shard.stop(); // Final flush writes the group
+        store.applyGroups(groups); // Replay after a crash between write and truncate
+
+        assertEquals(95, store.quantities.get("prod1"));
+    }
+
+    @Test
+    void invalidate_ShouldReloadStockWrittenOutsideTheLedger() throws Exception {
+        assertTrue(shard.reserve(Map.of("prod2", 3)).get());
+        Thread.sleep(50); // Flushed, the store holds 0
+        store.quantities.merge("prod2", 10, Integer::sum);
+
+        shard.invalidate("prod2").get();
+
+        assertTrue(shard.reserve(Map.of("prod2", 10)).get());
+    }
+
+    @Test
+    void invalidate_ShouldKeepDeltasNotYetWrittenToTheStore() throws Exception {
+        store.failing = true;
+        assertTrue(shard.reserve(Map.of("prod2", 2)).get());
+        Thread.sleep(50); // Flush attempt fails, the group stays unflushed
+        assertTrue(shard.reserve(Map.of("prod2", 1)).get());
+        store.quantities.merge("prod2", 10, Integer::sum); // Restocked outside the ledger
+
+        shard.invalidate("prod2").get();
+
+        // 13 stored, 3 of them already reserved
+        assertFalse(shard.reserve(Map.of("prod2", 11)).get());
+        assertTrue(shard.reserve(Map.of("prod2", 10)).get());
+
+        store.failing = false;
+        shard.stop();
+        assertEquals(0, store.quantities.get("prod2"));
+    }
+
+    @Test
+    void longCounterMap_ShouldKeepEntriesReachableAfterRemovals() {
+        LongCounterMap counters = new LongCounterMap(4);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            counters.add("p" + i, i);
+            expected.put("p" + i, (long) i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            counters.remove("p" + i);
+            expected.remove("p" + i);
+        }
+
+        assertEquals(expected.size(), counters.size());
+        expected.forEach((key, value) -> assertEquals(value, counters.get(key)));
+        assertEquals(LongCounterMap.MISSING, counters.get("p0"));
+    }
+
+    /**
+     * In-memory stand-in for Mongo with the same per-product sequence check.
+     */
+    private static class FakeStore implements LedgerStore {
+        private final Map<String, Integer> quantities = new ConcurrentHashMap<>();
+        private final Map<String, Long> sequences = new ConcurrentHashMap<>();
+        private volatile boolean failing;
+
+        @Override
+        public Map<String, Stock> loadStock(Collection<String> productIds) {
+            Map<String, Stock> loaded = new HashMap<>();
+            for (String productId : productIds) {
+                if (quantities.containsKey(productId)) {
+                    loaded.put(productId, new Stock(quantities.get(productId), sequences.getOrDefault(productId, 0L)));
+                }
+            }
+            return loaded;
+        }
+
+        @Override
+        public synchronized void applyDeltas(Map<String, Long> deltas, long sequence) {
+            if (failing) {
+                throw new IllegalStateException("Store unavailable");
+            }
+            deltas.forEach((productId, delta) -> {
+                if (quantities.containsKey(productId) && sequences.getOrDefault(productId, 0L) < sequence) {
+                    quantities.merge(productId, Math.toIntExact(delta), Integer::sum);
+                    sequences.put(productId, sequence);
+                }
+            });
+        }
+
+        void applyGroups(List<LedgerWal.Group> groups) {
+            groups.forEach(group -> applyDeltas(group.deltas(), group.sequence()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProductNameIndexTest {
+
+    private ProductNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductNameIndex();
+        index.put("p1", "Wireless Mouse");
+        index.put("p2", "Wired Keyboard");
+        index.put("p3", "USB-C Cable (2m)");
+    }
+
+    @Test
+    void tokenize_ShouldLowerCaseAndSplitOnNonAlphanumerics() {
+        assertArrayEquals(new String[]{"usb", "c", "cable", "2m"}, ProductNameIndex.tokenize("USB-C Cable (2m)"));
+    }
+
+    @Test
+    void search_ShouldMatchTokenPrefixesCaseInsensitively() {
+        assertEquals(List.of("p1", "p2"), index.search("WIRE"));
+        assertEquals(List.of("p1"), index.search("wire mou"));
+        assertEquals(List.of("p3"), index.search("cable"));
+    }
+
+    @Test
+    void search_ShouldRequireEveryQueryToken() {
+        assertTrue(index.search("wireless keyboard").isEmpty());
+    }
+
+    @Test
+    void put_ExistingProduct_ShouldReindexUnderNewName() {
+        index.put("p1", "Gaming Mouse");
+
+        assertEquals(List.of("p2"), index.search("wire"));
+        assertEquals(List.of("p1"), index.search("gaming"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void remove_ShouldDropProductAndReuseOrdinal() {
+        index.remove("p2");
+        index.put("p4", "Wired Headset");
+
+        assertEquals(List.of("p1", "p4"), index.search("wire").stream().sorted().toList());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void containsBits_ShouldMatchInsideWordsLikeCaseInsensitiveRegex() {
+        index.put("p4", "Mouse Pad");
+
+        // A word starting with the query must not hide names that only contain it
+        assertEquals("{0, 3}", index.containsBits("OUS").toString());
+        assertEquals("{0}", index.containsBits("less mou").toString());
+        assertEquals("{2}", index.containsBits("b-c cab").toString());
+        assertTrue(index.containsBits("keyboard mouse").isEmpty());
+        assertNull(index.containsBits("-"));
+    }
+
+    @Test
+    void search_BlankQuery_ShouldMatchNothing() {
+        assertTrue(index.search("  ").isEmpty());
+        assertTrue(index.search("--").isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sayedhesham.productservice.model.Category;
+
+class ProductPriceIndexTest {
+
+    private ProductPriceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductPriceIndex();
+        index.put(0, Category.ELECTRONICS, 25.0);
+        index.put(1, Category.ELECTRONICS, 10.0);
+        index.put(2, Category.BOOKS, 15.0);
+        index.put(3, null, 10.0);
+    }
+
+    @Test
+    void range_ShouldIncludeBothBoundsAcrossCategories() {
+        assertEquals(bits(1, 2, 3), index.range(null, 10.0, 15.0));
+        assertEquals(bits(0, 1), index.range(Category.ELECTRONICS, null, null));
+        assertTrue(index.range(null, 30.0, 20.0).isEmpty());
+    }
+
+    @Test
+    void put_WithNewPrice_ShouldMoveProduct() {
+        index.put(1, Category.BOOKS, 40.0);
+
+        assertEquals(bits(0), index.range(Category.ELECTRONICS, null, null));
+        assertEquals(bits(1), index.range(null, 30.0, null));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void remove_ShouldDropProductFromRanges() {
+        index.remove(2);
+
+        assertEquals(bits(0, 1, 3), index.range(null, null, null));
+    }
+
+    @Test
+    void slice_ShouldMergeCategoriesInPriceOrder() {
+        ProductPriceIndex.Slice ascending = index.slice(null, null, null, null, false, 0, 3);
+        ProductPriceIndex.Slice descending = index.slice(null, null, null, null, true, 1, 2);
+
+        assertArrayEquals(new int[]{1, 3, 2}, ascending.ordinals());
+        assertEquals(4, ascending.total());
+        assertArrayEquals(new int[]{2, 3}, descending.ordinals());
+    }
+
+    @Test
+    void slice_ShouldSkipOrdinalsOutsideFilter() {
+        ProductPriceIndex.Slice slice = index.slice(bits(0, 2), null, null, null, false, 0, 10);
+
+        assertArrayEquals(new int[]{2, 0}, slice.ordinals());
+        assertEquals(2, slice.total());
+    }
+
+    @Test
+    void slice_ShouldOnlyWalkThePriceRange() {
+        ProductPriceIndex.Slice slice = index.slice(null, null, 10.0, 15.0, true, 0, 2);
+
+        assertArrayEquals(new int[]{2, 3}, slice.ordinals());
+        assertEquals(3, slice.total());
+    }
+
+    @Test
+    void slice_ShouldCountFilterWithinCategoryAndRange() {
+        ProductPriceIndex.Slice slice = index.slice(bits(0, 1, 2), Category.ELECTRONICS, null, 20.0, false, 0, 10);
+
+        assertArrayEquals(new int[]{1}, slice.ordinals());
+        assertEquals(1, slice.total());
+    }
+
+    @Test
+    void slice_WithOffsetPastTheEnd_ShouldReturnTotalOnly() {
+        ProductPriceIndex.Slice slice = index.slice(null, Category.ELECTRONICS, null, null, false, 5, 10);
+
+        assertEquals(0, slice.ordinals().length);
+        assertEquals(2, slice.total());
+    }
+
+    private static BitSet bits(int... ordinals) {
+        BitSet bits = new BitSet();
+        for (int ordinal : ordinals) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+}
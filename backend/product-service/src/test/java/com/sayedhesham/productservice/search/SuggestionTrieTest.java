@@ -0,0 +1,61 @@
+package com.sayedhesham.productservice.search;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SuggestionTrieTest {
+
+    private SuggestionTrie<String> trie;
+    private SuggestionTrie.Suggestion<String> mouse;
+    private SuggestionTrie.Suggestion<String> wiredKeyboard;
+    private SuggestionTrie.Suggestion<String> wireCutter;
+
+    @BeforeEach
+    void setUp() {
+        trie = new SuggestionTrie<>(2);
+        mouse = new SuggestionTrie.Suggestion<>("Wireless Mouse", "mouse", 5);
+        wiredKeyboard = new SuggestionTrie.Suggestion<>("Wired Keyboard", "keyboard", 3);
+        wireCutter = new SuggestionTrie.Suggestion<>("Wire Cutter", "cutter", 1);
+        trie.put(mouse);
+        trie.put(wiredKeyboard);
+        trie.put(wireCutter);
+    }
+
+    @Test
+    void suggest_ShouldReturnHeaviestFirstCappedAtK() {
+        assertEquals(List.of("mouse", "keyboard"), payloads(trie.suggest("WIRE", 10)));
+        assertEquals(List.of("mouse"), payloads(trie.suggest("wire", 1)));
+    }
+
+    @Test
+    void suggest_ShouldMatchLaterWordsAndPrefixesInsideEdges() {
+        assertEquals(List.of("mouse"), payloads(trie.suggest("mou", 10)));
+        assertEquals(List.of("keyboard"), payloads(trie.suggest("wired k", 10)));
+        assertTrue(trie.suggest("wireless x", 10).isEmpty());
+        assertTrue(trie.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void setWeight_ShouldReRankSuggestion() {
+        trie.setWeight(wireCutter, 10);
+
+        assertEquals(List.of("cutter", "mouse"), payloads(trie.suggest("wire", 10)));
+    }
+
+    @Test
+    void remove_ShouldDropSuggestionFromEveryPath() {
+        trie.remove(mouse);
+
+        assertEquals(List.of("keyboard", "cutter"), payloads(trie.suggest("w", 10)));
+        assertTrue(trie.suggest("mouse", 10).isEmpty());
+        assertEquals(2, trie.size());
+    }
+
+    private static List<String> payloads(List<SuggestionTrie.Suggestion<String>> suggestions) {
+        return suggestions.stream().map(SuggestionTrie.Suggestion::getPayload).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.sayedhesham.productservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.sayedhesham.productservice.dto.CategoryStatsDTO;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.CategoryStats;
+import com.sayedhesham.productservice.model.Product;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryStatsServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private CategoryStatsService statsService;
+
+    @Test
+    void onProductChanged_ShouldMaintainCountsAndPriceRange() {
+        statsService.onProductChanged(created("p1", Category.BOOKS, 12.0, 3));
+        statsService.onProductChanged(created("p2", Category.BOOKS, 30.0, 0));
+        statsService.onProductChanged(created("p3", Category.BOOKS, 8.0, 1));
+        statsService.onProductChanged(ProductChangedEvent.deleted("p3", "user1"));
+
+        CategoryStatsDTO stats = statsService.get(Category.BOOKS);
+        assertEquals(2, stats.getProductCount());
+        assertEquals(1, stats.getInStockCount());
+        assertEquals(12.0, stats.getMinPrice());
+        assertEquals(30.0, stats.getMaxPrice());
+        verify(mongoTemplate, times(4)).save(any(CategoryStats.class));
+    }
+
+    @Test
+    void onProductChanged_WhenCategoryChanges_ShouldMoveProduct() {
+        statsService.onProductChanged(created("p1", Category.BOOKS, 12.0, 3));
+        Product moved = Product.builder().id("p1").category(Category.TOYS).price(12.0).quantity(3).build();
+
+        statsService.onProductChanged(ProductChangedEvent.of(ProductChangedEvent.ChangeType.UPDATED, moved));
+
+        assertEquals(0, statsService.get(Category.BOOKS).getProductCount());
+        assertNull(statsService.get(Category.BOOKS).getMinPrice());
+        assertEquals(1, statsService.get(Category.TOYS).getProductCount());
+    }
+
+    @Test
+    void onProductChanged_WithStockChange_ShouldPersistOnlyWhenInStockCountChanges() {
+        statsService.onProductChanged(created("p1", Category.BOOKS, 12.0, 2));
+        clearInvocations(mongoTemplate);
+
+        statsService.onProductChanged(ProductChangedEvent.stockChanged("p1", -1));
+        verify(mongoTemplate, never()).save(any(CategoryStats.class));
+
+        statsService.onProductChanged(ProductChangedEvent.stockChanged("p1", -1));
+        assertEquals(0, statsService.get(Category.BOOKS).getInStockCount());
+        verify(mongoTemplate).save(any(CategoryStats.class));
+    }
+
+    private static ProductChangedEvent created(String id, Category category, double price, int quantity) {
+        Product product = Product.builder().id(id).userId("user1").category(category).price(price).quantity(quantity).build();
+        return ProductChangedEvent.of(ProductChangedEvent.ChangeType.CREATED, product);
+    }
+}
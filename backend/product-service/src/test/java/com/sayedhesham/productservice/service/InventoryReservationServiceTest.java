@@ -0,0 +1,243 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.inventory.InventoryEngine;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Action;
+import com.sayedhesham.productservice.model.ProcessedInventoryEvent.Status;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReservationServiceTest {
+
+    @Mock
+    private InventoryEngine inventoryEngine;
+
+    @Mock
+    private InventoryEventDeduplicator deduplicator;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private InventoryReservationService inventoryReservationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(inventoryReservationService, "productReservationSuccessTopic", "products.reservation.success");
+        ReflectionTestUtils.setField(inventoryReservationService, "productReservationFailedTopic", "products.reservation.failed");
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WhenStockAvailable_ShouldReserveInOneCallAndPublishSuccess() {
+        when(inventoryEngine.reserve(Map.of("prod1", 2))).thenReturn(true);
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}");
+
+        verify(inventoryEngine).reserve(Map.of("prod1", 2));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", -2));
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order1"), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WhenStockShort_ShouldPublishFailureWithoutStockEvents() {
+        when(inventoryEngine.reserve(Map.of("prod1", 20))).thenReturn(false);
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":20}}");
+
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
+        verify(kafkaTemplate).send(eq("products.reservation.failed"), eq("order1"), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WithNonPositiveQuantity_ShouldFailWithoutTouchingStock() {
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":0}}");
+
+        verify(inventoryEngine, never()).reserve(anyMap());
+        verify(kafkaTemplate).send(eq("products.reservation.failed"), eq("order1"), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvents_ShouldReserveBatchInOneCallAndFlushRepliesOnce() {
+        when(inventoryEngine.reserveAll(List.of(Map.of("prod1", 2), Map.of("prod1", 1), Map.of("prod2", 5))))
+                .thenReturn(List.of(true, true, false));
+
+        inventoryReservationService.handleOrderCreatedEvents(List.of(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}",
+                "{\"orderId\":\"order2\",\"productIdToQuantityMap\":{\"prod1\":1}}",
+                "{\"orderId\":\"order3\",\"productIdToQuantityMap\":{\"prod2\":5}}"));
+
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", -3));
+        verify(eventPublisher, never()).publishEvent(ProductChangedEvent.stockChanged("prod2", -5));
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order1"), anyString());
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order2"), anyString());
+        verify(kafkaTemplate).send(eq("products.reservation.failed"), eq("order3"), anyString());
+        verify(kafkaTemplate, times(1)).flush();
+    }
+
+    @Test
+    void handleInventoryReleaseEvents_ShouldSumItemsAcrossBatch() {
+        inventoryReservationService.handleInventoryReleaseEvents(List.of(
+                "{\"orderId\":\"order1\",\"action\":\"RELEASE\",\"orderItems\":[{\"productId\":\"prod1\",\"quantity\":1}]}",
+                "{\"orderId\":\"order2\",\"action\":\"RELEASE\",\"orderItems\":[{\"productId\":\"prod1\",\"quantity\":4}]}"));
+
+        verify(inventoryEngine, times(1)).release(Map.of("prod1", 5));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", 5));
+    }
+
+    @Test
+    void handleInventoryReleaseEvent_ShouldMergeDuplicateItemsIntoOneIncrement() {
+        inventoryReservationService.handleInventoryReleaseEvent(
+                "{\"orderId\":\"order1\",\"action\":\"RELEASE\",\"orderItems\":["
+                + "{\"productId\":\"prod1\",\"quantity\":1},{\"productId\":\"prod1\",\"quantity\":2}]}");
+
+        verify(inventoryEngine).release(Map.of("prod1", 3));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", 3));
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WhenAlreadyReserved_ShouldResendSuccessWithoutTouchingStock() {
+        when(deduplicator.claim("order1", Action.RESERVE)).thenReturn(processed("order1", Action.RESERVE, Status.RESERVED));
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}");
+
+        verify(inventoryEngine, never()).reserve(anyMap());
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order1"), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WhenStillProcessing_ShouldSkipWithoutReply() {
+        when(deduplicator.claim("order1", Action.RESERVE)).thenReturn(processed("order1", Action.RESERVE, Status.PROCESSING));
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}");
+
+        verify(inventoryEngine, never()).reserve(anyMap());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvent_ShouldRecordOutcome() {
+        when(inventoryEngine.reserve(Map.of("prod1", 20))).thenReturn(false);
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":20}}");
+
+        verify(deduplicator).complete("order1", Action.RESERVE, Status.FAILED);
+    }
+
+    @Test
+    void handleOrderCreatedEvent_WhenRecordingOutcomeFails_ShouldStillReply() {
+        when(inventoryEngine.reserve(Map.of("prod1", 2))).thenReturn(true);
+        doThrow(new IllegalStateException("mongo down"))
+                .when(deduplicator).complete("order1", Action.RESERVE, Status.RESERVED);
+
+        inventoryReservationService.handleOrderCreatedEvent(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}");
+
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order1"), anyString());
+    }
+
+    @Test
+    void handleOrderCreatedEvents_WhenRecordingOutcomesFails_ShouldStillReplyToEveryOrder() {
+        when(inventoryEngine.reserveAll(List.of(Map.of("prod1", 2), Map.of("prod2", 5))))
+                .thenReturn(List.of(true, false));
+        doThrow(new IllegalStateException("mongo down"))
+                .when(deduplicator).completeAll(anyMap(), eq(Action.RESERVE));
+
+        inventoryReservationService.handleOrderCreatedEvents(List.of(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}",
+                "{\"orderId\":\"order2\",\"productIdToQuantityMap\":{\"prod2\":5}}"));
+
+        verify(kafkaTemplate).send(eq("products.reservation.success"), eq("order1"), anyString());
+        verify(kafkaTemplate).send(eq("products.reservation.failed"), eq("order2"), anyString());
+        verify(kafkaTemplate, times(1)).flush();
+        verify(deduplicator, never()).forget(any(), any());
+    }
+
+    @Test
+    void handleOrderCreatedEvents_ShouldReserveEachOrderOnceAndReplayProcessedOrders() {
+        when(deduplicator.claimAll(Set.of("order1", "order2"), Action.RESERVE))
+                .thenReturn(Map.of("order2", processed("order2", Action.RESERVE, Status.FAILED)));
+        when(inventoryEngine.reserveAll(List.of(Map.of("prod1", 2)))).thenReturn(List.of(true));
+
+        inventoryReservationService.handleOrderCreatedEvents(List.of(
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}",
+                "{\"orderId\":\"order1\",\"productIdToQuantityMap\":{\"prod1\":2}}",
+                "{\"orderId\":\"order2\",\"productIdToQuantityMap\":{\"prod2\":1}}"));
+
+        verify(inventoryEngine, times(1)).reserveAll(anyList());
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", -2));
+        verify(kafkaTemplate, times(1)).send(eq("products.reservation.success"), eq("order1"), anyString());
+        verify(kafkaTemplate).send(eq("products.reservation.failed"), eq("order2"), anyString());
+        verify(deduplicator).completeAll(Map.of("order1", Status.RESERVED), Action.RESERVE);
+    }
+
+    @Test
+    void handleInventoryReleaseEvent_WhenAlreadyReleased_ShouldNotReleaseAgain() {
+        when(deduplicator.claim("order1", Action.RELEASE)).thenReturn(processed("order1", Action.RELEASE, Status.RELEASED));
+
+        inventoryReservationService.handleInventoryReleaseEvent(
+                "{\"orderId\":\"order1\",\"action\":\"RELEASE\",\"orderItems\":[{\"productId\":\"prod1\",\"quantity\":1}]}");
+
+        verify(inventoryEngine, never()).release(anyMap());
+    }
+
+    @Test
+    void handleInventoryReleaseEvents_ShouldSkipReleasesAlreadyApplied() {
+        when(deduplicator.claimAll(Set.of("order1", "order2"), Action.RELEASE))
+                .thenReturn(Map.of("order1", processed("order1", Action.RELEASE, Status.RELEASED)));
+
+        inventoryReservationService.handleInventoryReleaseEvents(List.of(
+                "{\"orderId\":\"order1\",\"action\":\"RELEASE\",\"orderItems\":[{\"productId\":\"prod1\",\"quantity\":1}]}",
+                "{\"orderId\":\"order2\",\"action\":\"RELEASE\",\"orderItems\":[{\"productId\":\"prod1\",\"quantity\":4}]}"));
+
+        verify(inventoryEngine).release(Map.of("prod1", 4));
+        verify(deduplicator).completeAll(Map.of("order2", Status.RELEASED), Action.RELEASE);
+    }
+
+    private ProcessedInventoryEvent processed(String orderId, Action action, Status status) {
+        return ProcessedInventoryEvent.builder()
+                .id(ProcessedInventoryEvent.key(orderId, action))
+                .orderId(orderId)
+                .action(action)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.sayedhesham.productservice.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sayedhesham.productservice.dto.ProductImportResultDTO;
+import com.sayedhesham.productservice.dto.ProductsImportedEvent;
+import com.sayedhesham.productservice.model.Category;
+import com.sayedhesham.productservice.model.Product;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // Configured like the application's mapper, which binds ProductDTO through its constructor
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BulkOperations bulkOps;
+
+    @InjectMocks
+    private ProductImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        when(productService.requireCurrentSeller()).thenReturn("seller1");
+    }
+
+    @Test
+    void importProducts_WithCsv_ShouldInsertValidRowsAndReportInvalidOnes() throws IOException {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOps);
+        String csv = """
+                name,price,quantity,category,description
+                "Desk Lamp, LED",19.5,4,home and kitchen,Warm light
+                Mug,cheap,2,HOME_AND_KITCHEN,Ceramic
+
+                Novel,12,1,BOOKS,"A ""classic"" story"
+                """;
+
+        ProductImportResultDTO result = importService.importProducts(stream(csv), ProductImportService.CSV);
+
+        assertEquals(3, result.getRows());
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(3, result.getErrors().get(0).getLine());
+        assertEquals("Invalid price: cheap", result.getErrors().get(0).getMessage());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Product>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkOps).insert(inserted.capture());
+        Product lamp = inserted.getValue().get(0);
+        assertEquals("Desk Lamp, LED", lamp.getName());
+        assertEquals(Category.HOME_AND_KITCHEN, lamp.getCategory());
+        assertEquals("seller1", lamp.getUserId());
+        assertEquals("A \"classic\" story", inserted.getValue().get(1).getDescription());
+        // One event for the chunk, so cards and the catalog version are written once
+        ProductsImportedEvent event = importedEvent();
+        assertEquals("seller1", event.getSellerId());
+        assertEquals(inserted.getValue(), event.getProducts());
+    }
+
+    @Test
+    void importProducts_WithNdjson_ShouldSkipRowsRejectedByBulkWrite() throws IOException {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenThrow(new BulkOperationException("write failed",
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0)),
+                BulkWriteResult.unacknowledged()));
+        String ndjson = """
+                {"name":"Mouse","description":"Wireless","price":20,"quantity":5,"category":"ELECTRONICS"}
+                {"name":"Cable","description":"USB-C","price":5,"quantity":9,"category":"ELECTRONICS"}
+                {not json
+                """;
+
+        ProductImportResultDTO result = importService.importProducts(stream(ndjson), ProductImportService.NDJSON);
+
+        assertEquals(3, result.getRows());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(3, result.getErrors().get(0).getLine());
+        assertEquals(1, result.getErrors().get(1).getLine());
+        assertEquals("Cable", importedEvent().getProducts().get(0).getName());
+        verify(productService).discardStagedImages(anyList());
+    }
+
+    @Test
+    void importProducts_WhenBulkWriteFails_ShouldReportRowsThatWereNotInserted() throws IOException {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenThrow(new DataAccessResourceFailureException("connection reset"));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Product>> inserted = ArgumentCaptor.forClass(List.class);
+        when(bulkOps.insert(inserted.capture())).thenReturn(bulkOps);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenAnswer(invocation -> List.of(inserted.getValue().get(0)));
+        String ndjson = """
+                {"name":"Mouse","description":"Wireless","price":20,"quantity":5,"category":"ELECTRONICS"}
+                {"name":"Cable","description":"USB-C","price":5,"quantity":9,"category":"ELECTRONICS"}
+                """;
+
+        ProductImportResultDTO result = importService.importProducts(stream(ndjson), ProductImportService.NDJSON);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getLine());
+        assertEquals(1, importedEvent().getProducts().size());
+    }
+
+    @Test
+    void importProducts_WhenImagesFail_ShouldReportRowAndCarryOn() throws IOException {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOps);
+        doThrow(new IllegalStateException("kafka unavailable"))
+                .doNothing()
+                .when(productService).publishStagedImages(anyList());
+        String ndjson = """
+                {"name":"Mouse","description":"Wireless","price":20,"quantity":5,"category":"ELECTRONICS"}
+                {"name":"Cable","description":"USB-C","price":5,"quantity":9,"category":"ELECTRONICS"}
+                """;
+
+        ProductImportResultDTO result = importService.importProducts(stream(ndjson), ProductImportService.NDJSON);
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(1, result.getErrors().get(0).getLine());
+        verify(productService, times(2)).publishStagedImages(anyList());
+    }
+
+    @Test
+    void importProducts_WhenStagingFails_ShouldReportRowAndCarryOn() throws IOException {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOps);
+        when(productService.stageImages(anyString(), any()))
+                .thenThrow(new IllegalStateException("staging unavailable"))
+                .thenReturn(List.of());
+        String ndjson = """
+                {"name":"Mouse","description":"Wireless","price":20,"quantity":5,"category":"ELECTRONICS"}
+                {"name":"Cable","description":"USB-C","price":5,"quantity":9,"category":"ELECTRONICS"}
+                """;
+
+        ProductImportResultDTO result = importService.importProducts(stream(ndjson), ProductImportService.NDJSON);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getErrors().get(0).getLine());
+    }
+
+    @Test
+    void boundedLineReader_ShouldSkipLinesOverTheLimit() throws IOException {
+        ProductImportService.BoundedLineReader reader = new ProductImportService.BoundedLineReader(
+                new StringReader("short\r\n" + "x".repeat(20_000) + "\nlast"), 10);
+
+        assertEquals("short", reader.readLine());
+        assertFalse(reader.lastLineTooLong());
+        assertEquals("", reader.readLine());
+        assertTrue(reader.lastLineTooLong());
+        assertEquals("last", reader.readLine());
+        assertFalse(reader.lastLineTooLong());
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    void importProducts_WithCsvMissingColumn_ShouldThrowException() {
+        String csv = "name,price,quantity\nMug,5,1\n";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> importService.importProducts(stream(csv), ProductImportService.CSV));
+    }
+
+    private ProductsImportedEvent importedEvent() {
+        ArgumentCaptor<ProductsImportedEvent> event = ArgumentCaptor.forClass(ProductsImportedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        return event.getValue();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
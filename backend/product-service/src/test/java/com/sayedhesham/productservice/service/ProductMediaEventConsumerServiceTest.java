@@ -0,0 +1,73 @@
+package com.sayedhesham.productservice.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.repository.ProductRepository;
+import com.sayedhesham.productservice.repository.ProductRepositoryCustom.ImageMediaChange;
+import com.sayedhesham.productservice.repository.ProductRepositoryCustom.ImageMediaChange.Kind;
+
+@ExtendWith(MockitoExtension.class)
+class ProductMediaEventConsumerServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ProductMediaEventConsumerService consumerService;
+
+    @Test
+    void handleMediaProcessedEvents_ShouldCoalesceConsecutiveChangesPerProduct() {
+        Product product = Product.builder().id("prod1").imageMediaIds(List.of("m1", "m2")).build();
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+
+        consumerService.handleMediaProcessedEvents(List.of(
+                event("prod1", "m1", "uploaded"),
+                event("prod1", "m2", "uploaded"),
+                event("prod1", "m0", "deleted"),
+                event("prod1", "m3", "updated"),
+                event("prod1", "m4", "updated")));
+
+        verify(productRepository).applyImageMediaChanges(Map.of("prod1", List.of(
+                new ImageMediaChange(Kind.ADD, List.of("m1", "m2")),
+                new ImageMediaChange(Kind.REMOVE, List.of("m0")),
+                new ImageMediaChange(Kind.REPLACE_FIRST, List.of("m4")))));
+        verify(eventPublisher, times(1)).publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.IMAGES_CHANGED, product));
+    }
+
+    @Test
+    void handleMediaProcessedEvents_WithOnlyOtherMediaTypes_ShouldNotTouchProducts() {
+        consumerService.handleMediaProcessedEvents(List.of(
+                "{\"productId\":\"prod1\",\"mediaId\":\"m1\",\"mediaType\":\"avatar\",\"action\":\"uploaded\"}"));
+
+        verify(productRepository, never()).applyImageMediaChanges(anyMap());
+    }
+
+    private String event(String productId, String mediaId, String action) {
+        return "{\"productId\":\"" + productId + "\",\"mediaId\":\"" + mediaId
+                + "\",\"mediaType\":\"product_image\",\"action\":\"" + action + "\"}";
+    }
+}
@@ -2,35 +2,59 @@ package com.sayedhesham.productservice.service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.sayedhesham.productservice.dto.CursorPageDTO;
+import com.sayedhesham.productservice.dto.FacetedPageDTO;
+import com.sayedhesham.productservice.dto.ProductAdjustmentDTO;
+import com.sayedhesham.productservice.dto.ProductChangedEvent;
+import com.sayedhesham.productservice.dto.ProductCursor;
 import com.sayedhesham.productservice.dto.ProductDTO;
+import com.sayedhesham.productservice.dto.ProductFieldSet;
 import com.sayedhesham.productservice.dto.ProductResponseDTO;
+import com.sayedhesham.productservice.dto.ProductSearchRequest;
+import com.sayedhesham.productservice.dto.SearchFacetsDTO;
+import com.sayedhesham.productservice.inventory.InventoryEngine;
 import com.sayedhesham.productservice.model.Category;
 import com.sayedhesham.productservice.model.Product;
+import com.sayedhesham.productservice.model.ProductCard;
 import com.sayedhesham.productservice.model.User;
+import com.sayedhesham.productservice.repository.ProductCardRepository;
 import com.sayedhesham.productservice.repository.ProductRepository;
 import com.sayedhesham.productservice.repository.UserRepository;
 
@@ -40,9 +64,33 @@ class ProductServiceTest {
     @Mock
     private ProductRepository prodRepo;
 
+    @Mock
+    private ProductCardRepository cardRepo;
+
     @Mock
     private UserRepository userRepo;
 
+    @Mock
+    private ProductImageEventService productImageEventService;
+
+    @Mock
+    private SellerNameResolver sellerNameResolver;
+
+    @Mock
+    private ProductSearchIndexService searchIndexService;
+
+    @Mock
+    private ProductResponseCache responseCache;
+
+    @Mock
+    private SellerCatalogVersionService catalogVersions;
+
+    @Mock
+    private InventoryEngine inventoryEngine;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -56,6 +104,7 @@ class ProductServiceTest {
     private ProductService productService;
 
     private Product testProduct;
+    private ProductCard testCard;
     private User testUser;
 
     @BeforeEach
@@ -70,6 +119,19 @@ class ProductServiceTest {
                 .imageMediaIds(new ArrayList<>())
                 .build();
 
+        testCard = ProductCard.builder()
+                .id("prod1")
+                .name("Test Product")
+                .description("This is a test product")
+                .price(99.99)
+                .quantity(10)
+                .sellerId("user1")
+                .sellerName("Test User")
+                .category(Category.ELECTRONICS)
+                .categoryDisplayName("Electronics")
+                .imageMediaIds(List.of("media1"))
+                .build();
+
         testUser = User.builder()
                 .id("user1")
                 .name("Test User")
@@ -93,13 +155,249 @@ class ProductServiceTest {
     @Test
     void getAllWithPageable_ShouldReturnPageOfProducts() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Product> productPage = new PageImpl<>(Arrays.asList(testProduct));
-        when(prodRepo.findAll(pageable)).thenReturn(productPage);
+        Page<ProductCard> cardPage = new PageImpl<>(Arrays.asList(testCard));
+        when(cardRepo.findAll(pageable)).thenReturn(cardPage);
+
+        Page<ProductResponseDTO> result = productService.getAll(pageable);
+
+        assertEquals(1, result.getContent().size());
+        verify(cardRepo).findAll(pageable);
+    }
+
+    @Test
+    void getAllWithPageable_ShouldReadSellerNameFromCardsWithoutUserLookups() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(cardRepo.findAll(pageable)).thenReturn(new PageImpl<>(Arrays.asList(testCard)));
 
         Page<ProductResponseDTO> result = productService.getAll(pageable);
 
+        ProductResponseDTO dto = result.getContent().get(0);
+        assertEquals("Test User", dto.getSellerName());
+        assertEquals("Electronics", dto.getCategoryDisplayName());
+        assertEquals(List.of("media1"), dto.getImageMediaIds());
+        verify(userRepo, never()).findById(any());
+        verify(sellerNameResolver, never()).resolveNames(anyCollection());
+    }
+
+    @Test
+    void searchProducts_WithName_ShouldMatchIndexCandidatesById() {
+        Pageable pageable = PageRequest.of(0, 10);
+        ProductSearchRequest request = ProductSearchRequest.builder().name("test").build();
+        when(searchIndexService.findCandidateIds("test", null, null, null)).thenReturn(Optional.of(List.of("prod1")));
+        when(cardRepo.searchCards("test", List.of("prod1"), null, null, null, null, pageable, null))
+                .thenReturn(new PageImpl<>(Arrays.asList(testCard)));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        assertEquals(1, result.getContent().size());
+        verify(cardRepo).searchCards("test", List.of("prod1"), null, null, null, null, pageable, null);
+    }
+
+    @Test
+    void searchProducts_WhenIndexFindsNothing_ShouldSkipMongo() {
+        Pageable pageable = PageRequest.of(0, 10);
+        ProductSearchRequest request = ProductSearchRequest.builder().name("nothing").build();
+        when(searchIndexService.findCandidateIds("nothing", null, null, null)).thenReturn(Optional.of(List.of()));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        assertEquals(0, result.getTotalElements());
+        verify(cardRepo, never()).searchCards(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void searchProducts_WithPriceRange_ShouldMatchIndexCandidatesById() {
+        Pageable pageable = PageRequest.of(0, 10);
+        ProductSearchRequest request = ProductSearchRequest.builder().minPrice(50.0).maxPrice(150.0).build();
+        when(searchIndexService.findCandidateIds(null, null, 50.0, 150.0)).thenReturn(Optional.of(List.of("prod1")));
+        when(cardRepo.searchCards(null, List.of("prod1"), 50.0, 150.0, null, null, pageable, null))
+                .thenReturn(new PageImpl<>(Arrays.asList(testCard)));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        assertEquals(1, result.getContent().size());
+    }
+
+    @Test
+    void searchProducts_SortedByPrice_ShouldReadOnlyCardsOfIndexPage() {
+        Pageable pageable = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "price"));
+        ProductSearchRequest request = ProductSearchRequest.builder().name("test").build();
+        ProductCard cheaperCard = ProductCard.builder().id("prod2").name("Test Cable").price(5.0).build();
+        when(searchIndexService.findPriceOrderedIds("test", null, null, null, pageable))
+                .thenReturn(Optional.of(new PageImpl<>(List.of("prod1", "prod2"), pageable, 4)));
+        when(cardRepo.findCards(List.of("prod1", "prod2"), null)).thenReturn(List.of(cheaperCard, testCard));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        assertEquals(List.of("prod1", "prod2"), result.getContent().stream().map(ProductResponseDTO::getId).toList());
+        assertEquals(4, result.getTotalElements());
+        verify(cardRepo, never()).searchCards(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void searchProducts_SortedByPriceWithFields_ShouldProjectIndexPageCards() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "price"));
+        ProductSearchRequest request = ProductSearchRequest.builder().name("test").fields(ProductFieldSet.of("price", null)).build();
+        List<String> cardFields = request.getFields().cardFields();
+        when(searchIndexService.findPriceOrderedIds("test", null, null, null, pageable))
+                .thenReturn(Optional.of(new PageImpl<>(List.of("prod1"), pageable, 1)));
+        when(cardRepo.findCards(List.of("prod1"), cardFields)).thenReturn(List.of(testCard));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        assertEquals(1, result.getContent().size());
+        verify(cardRepo).findCards(List.of("prod1"), cardFields);
+    }
+
+    @Test
+    void searchProducts_SortedByPriceWithUnprojectedCard_ShouldSearchCardsInstead() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "price"));
+        ProductSearchRequest request = ProductSearchRequest.builder().name("test").build();
+        when(searchIndexService.findPriceOrderedIds("test", null, null, null, pageable))
+                .thenReturn(Optional.of(new PageImpl<>(List.of("prod1", "prod2"), pageable, 2)));
+        when(cardRepo.findCards(List.of("prod1", "prod2"), null)).thenReturn(List.of(testCard));
+        when(searchIndexService.findCandidateIds("test", null, null, null)).thenReturn(Optional.empty());
+        when(cardRepo.searchCards("test", null, null, null, null, null, pageable, null))
+                .thenReturn(new PageImpl<>(List.of(testCard), pageable, 1));
+
+        Page<ProductResponseDTO> result = productService.searchProducts(request, pageable);
+
+        // The total comes from the cards Mongo returns, not from the index
+        assertEquals(1, result.getTotalElements());
         assertEquals(1, result.getContent().size());
-        verify(prodRepo).findAll(pageable);
+    }
+
+    @Test
+    void searchProductsWithFacets_ShouldReturnPageAndFacetsFromOneRepositoryCall() {
+        Pageable pageable = PageRequest.of(0, 10);
+        ProductSearchRequest request = ProductSearchRequest.builder().category(Category.ELECTRONICS).build();
+        SearchFacetsDTO facets = SearchFacetsDTO.builder()
+                .categories(List.of(new SearchFacetsDTO.CategoryCount(Category.ELECTRONICS, "Electronics", 1)))
+                .priceBuckets(List.of(new SearchFacetsDTO.PriceBucket(99.99, 99.99, 1)))
+                .sellerCount(1)
+                .build();
+        when(cardRepo.searchCardsWithFacets(null, null, null, null, null, Category.ELECTRONICS, pageable, null))
+                .thenReturn(FacetedPageDTO.<ProductCard>builder()
+                        .content(List.of(testCard))
+                        .number(0)
+                        .size(10)
+                        .totalElements(1)
+                        .totalPages(1)
+                        .facets(facets)
+                        .build());
+
+        FacetedPageDTO<ProductResponseDTO> result = productService.searchProductsWithFacets(request, pageable);
+
+        assertEquals(1, result.getTotalElements());
+        assertEquals("prod1", result.getContent().get(0).getId());
+        assertEquals(facets, result.getFacets());
+        verify(cardRepo, never()).searchCards(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void searchProductsAfter_WhenMoreCardsExist_ShouldReturnNextCursor() {
+        ProductCard nextCard = ProductCard.builder().id("prod2").name("Zeta Product").build();
+        ProductSearchRequest request = ProductSearchRequest.builder().build();
+        when(cardRepo.searchCardsAfter(null, null, null, null, null, null, null, "name", Sort.Direction.ASC, 2, null))
+                .thenReturn(List.of(testCard, nextCard));
+
+        CursorPageDTO<ProductResponseDTO> result = productService.searchProductsAfter(request, "name", Sort.Direction.ASC, "", 1);
+
+        assertEquals(1, result.getSize());
+        assertEquals("prod1", result.getContent().get(0).getId());
+        ProductCursor cursor = ProductCursor.decode(result.getNextCursor());
+        assertEquals("prod1", cursor.getLastId());
+        assertEquals("Test Product", cursor.getLastValue());
+    }
+
+    @Test
+    void searchProductsAfter_OnLastPage_ShouldReturnNoCursor() {
+        ProductCursor after = new ProductCursor("price", Sort.Direction.DESC, "prod0", 120.0);
+        ProductSearchRequest request = ProductSearchRequest.builder().build();
+        when(cardRepo.searchCardsAfter(null, null, null, null, null, null, after, "price", Sort.Direction.DESC, 11, null))
+                .thenReturn(List.of(testCard));
+
+        CursorPageDTO<ProductResponseDTO> result = productService.searchProductsAfter(request, "price", Sort.Direction.DESC, after.encode(), 10);
+
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void searchProductsAfter_WhenCursorSortDiffers_ShouldThrowException() {
+        String after = new ProductCursor("price", Sort.Direction.ASC, "prod1", 99.99).encode();
+        ProductSearchRequest request = ProductSearchRequest.builder().build();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.searchProductsAfter(request, "name", Sort.Direction.ASC, after, 10));
+    }
+
+    @Test
+    void getProductsByIds_ShouldResolveSellerNamesOncePerBatch() {
+        Product otherProduct = Product.builder()
+                .id("prod2")
+                .name("Other Product")
+                .price(10.0)
+                .quantity(1)
+                .userId("user1")
+                .build();
+        when(prodRepo.findAllById(List.of("prod1", "prod2"))).thenReturn(Arrays.asList(testProduct, otherProduct));
+        when(sellerNameResolver.resolveNames(anyCollection())).thenReturn(Map.of("user1", "Test User"));
+
+        List<ProductResponseDTO> result = productService.getProductsByIds(List.of("prod1", "prod2"));
+
+        assertEquals(List.of("Test User", "Test User"),
+                result.stream().map(ProductResponseDTO::getSellerName).toList());
+        verify(sellerNameResolver, times(1)).resolveNames(anyCollection());
+        verify(userRepo, never()).findById(any());
+    }
+
+    @Test
+    void getProductsByIds_WithCardView_ShouldProjectFieldsInMongo() {
+        ProductFieldSet fields = ProductFieldSet.of(null, "card");
+        when(prodRepo.findProjectedByIds(List.of("prod1"), fields.productFields())).thenReturn(List.of(testProduct));
+        when(sellerNameResolver.resolveNames(anyCollection())).thenReturn(Map.of("user1", "Test User"));
+
+        List<ProductResponseDTO> result = productService.getProductsByIds(List.of("prod1"), fields);
+
+        assertEquals("Test User", result.get(0).getSellerName());
+        verify(prodRepo, never()).findAllById(any());
+    }
+
+    @Test
+    void searchProductsAfter_WithFields_ShouldAlsoReadSortField() {
+        ProductSearchRequest request = ProductSearchRequest.builder().fields(ProductFieldSet.of("name", null)).build();
+        when(cardRepo.searchCardsAfter(null, null, null, null, null, null, null, "price", Sort.Direction.ASC, 2,
+                List.of("_id", "name", "price")))
+                .thenReturn(List.of(testCard, testCard));
+
+        CursorPageDTO<ProductResponseDTO> result = productService.searchProductsAfter(request, "price", Sort.Direction.ASC, "", 1);
+
+        assertEquals(99.99, ProductCursor.decode(result.getNextCursor()).getLastValue());
+    }
+
+    @Test
+    void streamProductsByIds_ShouldPassEveryProductToSinkWithSellerNames() {
+        when(prodRepo.streamByIds(List.of("prod1"), null)).thenReturn(Stream.of(testProduct));
+        when(sellerNameResolver.resolveNames(anyCollection())).thenReturn(Map.of("user1", "Test User"));
+        List<ProductResponseDTO> received = new ArrayList<>();
+
+        int streamed = productService.streamProductsByIds(List.of("prod1"), null, received::add);
+
+        assertEquals(1, streamed);
+        assertEquals("Test User", received.get(0).getSellerName());
+        verify(prodRepo, never()).findAllById(any());
+    }
+
+    @Test
+    void streamProductsByIds_WithoutSellerName_ShouldSkipSellerLookup() {
+        ProductFieldSet fields = ProductFieldSet.of("price,quantity", null);
+        when(prodRepo.streamByIds(List.of("prod1"), fields.productFields())).thenReturn(Stream.of(testProduct));
+
+        int streamed = productService.streamProductsByIds(List.of("prod1"), fields, product -> { });
+
+        assertEquals(1, streamed);
+        verify(sellerNameResolver, never()).resolveNames(anyCollection());
     }
 
     @Test
@@ -135,6 +433,31 @@ class ProductServiceTest {
         verify(userRepo).findById("user1");
     }
 
+    @Test
+    void getByIdWithSellerName_WhenCached_ShouldNotReadMongo() {
+        ProductResponseDTO cached = ProductResponseDTO.builder().id("prod1").version(3).build();
+        when(responseCache.get("prod1")).thenReturn(cached);
+
+        var result = productService.getByIdWithSellerName("prod1");
+
+        assertEquals(cached, result);
+        verify(prodRepo, never()).findById(any());
+        verify(userRepo, never()).findById(any());
+    }
+
+    @Test
+    void getByIdWithSellerName_ShouldCacheResponseWithProductVersion() {
+        testProduct.setVersion(7L);
+        when(responseCache.stamp("prod1")).thenReturn(42L);
+        when(prodRepo.findById("prod1")).thenReturn(Optional.of(testProduct));
+        when(userRepo.findById("user1")).thenReturn(Optional.of(testUser));
+
+        var result = productService.getByIdWithSellerName("prod1");
+
+        assertEquals(7L, result.getVersion());
+        verify(responseCache).put("prod1", result, 42L);
+    }
+
     @Test
     void create_ValidProductDTO_ShouldReturnProduct() {
         SecurityContextHolder.setContext(securityContext);
@@ -159,6 +482,32 @@ class ProductServiceTest {
         assertNotNull(result);
         verify(userRepo).existsById("user1");
         verify(prodRepo).save(any(Product.class));
+        verify(eventPublisher).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void create_WithInvalidImage_ShouldRejectBeforeSaving() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+
+        var productDTO = ProductDTO.builder()
+                .name("New Product")
+                .description("New Description")
+                .price(50.0)
+                .quantity(5)
+                .category(Category.ELECTRONICS)
+                .images(List.of("not base64!"))
+                .build();
+
+        when(userRepo.existsById("user1")).thenReturn(true);
+        when(productImageEventService.decodeImage("not base64!"))
+                .thenThrow(new IllegalArgumentException("Image is not valid base64"));
+
+        assertThrows(IllegalArgumentException.class, () -> productService.create(productDTO));
+        verify(prodRepo, never()).save(any(Product.class));
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
     }
 
     @Test
@@ -177,13 +526,55 @@ class ProductServiceTest {
 
         when(prodRepo.findById("prod1")).thenReturn(Optional.of(testProduct));
         when(userRepo.existsById("user1")).thenReturn(true);
-        when(prodRepo.save(any(Product.class))).thenReturn(testProduct);
+        when(prodRepo.updateFields(eq("prod1"), anyMap())).thenReturn(testProduct);
 
         Product result = productService.update("prod1", productDTO);
 
         assertNotNull(result);
         verify(prodRepo).findById("prod1");
-        verify(prodRepo).save(any(Product.class));
+        verify(prodRepo).updateFields(eq("prod1"), anyMap());
+        // 10 -> 15 goes through the engine, so reservations made meanwhile are kept
+        verify(inventoryEngine).release(Map.of("prod1", 5));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod1", 5));
+    }
+
+    @Test
+    void update_ShouldBumpProductVersionAtomically() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+        testProduct.setVersion(4L);
+
+        when(prodRepo.findById("prod1")).thenReturn(Optional.of(testProduct));
+        when(userRepo.existsById("user1")).thenReturn(true);
+        when(prodRepo.updateFields(eq("prod1"), anyMap()))
+                .thenReturn(Product.builder().id("prod1").userId("user1").version(5L).build());
+
+        Product result = productService.update("prod1", ProductDTO.builder().price(150.0).quantity(15).build());
+
+        // The version comes from the $inc in Mongo, not from the copy read before the update
+        assertEquals(4L, testProduct.getVersion());
+        assertEquals(5L, result.getVersion());
+        verify(prodRepo, never()).save(any(Product.class));
+        // Only the edited field is written; stock, images and the ledger sequence keep their own updates
+        verify(prodRepo).updateFields("prod1", Map.of("price", 150.0));
+    }
+
+    @Test
+    void update_LoweringQuantityBelowReservedStock_ShouldReject() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+
+        when(prodRepo.findById("prod1")).thenReturn(Optional.of(testProduct));
+        when(userRepo.existsById("user1")).thenReturn(true);
+        when(inventoryEngine.reserve(Map.of("prod1", 8))).thenReturn(false);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.update("prod1", ProductDTO.builder().price(150.0).quantity(2).build()));
+        verify(prodRepo, never()).updateFields(any(), anyMap());
     }
 
     @Test
@@ -200,5 +591,114 @@ class ProductServiceTest {
 
         verify(prodRepo).findById("prod1");
         verify(prodRepo).delete(testProduct);
+        verify(eventPublisher).publishEvent(ProductChangedEvent.deleted("prod1", "user1"));
+    }
+
+    @Test
+    void getMyCatalogVersion_ShouldReadVersionOfCurrentSeller() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+        when(catalogVersions.currentVersion("user1")).thenReturn(7L);
+
+        assertEquals(7L, productService.getMyCatalogVersion());
+    }
+
+    @Test
+    void adjustProducts_ShouldChangeStockThroughInventoryEngineAndPricesInOneBulkWrite() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+        when(userRepo.existsById("user1")).thenReturn(true);
+
+        Product other = Product.builder().id("prod2").userId("user1").quantity(3).build();
+        Product third = Product.builder().id("prod3").userId("user1").quantity(0).build();
+        when(prodRepo.findProjectedByIds(anyCollection(), anyCollection())).thenReturn(List.of(testProduct, other, third));
+        when(inventoryEngine.reserve(Map.of("prod2", 3))).thenReturn(true);
+        when(prodRepo.applyPrices("user1", Map.of("prod1", 79.99))).thenReturn(1L);
+        when(prodRepo.findAllById(Set.of("prod1"))).thenReturn(List.of(testProduct));
+
+        var result = productService.adjustProducts(List.of(
+                ProductAdjustmentDTO.builder().productId("prod1").price(79.99).build(),
+                ProductAdjustmentDTO.builder().productId("prod2").quantityDelta(-3).build(),
+                ProductAdjustmentDTO.builder().productId("prod3").quantityDelta(5).build()));
+
+        assertEquals(3, result.getRequested());
+        assertEquals(1L, result.getPricesUpdated());
+        assertEquals(2, result.getStockAdjusted());
+        verify(inventoryEngine).release(Map.of("prod3", 5));
+        verify(prodRepo).applyPrices("user1", Map.of("prod1", 79.99));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod2", -3));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged("prod3", 5));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.of(ProductChangedEvent.ChangeType.UPDATED, testProduct));
+        verify(eventPublisher, times(3)).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void adjustProducts_WithProductOfAnotherSeller_ShouldChangeNothing() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user2");
+        when(userRepo.existsById("user2")).thenReturn(true);
+        when(prodRepo.findProjectedByIds(anyCollection(), anyCollection())).thenReturn(List.of(testProduct));
+
+        List<ProductAdjustmentDTO> adjustments = List.of(
+                ProductAdjustmentDTO.builder().productId("prod1").quantityDelta(5).build());
+
+        assertThrows(IllegalArgumentException.class, () -> productService.adjustProducts(adjustments));
+        verify(inventoryEngine, never()).release(any());
+        verify(prodRepo, never()).applyPrices(any(), any());
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void adjustProducts_WhenStockDoesNotCoverRemoval_ShouldChangeNothing() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+        when(userRepo.existsById("user1")).thenReturn(true);
+        when(prodRepo.findProjectedByIds(anyCollection(), anyCollection())).thenReturn(List.of(testProduct));
+        when(inventoryEngine.reserve(Map.of("prod1", 11))).thenReturn(false);
+
+        List<ProductAdjustmentDTO> adjustments = List.of(
+                ProductAdjustmentDTO.builder().productId("prod1").price(50.0).quantityDelta(-11).build());
+
+        assertThrows(IllegalArgumentException.class, () -> productService.adjustProducts(adjustments));
+        verify(prodRepo, never()).applyPrices(any(), any());
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void adjustProducts_WhenPriceWriteFails_ShouldReleaseRemovedStock() {
+        SecurityContextHolder.setContext(securityContext);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        when(userDetails.getUsername()).thenReturn("user1");
+        when(userRepo.existsById("user1")).thenReturn(true);
+        when(prodRepo.findProjectedByIds(anyCollection(), anyCollection())).thenReturn(List.of(testProduct));
+        when(inventoryEngine.reserve(Map.of("prod1", 4))).thenReturn(true);
+        when(prodRepo.applyPrices("user1", Map.of("prod1", 50.0)))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"));
+
+        List<ProductAdjustmentDTO> adjustments = List.of(
+                ProductAdjustmentDTO.builder().productId("prod1").price(50.0).quantityDelta(-4).build());
+
+        assertThrows(DataAccessResourceFailureException.class, () -> productService.adjustProducts(adjustments));
+        verify(inventoryEngine).release(Map.of("prod1", 4));
+        verify(eventPublisher, never()).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    void adjustProducts_WithDuplicateProduct_ShouldRejectBeforeReading() {
+        List<ProductAdjustmentDTO> adjustments = List.of(
+                ProductAdjustmentDTO.builder().productId("prod1").price(10.0).build(),
+                ProductAdjustmentDTO.builder().productId("prod1").quantityDelta(1).build());
+
+        assertThrows(IllegalArgumentException.class, () -> productService.adjustProducts(adjustments));
+        verify(prodRepo, never()).findProjectedByIds(anyCollection(), anyCollection());
     }
 }
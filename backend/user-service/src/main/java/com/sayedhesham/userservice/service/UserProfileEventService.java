@@ -0,0 +1,56 @@
+package com.sayedhesham.userservice.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class UserProfileEventService {
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${kafka.topic.user.profile.updated}")
+    private String userProfileUpdatedTopic;
+
+    /**
+     * Let other services that copy the user's name (e.g. product cards in
+     * product-service) know that it changed.
+     */
+    public void publishUserProfileUpdatedEvent(String userId, String name) {
+        try {
+            UserProfileUpdatedEvent event = UserProfileUpdatedEvent.builder()
+                    .userId(userId)
+                    .name(name)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+
+            String eventJson = objectMapper.writeValueAsString(event);
+            kafkaTemplate.send(userProfileUpdatedTopic, userId, eventJson);
+            log.info("Published user profile updated event for user: {}", userId);
+        } catch (JsonProcessingException e) {
+            log.error("Error publishing user profile updated event for user: {}", userId, e);
+            throw new RuntimeException("Failed to publish user profile updated event", e);
+        }
+    }
+
+    @Data
+    @Builder
+    public static class UserProfileUpdatedEvent {
+        private String userId;
+        private String name;
+        private Long timestamp;
+    }
+}
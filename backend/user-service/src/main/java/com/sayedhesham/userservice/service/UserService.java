@@ -1,6 +1,7 @@
 package com.sayedhesham.userservice.service;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -16,12 +17,14 @@ public class UserService {
     private static final String USER_NOT_FOUND = "User not found";
 
     private final UserRepository userRepo;
+    private final UserProfileEventService userProfileEventService;
 
     @Autowired
     private AvatarEventService avatarEventService;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserProfileEventService userProfileEventService) {
         this.userRepo = userRepository;
+        this.userProfileEventService = userProfileEventService;
     }
 
     public List<UserDTO> getAllUsers() {
@@ -50,12 +53,16 @@ public class UserService {
     public UserDTO update(String id, UserPatchDTO user) {
         User existingUser = userRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException(USER_NOT_FOUND));
+        String previousName = existingUser.getName();
 
         updateBasicFields(existingUser, user);
         updateRole(existingUser, user.getRole());
         handleAvatarUpdate(id, user.getAvatarBase64());
 
         User updatedUser = userRepo.save(existingUser);
+        if (!Objects.equals(previousName, updatedUser.getName())) {
+            userProfileEventService.publishUserProfileUpdatedEvent(id, updatedUser.getName());
+        }
         return UserDTO.builder()
                 .name(updatedUser.getName())
                 .email(updatedUser.getEmail())
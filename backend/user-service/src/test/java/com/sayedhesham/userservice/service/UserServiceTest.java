@@ -31,6 +31,9 @@ class UserServiceTest {
     @Mock
     private AvatarEventService avatarEventService;
 
+    @Mock
+    private UserProfileEventService userProfileEventService;
+
     @InjectMocks
     private UserService userService;
 
@@ -87,6 +90,7 @@ class UserServiceTest {
 
         assertNotNull(result);
         verify(userRepo).save(any(User.class));
+        verify(userProfileEventService).publishUserProfileUpdatedEvent("1", "Jane Doe");
     }
 
     @Test
@@ -153,11 +153,17 @@ create_default_topics() {
     create_topic --topic "user.avatar.upload" --partitions 3 --replication-factor 1
     create_topic --topic "user.avatar.update" --partitions 3 --replication-factor 1
     create_topic --topic "user.avatar.delete" --partitions 3 --replication-factor 1
+
+    # User Profile Topics
+    create_topic --topic "user.profile.updated" --partitions 3 --replication-factor 1
     
     # Product Image Topics
     create_topic --topic "product.image.upload" --partitions 3 --replication-factor 1
     create_topic --topic "product.image.update" --partitions 3 --replication-factor 1
     create_topic --topic "product.image.delete" --partitions 3 --replication-factor 1
+
+    # Product Catalog Topics
+    create_topic --topic "product.catalog.changed" --partitions 3 --replication-factor 1
     
     # Media Processing Topics
     create_topic --topic "media.uploaded" --partitions 3 --replication-factor 1